@@ -0,0 +1,9 @@
+package com.example.visited.DTO;
+
+import java.time.Instant;
+
+import com.example.visited.entitys.User;
+
+// Verified claims of an auth token, attached to the request as "authPrincipal"
+public record AuthPrincipal(Integer userId, User.Role role, String tokenId, Instant expiresAt) {
+}
@@ -0,0 +1,21 @@
+package com.example.visited.DTO;
+
+import com.example.visited.entitys.User;
+
+// The slice of a User the authentication filter needs, safe to share across requests
+public record CachedUser(Integer userId, String username, User.Role role, User.Status status) {
+
+	public static CachedUser of(User user) {
+		return new CachedUser(user.getUserId(), user.getUsername(), user.getRole(), user.getStatus());
+	}
+
+	// Detached User for controllers that read request.getAttribute("authenticatedUser")
+	public User toUser() {
+		User user = new User();
+		user.setUserId(userId);
+		user.setUsername(username);
+		user.setRole(role);
+		user.setStatus(status);
+		return user;
+	}
+}
@@ -0,0 +1,14 @@
+package com.example.visited.DTO;
+
+import java.math.BigDecimal;
+
+// Booked (ACCEPTED) orders of one group. key identifies the group (yyyy-MM, user id, billing
+// frequency or module id), label is what to show; contractValue is costPerMember * noOfUsers.
+public record RevenueGroup(
+		String key,
+		String label,
+		long orders,
+		BigDecimal initialPayment,
+		BigDecimal budget,
+		BigDecimal contractValue) {
+}
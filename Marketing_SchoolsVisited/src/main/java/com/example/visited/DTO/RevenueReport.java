@@ -0,0 +1,14 @@
+package com.example.visited.DTO;
+
+import java.time.YearMonth;
+import java.util.List;
+
+// Order book between two booking months (inclusive). totals counts each order once; with
+// by=module an order is counted under every module it selected, so the groups can add up to more.
+public record RevenueReport(
+		String by,
+		YearMonth from,
+		YearMonth to,
+		List<RevenueGroup> groups,
+		RevenueGroup totals) {
+}
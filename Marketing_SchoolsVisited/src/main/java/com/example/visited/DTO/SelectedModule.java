@@ -0,0 +1,23 @@
+package com.example.visited.DTO;
+
+import com.example.visited.entitys.SchoolModuleRequired;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// One school_module_required row as rendered under a visit's "selectedModules". moduleName comes
+// from the module catalog when the row is loaded for a listing, and is null otherwise.
+public record SelectedModule(
+		@JsonIgnore Integer visitId,
+		Integer moduleId,
+		SchoolModuleRequired.IsSelected isSelected,
+		String remarks,
+		String moduleName) {
+
+	public SelectedModule(Integer visitId, Integer moduleId, SchoolModuleRequired.IsSelected isSelected,
+			String remarks) {
+		this(visitId, moduleId, isSelected, remarks, null);
+	}
+
+	public SelectedModule withModuleName(String name) {
+		return new SelectedModule(visitId, moduleId, isSelected, remarks, name);
+	}
+}
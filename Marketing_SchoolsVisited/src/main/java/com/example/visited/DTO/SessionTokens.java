@@ -0,0 +1,5 @@
+package com.example.visited.DTO;
+
+// Cookie values handed out on login and on every refresh
+public record SessionTokens(String accessToken, String refreshToken) {
+}
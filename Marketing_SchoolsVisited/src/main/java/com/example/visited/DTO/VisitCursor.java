@@ -0,0 +1,35 @@
+package com.example.visited.DTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Keyset position in a visit listing ordered by (createdAt DESC, id DESC): the last row of the
+// previous page. Handed to clients as an opaque base64url string.
+public record VisitCursor(LocalDateTime createdAt, Integer id) {
+
+	public String encode() {
+		String raw = createdAt + "|" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// null/blank means "first page"
+	public static VisitCursor decode(String cursor) {
+		if (cursor == null || cursor.isBlank()) {
+			return null;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int sep = raw.lastIndexOf('|');
+			if (sep < 0) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+			return new VisitCursor(LocalDateTime.parse(raw.substring(0, sep)),
+					Integer.valueOf(raw.substring(sep + 1)));
+		} catch (DateTimeParseException | IllegalArgumentException e) {
+			// NumberFormatException and base64 errors are IllegalArgumentExceptions too
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.visited.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.visited.entitys.SchoolVisited;
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// Full visit as rendered by the visit listings. Selected straight from JPQL (constructor
+// expression without selectedModules), so listings never load SchoolVisited entities.
+// The status-gated fields are written by statusGatedFields(), which keeps each listing's keys.
+public record VisitDetail(
+		Integer id,
+		String schoolName,
+		LocalDate visitedDate,
+		String marketingExecutiveName,
+		String locationCity,
+		String contactPersonName,
+		String designation,
+		String contactNo,
+		String emailId,
+		Integer schoolStrenght,
+		String boards,
+		String decisionMakerName,
+		String decisionTimeline,
+		LocalDate expectedGoLiveDate,
+		String billingFrequency,
+		@JsonIgnore LocalDate orderBookingDate,
+		@JsonIgnore BigDecimal initialPayment,
+		@JsonIgnore String paymentTerms,
+		BigDecimal costPerMember,
+		String currentSystem,
+		String requiredplatform,
+		Integer noOfUsers,
+		String dataMigrationRequired,
+		String customFeaturesRequired,
+		String customFeatureDescription,
+		String rfidIntegration,
+		String idCards,
+		String paymentGatewayPreference,
+		BigDecimal budgetRange,
+		String demoRequired,
+		LocalDate demoDate,
+		String proposalSent,
+		LocalDate proposalDate,
+		SchoolVisited.VisitStatus status,
+		@JsonIgnore String rejectionReason,
+		LocalDateTime createdAt,
+		// Send back as "version" when editing; a stale value gets 409
+		Long version,
+		List<SelectedModule> selectedModules,
+		// Set by forOwner()
+		@JsonIgnore boolean ownerView) {
+
+	// Target of the JPQL constructor expression; modules are attached afterwards
+	public VisitDetail(Integer id, String schoolName, LocalDate visitedDate, String marketingExecutiveName,
+			String locationCity, String contactPersonName, String designation, String contactNo, String emailId,
+			Integer schoolStrenght, String boards, String decisionMakerName, String decisionTimeline,
+			LocalDate expectedGoLiveDate, String billingFrequency, LocalDate orderBookingDate,
+			BigDecimal initialPayment, String paymentTerms, BigDecimal costPerMember, String currentSystem,
+			String requiredplatform, Integer noOfUsers, String dataMigrationRequired, String customFeaturesRequired,
+			String customFeatureDescription, String rfidIntegration, String idCards, String paymentGatewayPreference,
+			BigDecimal budgetRange, String demoRequired, LocalDate demoDate, String proposalSent,
+			LocalDate proposalDate, SchoolVisited.VisitStatus status, String rejectionReason,
+			LocalDateTime createdAt, Long version) {
+		this(id, schoolName, visitedDate, marketingExecutiveName, locationCity, contactPersonName, designation,
+				contactNo, emailId, schoolStrenght, boards, decisionMakerName, decisionTimeline, expectedGoLiveDate,
+				billingFrequency, orderBookingDate, initialPayment, paymentTerms, costPerMember, currentSystem,
+				requiredplatform, noOfUsers, dataMigrationRequired, customFeaturesRequired, customFeatureDescription,
+				rfidIntegration, idCards, paymentGatewayPreference, budgetRange, demoRequired, demoDate, proposalSent,
+				proposalDate, status, rejectionReason, createdAt, version, List.of(), false);
+	}
+
+	public VisitDetail withModules(List<SelectedModule> modules) {
+		return new VisitDetail(id, schoolName, visitedDate, marketingExecutiveName, locationCity, contactPersonName,
+				designation, contactNo, emailId, schoolStrenght, boards, decisionMakerName, decisionTimeline,
+				expectedGoLiveDate, billingFrequency, orderBookingDate, initialPayment, paymentTerms, costPerMember,
+				currentSystem, requiredplatform, noOfUsers, dataMigrationRequired, customFeaturesRequired,
+				customFeatureDescription, rfidIntegration, idCards, paymentGatewayPreference, budgetRange,
+				demoRequired, demoDate, proposalSent, proposalDate, status, rejectionReason, createdAt, version,
+				modules == null ? List.of() : modules, ownerView);
+	}
+
+	// The marketing user's own view: payment fields only once ACCEPTED, the reason only when REJECTED
+	public VisitDetail forOwner() {
+		boolean accepted = status == SchoolVisited.VisitStatus.ACCEPTED;
+		boolean rejected = status == SchoolVisited.VisitStatus.REJECTED;
+		return new VisitDetail(id, schoolName, visitedDate, marketingExecutiveName, locationCity, contactPersonName,
+				designation, contactNo, emailId, schoolStrenght, boards, decisionMakerName, decisionTimeline,
+				expectedGoLiveDate, billingFrequency, accepted ? orderBookingDate : null,
+				accepted ? initialPayment : null, accepted ? paymentTerms : null, costPerMember, currentSystem,
+				requiredplatform, noOfUsers, dataMigrationRequired, customFeaturesRequired, customFeatureDescription,
+				rfidIntegration, idCards, paymentGatewayPreference, budgetRange, demoRequired, demoDate, proposalSent,
+				proposalDate, status, rejected ? rejectionReason : null, createdAt, version, selectedModules,
+				true);
+	}
+
+	// Admin listings always carry the payment fields and "rejectedreason", nulls included; the
+	// owner view only has the payment fields once ACCEPTED. "rejectionReason" is REJECTED-only in both.
+	@JsonAnyGetter
+	public Map<String, Object> statusGatedFields() {
+		Map<String, Object> fields = new LinkedHashMap<>();
+		if (!ownerView || status == SchoolVisited.VisitStatus.ACCEPTED) {
+			fields.put("orderBookingDate", orderBookingDate);
+			fields.put("initialPayment", initialPayment);
+			fields.put("paymentTerms", paymentTerms);
+		}
+		if (!ownerView) {
+			fields.put("rejectedreason", rejectionReason);
+		}
+		if (status == SchoolVisited.VisitStatus.REJECTED) {
+			fields.put("rejectionReason", rejectionReason);
+		}
+		return fields;
+	}
+}
@@ -0,0 +1,16 @@
+package com.example.visited.DTO;
+
+import com.example.visited.entitys.SchoolVisited;
+
+// The searchable and displayed columns of a visit, as fed to the full-text index
+public record VisitIndexRow(
+		Integer id,
+		Integer userId,
+		String schoolName,
+		String contactPersonName,
+		String decisionMakerName,
+		String emailId,
+		String locationCity,
+		String marketingExecutiveName,
+		SchoolVisited.VisitStatus status) {
+}
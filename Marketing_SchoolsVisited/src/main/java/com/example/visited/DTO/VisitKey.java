@@ -0,0 +1,8 @@
+package com.example.visited.DTO;
+
+import java.time.LocalDateTime;
+
+// Keyset columns of a visit; page queries select only these so they are answered from the
+// (…, created_at, id) indexes, and the rendered columns are then read by id for that page only
+public record VisitKey(Integer id, LocalDateTime createdAt) {
+}
@@ -0,0 +1,31 @@
+package com.example.visited.DTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Keyset position in a search result: the sort it belongs to and the last row's sort value and id.
+// value is null when that row's sort column was NULL. Opaque base64url to clients.
+public record VisitSearchCursor(String sort, boolean descending, String value, Integer id) {
+
+	public String encode() {
+		String raw = sort + "|" + (descending ? "desc" : "asc") + "|" + (value == null ? "" : value) + "|" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// null/blank means "first page"
+	public static VisitSearchCursor decode(String cursor) {
+		if (cursor == null || cursor.isBlank()) {
+			return null;
+		}
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+			if (parts.length != 4 || !("desc".equals(parts[1]) || "asc".equals(parts[1]))) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+			return new VisitSearchCursor(parts[0], "desc".equals(parts[1]), parts[2].isEmpty() ? null : parts[2],
+					Integer.valueOf(parts[3]));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+	}
+}
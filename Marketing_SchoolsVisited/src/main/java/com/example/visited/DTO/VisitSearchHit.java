@@ -0,0 +1,13 @@
+package com.example.visited.DTO;
+
+// One ranked full-text match, rendered from the index without touching the database
+public record VisitSearchHit(
+		Integer id,
+		float score,
+		String schoolName,
+		String contactPersonName,
+		String decisionMakerName,
+		String emailId,
+		String locationCity,
+		String status) {
+}
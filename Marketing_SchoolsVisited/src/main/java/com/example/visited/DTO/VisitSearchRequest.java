@@ -0,0 +1,26 @@
+package com.example.visited.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import com.example.visited.entitys.SchoolVisited;
+
+// Query parameters of the visit search endpoints; every filter is optional and they combine with AND.
+// sort = createdAt (default) | visitedDate | budgetRange, direction = desc (default) | asc.
+public record VisitSearchRequest(
+		SchoolVisited.VisitStatus status,
+		String city,
+		String executive,
+		@DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate visitedFrom,
+		@DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate visitedTo,
+		String board,
+		BigDecimal budgetMin,
+		BigDecimal budgetMax,
+		String sort,
+		String direction,
+		String cursor,
+		Integer limit,
+		String view) {
+}
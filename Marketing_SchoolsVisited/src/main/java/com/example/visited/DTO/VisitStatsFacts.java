@@ -0,0 +1,31 @@
+package com.example.visited.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import com.example.visited.entitys.SchoolVisited;
+
+// The columns of a visit that decide its visit_stats group and measures (plus orderBookingDate,
+// which the status-change response reports)
+public record VisitStatsFacts(
+		Integer userId,
+		SchoolVisited.VisitStatus status,
+		String locationCity,
+		LocalDate visitedDate,
+		LocalDateTime createdAt,
+		BigDecimal budgetRange,
+		BigDecimal initialPayment,
+		LocalDate orderBookingDate) {
+
+	public static VisitStatsFacts of(SchoolVisited visit) {
+		return new VisitStatsFacts(visit.getUser().getUserId(), visit.getStatus(), visit.getLocationCity(),
+				visit.getVisitedDate(), visit.getCreatedAt(), visit.getBudgetRange(), visit.getInitialPayment(),
+				visit.getOrderBookingDate());
+	}
+
+	public VisitStatsFacts withStatus(SchoolVisited.VisitStatus status) {
+		return new VisitStatsFacts(userId, status, locationCity, visitedDate, createdAt, budgetRange, initialPayment,
+				orderBookingDate);
+	}
+}
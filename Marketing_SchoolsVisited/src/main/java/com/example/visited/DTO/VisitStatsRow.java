@@ -0,0 +1,18 @@
+package com.example.visited.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.example.visited.entitys.SchoolVisited;
+
+// One group of the visit_stats rollup. Dimensions left out of groupBy are null; month is the first
+// day of the month; initialPaymentSum only counts ACCEPTED visits.
+public record VisitStatsRow(
+		Integer userId,
+		SchoolVisited.VisitStatus status,
+		String city,
+		LocalDate month,
+		long visitCount,
+		BigDecimal budgetSum,
+		BigDecimal initialPaymentSum) {
+}
@@ -0,0 +1,17 @@
+package com.example.visited.DTO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import com.example.visited.entitys.SchoolVisited;
+
+// Compact listing row (?view=summary): no TEXT columns and no modules
+public record VisitSummary(
+		Integer id,
+		String schoolName,
+		LocalDate visitedDate,
+		String marketingExecutiveName,
+		String locationCity,
+		SchoolVisited.VisitStatus status,
+		LocalDateTime createdAt) {
+}
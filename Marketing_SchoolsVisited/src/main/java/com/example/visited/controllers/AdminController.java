@@ -1,22 +1,34 @@
 package com.example.visited.controllers;
 
+import com.example.visited.DTO.RevenueReport;
+import com.example.visited.DTO.VisitDetail;
+import com.example.visited.DTO.VisitSearchRequest;
 import com.example.visited.entitys.Modules;
+import com.example.visited.entitys.SchoolVisited;
 import org.springframework.http.MediaType; // For MULTIPART_FORM_DATA_VALUE
 import org.springframework.web.multipart.MultipartFile; // For @RequestPart
 import com.example.visited.entitys.User;
 import com.example.visited.services.AdmiService;
 import com.example.visited.services.MarketingService;
+import com.example.visited.services.ModuleCatalog;
 import com.example.visited.services.CommunicationService;
+import com.example.visited.services.RevenueAnalyticsService;
+import com.example.visited.services.VisitExportService;
+import com.example.visited.services.VisitFullTextIndex;
+import com.example.visited.services.VisitSearchService;
+import com.example.visited.services.VisitStatsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.Max;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 
@@ -29,11 +41,26 @@ public class AdminController {
     private final AdmiService admiService;
     private final MarketingService marketingService;
     private final CommunicationService communicationService;
-
-    public AdminController(AdmiService admiService, MarketingService marketingService, CommunicationService communicationService) {
+    private final VisitExportService visitExportService;
+    private final VisitSearchService visitSearchService;
+    private final VisitFullTextIndex visitFullTextIndex;
+    private final VisitStatsService visitStatsService;
+    private final RevenueAnalyticsService revenueAnalyticsService;
+    private final ModuleCatalog moduleCatalog;
+
+    public AdminController(AdmiService admiService, MarketingService marketingService, CommunicationService communicationService,
+            VisitExportService visitExportService, VisitSearchService visitSearchService,
+            VisitFullTextIndex visitFullTextIndex, VisitStatsService visitStatsService,
+            RevenueAnalyticsService revenueAnalyticsService, ModuleCatalog moduleCatalog) {
         this.admiService = admiService;
         this.marketingService = marketingService;
         this.communicationService = communicationService;
+        this.visitExportService = visitExportService;
+        this.visitSearchService = visitSearchService;
+        this.visitFullTextIndex = visitFullTextIndex;
+        this.visitStatsService = visitStatsService;
+        this.revenueAnalyticsService = revenueAnalyticsService;
+        this.moduleCatalog = moduleCatalog;
     }
 
   
@@ -81,12 +108,17 @@ public class AdminController {
         }
     }
     @PutMapping("/schoolVisits/{id}")
-    public ResponseEntity<Map<String, Object>> updateSchoolVisitAsAdmin(
+    public ResponseEntity<?> updateSchoolVisitAsAdmin(
             @PathVariable("id") Integer visitId,
             @RequestBody Map<String, Object> visitData) {
 
-        Map<String, Object> result = marketingService.adminUpdateSchoolVisit(visitId, visitData);
-        return ResponseEntity.ok(result);
+        try {
+            Map<String, Object> result = marketingService.adminUpdateSchoolVisit(visitId, visitData);
+            return ResponseEntity.ok(result);
+        } catch (IllegalStateException e) {
+            // The requested status is not reachable from the visit's current one
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
     }
     @PostMapping("/school-visit")
     public ResponseEntity<?> submitSchoolVisit(@RequestBody Map<String, Object> visitData, HttpServletRequest request) {
@@ -140,7 +172,7 @@ public class AdminController {
                     .body(Map.of("error", "Admin role required"));
         }
 
-        List<Map<String, Object>> data = marketingService.getAllSchoolVisits(userId);
+        List<VisitDetail> data = marketingService.getAllSchoolVisits(userId);
 
         return ResponseEntity.ok(data);
     }
@@ -218,29 +250,108 @@ public class AdminController {
     }
 
     // Read-only endpoints - no admin check needed (filter already protected /admin/*)
+    // Keyset-paginated, newest first; optional ?status=PENDING|ACCEPTED|REJECTED filter and
+    // ?view=summary for compact rows
     @GetMapping("/school-visits")
-    public ResponseEntity<List<Map<String, Object>>> getAllSchoolVisits() {
-        return ResponseEntity.ok(marketingService.getAllSchoolVisitsForAdmin());
+    public ResponseEntity<Map<String, Object>> getAllSchoolVisits(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "detail") String view) {
+        return ResponseEntity.ok(marketingService.getSchoolVisitsPageForAdmin(parseVisitStatus(status), cursor, limit,
+                VisitViews.isSummary(view)));
+    }
+
+    // Combined filters, sort and keyset paging; see VisitSearchRequest for the parameters
+    @GetMapping("/school-visits/search")
+    public ResponseEntity<Map<String, Object>> searchSchoolVisits(@ModelAttribute VisitSearchRequest search) {
+        return ResponseEntity.ok(visitSearchService.search(search, null, VisitViews.isSummary(search.view())));
+    }
+
+    // Ranked, typo-tolerant search over school, contact, email, city and executive names
+    @GetMapping("/school-visits/fulltext")
+    public ResponseEntity<Map<String, Object>> fullTextSearchSchoolVisits(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(Map.of("hits", visitFullTextIndex.search(q, null, limit)));
+    }
+
+    // Every visit (optionally one status) as a single JSON array, streamed as it is read
+    @GetMapping("/school-visits/export")
+    public ResponseEntity<?> exportSchoolVisits(@RequestParam(required = false) String status) {
+        return visitExportService.export(parseVisitStatus(status))
+                .<ResponseEntity<?>>map(body -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(body))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "30")
+                        .body(Map.of("error", "Another export is running, please retry shortly")));
+    }
+
+    // Pipeline counts and sums from the visit_stats rollup, e.g. ?groupBy=status,month&from=2024-04&to=2025-03.
+    // groupBy takes userId, status, city and month (default: all four); from/to are yyyy-MM, inclusive.
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getVisitStats(
+            @RequestParam(required = false) List<String> groupBy,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        return ResponseEntity.ok(Map.of("groups", visitStatsService.getStats(groupBy, parseMonth(from), parseMonth(to))));
+    }
+
+    // Checks the rollup against school_visited and repairs the groups that differ; ?dryRun=true only reports
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<VisitStatsService.Verification> rebuildVisitStats(
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        return ResponseEntity.ok(visitStatsService.rebuild(dryRun));
+    }
+
+    // Booked revenue of accepted orders, e.g. ?by=executive&from=2024-04&to=2025-03. by is month (default),
+    // executive, billingFrequency or module; from/to are booking months (yyyy-MM), default the last 12.
+    @GetMapping("/revenue")
+    public ResponseEntity<RevenueReport> getRevenue(
+            @RequestParam(required = false) String by,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        return ResponseEntity.ok(revenueAnalyticsService.getReport(by, parseMonth(from), parseMonth(to)));
+    }
+
+    private static YearMonth parseMonth(String month) {
+        if (month == null || month.isBlank()) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(month.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid month (expected yyyy-MM): " + month);
+        }
+    }
+
+    private static SchoolVisited.VisitStatus parseVisitStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return SchoolVisited.VisitStatus.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid status: " + status);
+        }
     }
 
     @GetMapping("/accepted-orders")
-    public ResponseEntity<List<Map<String, Object>>> getAcceptedOrders() {
+    public ResponseEntity<List<VisitDetail>> getAcceptedOrders() {
         return ResponseEntity.ok(marketingService.getAcceptedOrders());
     }
 
+    // Served from the in-memory catalog; a matching If-None-Match gets a 304 without a DB read
     @GetMapping("/modules")
-    public ResponseEntity<List<Map<String, Object>>> getAllModules() {
-        List<Modules> modules = admiService.getAllModules();
-        List<Map<String, Object>> moduleList = new ArrayList<>();
-        for (Modules module : modules) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", module.getId());
-            map.put("moduleName", module.getModuleName());
-            map.put("description", module.getDescription());
-            map.put("isActive", module.getIsActive());
-            moduleList.add(map);
-        }
-        return ResponseEntity.ok(moduleList);
+    public ResponseEntity<List<Map<String, Object>>> getAllModules(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ModuleCatalog.Snapshot catalog = moduleCatalog.snapshot();
+        if (ModuleCatalog.matches(ifNoneMatch, catalog.allETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(catalog.allETag()).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(catalog.allETag()).cacheControl(CacheControl.noCache()).body(catalog.all());
     }
 
     @PostMapping("/modules")
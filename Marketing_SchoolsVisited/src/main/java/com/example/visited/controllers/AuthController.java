@@ -1,19 +1,35 @@
 package com.example.visited.controllers;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.visited.DTO.AuthPrincipal;
 import com.example.visited.DTO.LoginRequest;
+import com.example.visited.DTO.SessionTokens;
 import com.example.visited.entitys.User;
 import com.example.visited.services.AuthService;
+import com.example.visited.services.InvalidCredentialsException;
+import com.example.visited.services.LoginAttemptService;
 
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,22 +40,44 @@ import jakarta.servlet.http.HttpServletResponse;
 @RequestMapping("/auth")
 public class AuthController {
 	 
+	private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
+
 	private final AuthService authService;
+	private final LoginAttemptService loginAttemptService;
 	
-	 public AuthController(AuthService authService) {     
+	 public AuthController(AuthService authService, LoginAttemptService loginAttemptService) {     
 		                                                  //HttpServletRequest request  - READ incoming data  for CRUD
                                                           //HttpServletResponse response - WRITE outgoing data  for login/logout
 
 		this.authService = authService;
+		this.loginAttemptService = loginAttemptService;
 	}
 
 	
+	 // Returns a future so the Tomcat worker is released while the password check waits
+	 // on the bounded login executor; a full queue answers 503 straight away. The rest runs on
+	 // AuthService's session executor after the request thread has moved on, so it never touches the
+	 // servlet response: cookies go back as headers on the ResponseEntity.
 	 @PostMapping("/login")
 	    @CrossOrigin
-	    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest, HttpServletResponse response) {
-	        try {
-	            User user = authService.authenticate(loginRequest.getUsername(), loginRequest.getPassword());
-	            
+	    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+	        String userAgent = request.getHeader("User-Agent");
+	        // The client address, not the load balancer's: RemoteIpValve resolves X-Forwarded-For
+	        String ipAddress = request.getRemoteAddr();
+	        String username = loginRequest.getUsername();
+
+	        // Per-username throttle / failure backoff (per-IP is checked in RateLimitFilter)
+	        long retryAfter = loginAttemptService.tryAcquireForUsername(username);
+	        if (retryAfter > 0) {
+	            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+	                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+	                    .body(Map.of("error", "Too many login attempts. Try again later.")));
+	        }
+
+	        return authService.authenticate(username, loginRequest.getPassword())
+	                .<ResponseEntity<?>>thenApply(user -> {
+	            loginAttemptService.recordSuccess(username);
+
 	            // Block pending/rejected users
 	            if (user.getStatus() != User.Status.Approved) {
 	                Map<String, Object> responseBody = new HashMap<>();
@@ -49,43 +87,38 @@ public class AuthController {
 	                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(responseBody);
 	            }
 	            
-	            String token = authService.generateToken(user);
-
-	            Cookie cookie = new Cookie("authToken", token);
-	            cookie.setHttpOnly(true);
-	            cookie.setSecure(false); // Set to true if using HTTPS
-	            cookie.setPath("/");
-	            cookie.setMaxAge(3600); // 1 hour
-	            cookie.setDomain("localhost");
-	            response.addCookie(cookie);
-	           // Optional but useful
-	            
-	            response.addHeader("Set-Cookie",
-	                    String.format("authToken=%s; HttpOnly; Path=/; Max-Age=3600; SameSite=None", token));
+	            SessionTokens tokens = authService.createSession(user, userAgent, ipAddress);
 
-	            
 	            Map<String, Object> responseBody = new HashMap<>();
 	            responseBody.put("message", "Login successful");
 	            responseBody.put("role", user.getRole().name());
 	            responseBody.put("username", user.getUsername());
 
-	            return ResponseEntity.ok(responseBody);
-	            
-	        } 
-	        catch (RuntimeException e) 
-	        {
-	            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", e.getMessage()));
-	        }
+	            return ResponseEntity.ok().headers(sessionCookies(tokens)).body(responseBody);
+	        })
+	                .exceptionally(ex -> {
+	            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+	            if (cause instanceof RejectedExecutionException) {
+	                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+	                        .header(HttpHeaders.RETRY_AFTER, "1")
+	                        .body(Map.of("error", "Too many login attempts in progress, please retry"));
+	            }
+	            if (cause instanceof InvalidCredentialsException) {
+	                loginAttemptService.recordFailure(username);
+	                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", cause.getMessage()));
+	            }
+	            // A server fault (e.g. the session INSERT failing) is not the user's failed attempt
+	            logger.error("Login failed for {}", username, cause);
+	            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Login failed"));
+	        });
 	    }
 @PostMapping("/logout")
 public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse response) {
 	try {
-		// Get authenticated user
-		User user = (User) request.getAttribute("authenticatedUser");
-		
-		// Delete token from database if user exists
-		if (user != null) {
-			authService.logout(user);
+		// Revoke only the session this request belongs to; other devices stay logged in
+		AuthPrincipal principal = (AuthPrincipal) request.getAttribute("authPrincipal");
+		if (principal != null) {
+			authService.logout(principal);
 		}
 		
 		// Clear cookie (always do this, even if user is null)
@@ -100,6 +133,8 @@ public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse
 		// Also add Set-Cookie header for better compatibility
 		response.addHeader("Set-Cookie", 
 			"authToken=; HttpOnly; Path=/; Max-Age=0; Domain=localhost");
+		response.addHeader("Set-Cookie",
+			"refreshToken=; HttpOnly; Path=/auth/refresh; Max-Age=0; Domain=localhost");
 
 		return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
 	} catch (Exception e) {
@@ -115,6 +150,20 @@ public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse
 	}
 }
 
+// Renews the short-lived access token without a password/BCrypt round trip.
+// The refresh token is rotated on every use.
+@PostMapping("/refresh")
+public ResponseEntity<?> refresh(@CookieValue(name = "refreshToken", required = false) String refreshToken) {
+	if (refreshToken == null || refreshToken.isBlank()) {
+		return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Refresh token missing"));
+	}
+	return authService.refresh(refreshToken)
+			.<ResponseEntity<?>>map(tokens -> ResponseEntity.ok().headers(sessionCookies(tokens))
+					.body(Map.of("message", "Session refreshed")))
+			.orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+					.body(Map.of("error", "Session expired")));
+}
+
 @PostMapping("/validate")
 public ResponseEntity<?> validateSession(HttpServletRequest request) {
 	User user = (User) request.getAttribute("authenticatedUser");
@@ -129,4 +178,46 @@ public ResponseEntity<?> validateSession(HttpServletRequest request) {
 	));
 }
 
+@GetMapping("/sessions")
+public ResponseEntity<?> listSessions(HttpServletRequest request) {
+	AuthPrincipal principal = (AuthPrincipal) request.getAttribute("authPrincipal");
+	if (principal == null) {
+		return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+	}
+	List<Map<String, Object>> sessions = authService.listSessions(principal.userId(), principal.tokenId());
+	return ResponseEntity.ok(Map.of("total", sessions.size(), "sessions", sessions));
+}
+
+@DeleteMapping("/sessions/{sessionId}")
+public ResponseEntity<?> revokeSession(@PathVariable String sessionId, HttpServletRequest request) {
+	AuthPrincipal principal = (AuthPrincipal) request.getAttribute("authPrincipal");
+	if (principal == null) {
+		return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+	}
+	if (!authService.revokeSession(principal.userId(), sessionId)) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Session not found"));
+	}
+	return ResponseEntity.ok(Map.of("message", "Session revoked", "sessionId", sessionId));
+}
+
+// Set-Cookie headers for a new or refreshed session: each cookie once for the localhost domain and
+// once as SameSite=None for the cross-site frontend, as the login has always sent them
+private HttpHeaders sessionCookies(SessionTokens tokens) {
+	long accessMaxAge = authService.getAccessTokenMaxAgeSeconds();
+	long refreshMaxAge = authService.getRefreshTokenMaxAgeSeconds();
+
+	HttpHeaders headers = new HttpHeaders();
+	headers.add(HttpHeaders.SET_COOKIE, ResponseCookie.from("authToken", tokens.accessToken())
+			.httpOnly(true).secure(false).path("/").maxAge(accessMaxAge).domain("localhost").build().toString());
+	// Refresh cookie is only ever sent to /auth/refresh
+	headers.add(HttpHeaders.SET_COOKIE, ResponseCookie.from("refreshToken", tokens.refreshToken())
+			.httpOnly(true).secure(false).path("/auth/refresh").maxAge(refreshMaxAge).domain("localhost").build()
+			.toString());
+	headers.add(HttpHeaders.SET_COOKIE, ResponseCookie.from("authToken", tokens.accessToken())
+			.httpOnly(true).path("/").maxAge(accessMaxAge).sameSite("None").build().toString());
+	headers.add(HttpHeaders.SET_COOKIE, ResponseCookie.from("refreshToken", tokens.refreshToken())
+			.httpOnly(true).path("/auth/refresh").maxAge(refreshMaxAge).sameSite("None").build().toString());
+	return headers;
+}
+
 }
@@ -5,6 +5,9 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +15,10 @@ import org.springframework.web.bind.annotation.*;
 import com.example.visited.services.MarketingService;
 import com.example.visited.services.CommunicationService;
 import com.example.visited.services.AdminLookupService;
+import com.example.visited.services.ModuleCatalog;
+import com.example.visited.services.VisitFullTextIndex;
+import com.example.visited.services.VisitSearchService;
+import com.example.visited.DTO.VisitSearchRequest;
 import com.example.visited.entitys.User;
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -24,18 +31,28 @@ public class MarketingController {
     private final MarketingService marketingService;
     private final CommunicationService communicationService;
     private final AdminLookupService adminLookupService;
+    private final VisitSearchService visitSearchService;
+    private final VisitFullTextIndex visitFullTextIndex;
+    private final ModuleCatalog moduleCatalog;
 
     public MarketingController(MarketingService marketingService, CommunicationService communicationService,
-                               AdminLookupService adminLookupService) {
+                               AdminLookupService adminLookupService, VisitSearchService visitSearchService,
+                               VisitFullTextIndex visitFullTextIndex, ModuleCatalog moduleCatalog) {
         this.marketingService = marketingService;
         this.communicationService = communicationService;
         this.adminLookupService = adminLookupService;
+        this.visitSearchService = visitSearchService;
+        this.visitFullTextIndex = visitFullTextIndex;
+        this.moduleCatalog = moduleCatalog;
     }
 
     
 
+    // Served from the in-memory catalog; a matching If-None-Match gets a 304 without a DB read
     @GetMapping("/modules")
-    public ResponseEntity<?> getAllModules(HttpServletRequest request) {
+    public ResponseEntity<?> getAllModules(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
         try {
             User user = (User) request.getAttribute("authenticatedUser");
             if (user == null) {
@@ -44,9 +61,14 @@ public class MarketingController {
             if (user.getRole() != User.Role.MARKETING) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Marketing role required"));
             }
-            List<Map<String, Object>> modules = marketingService.getAllActiveModules();
-            logger.info("Fetched {} active modules", modules.size());
-            return ResponseEntity.ok(modules);
+            ModuleCatalog.Snapshot catalog = moduleCatalog.snapshot();
+            if (ModuleCatalog.matches(ifNoneMatch, catalog.activeETag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(catalog.activeETag()).cacheControl(CacheControl.noCache()).build();
+            }
+            logger.debug("Serving {} active modules", catalog.active().size());
+            return ResponseEntity.ok().eTag(catalog.activeETag()).cacheControl(CacheControl.noCache())
+                    .body(catalog.active());
         } catch (Exception e) {
             logger.error("Failed to fetch modules", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -95,6 +117,9 @@ public class MarketingController {
             return ResponseEntity.ok(result);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "School visit was changed by someone else; reload and try again"));
         } catch (Exception e) {
             logger.error("Failed to update school visit", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -102,8 +127,14 @@ public class MarketingController {
         }
     }
 
+    // Keyset-paginated: pass the returned nextCursor back as ?cursor= until hasMore is false.
+    // ?view=summary returns compact rows without contact details or modules.
     @GetMapping("/school-visits")
-    public ResponseEntity<?> getAllSchoolVisits(HttpServletRequest request) {
+    public ResponseEntity<?> getAllSchoolVisits(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "detail") String view,
+            HttpServletRequest request) {
         try {
             User user = (User) request.getAttribute("authenticatedUser");
             if (user == null) {
@@ -112,9 +143,13 @@ public class MarketingController {
             if (user.getRole() != User.Role.MARKETING) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Marketing role required"));
             }
-            List<Map<String, Object>> visits = marketingService.getAllSchoolVisits(user.getUserId());
-            logger.info("Fetched {} school visits for user: {}", visits.size(), user.getUserId());
-            return ResponseEntity.ok(visits);
+            Map<String, Object> page = marketingService.getSchoolVisitsPage(user.getUserId(), cursor, limit,
+                    VisitViews.isSummary(view));
+            logger.info("Fetched {} school visits for user: {}", ((List<?>) page.get("visits")).size(),
+                    user.getUserId());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Failed to fetch school visits", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -122,6 +157,52 @@ public class MarketingController {
         }
     }
 
+    // Search within the caller's own visits; same parameters as /admin/school-visits/search
+    @GetMapping("/school-visits/search")
+    public ResponseEntity<?> searchSchoolVisits(@ModelAttribute VisitSearchRequest search, HttpServletRequest request) {
+        try {
+            User user = (User) request.getAttribute("authenticatedUser");
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+            }
+            if (user.getRole() != User.Role.MARKETING) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Marketing role required"));
+            }
+            return ResponseEntity.ok(visitSearchService.search(search, user.getUserId(),
+                    VisitViews.isSummary(search.view())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to search school visits", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to search school visits"));
+        }
+    }
+
+    // Full-text search within the caller's own visits; same parameters as /admin/school-visits/fulltext
+    @GetMapping("/school-visits/fulltext")
+    public ResponseEntity<?> fullTextSearchSchoolVisits(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer limit,
+            HttpServletRequest request) {
+        try {
+            User user = (User) request.getAttribute("authenticatedUser");
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+            }
+            if (user.getRole() != User.Role.MARKETING) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Marketing role required"));
+            }
+            return ResponseEntity.ok(Map.of("hits", visitFullTextIndex.search(q, user.getUserId(), limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to search school visits", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to search school visits"));
+        }
+    }
+
     @PutMapping("/change-visit-status/{visitId}")
     public ResponseEntity<?> changeVisitStatus(
             @PathVariable Integer visitId,
@@ -139,6 +220,11 @@ public class MarketingController {
             Map<String, Object> result = marketingService.changeVisitStatus(visitId, newStatus, statusData);
             logger.info("Visit status changed for ID: {}", visitId);
             return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            // The visit is no longer in the status this transition starts from
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Failed to change visit status", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,18 @@
+package com.example.visited.controllers;
+
+// ?view= of the visit listings: "detail" (default, full rows with modules) or "summary"
+final class VisitViews {
+
+    private VisitViews() {
+    }
+
+    static boolean isSummary(String view) {
+        if (view == null || view.isBlank() || "detail".equalsIgnoreCase(view)) {
+            return false;
+        }
+        if ("summary".equalsIgnoreCase(view)) {
+            return true;
+        }
+        throw new IllegalArgumentException("view must be 'detail' or 'summary'");
+    }
+}
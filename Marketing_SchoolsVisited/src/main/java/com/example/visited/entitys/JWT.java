@@ -11,12 +11,19 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "jwt_tokens")
+@Table(name = "jwt_tokens", indexes = {
+		@Index(name = "ux_jwt_tokens_token_hash", columnList = "token_hash", unique = true),
+		@Index(name = "ux_jwt_tokens_jti", columnList = "jti", unique = true),
+		@Index(name = "ix_jwt_tokens_revoked_at", columnList = "revoked_at"),
+		@Index(name = "ix_jwt_tokens_expires_at", columnList = "expires_at"),
+		@Index(name = "ix_jwt_tokens_user_expires", columnList = "user_id, expires_at") })
+// One row per login session (device). The jti doubles as the session id.
 public class JWT {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,9 +34,38 @@ public class JWT {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-	@Column(nullable = false, length = 1000)
+	// Legacy rows only; sessions are looked up by token_hash / jti and the raw token is no longer stored
+	@Column(length = 1000)
 	private String token;
 
+	// SHA-256 of the token; every lookup by token goes through this fixed-width indexed key
+	@Column(name = "token_hash", columnDefinition = "BINARY(32)", unique = true)
+	private byte[] tokenHash;
+
+	// "jti" claim of the token; revocation is tracked by this id instead of looking the token up
+	@Column(name = "jti", length = 36, unique = true)
+	private String jti;
+
+	@Column(name = "revoked_at")
+	private LocalDateTime revokedAt;
+
+	// SHA-256 of the secret half of the current refresh token; rotated on every /auth/refresh
+	@Column(name = "refresh_token_hash", columnDefinition = "BINARY(32)")
+	private byte[] refreshTokenHash;
+
+	// The hash it replaced, kept to tell a concurrent double-refresh apart from token reuse
+	@Column(name = "previous_refresh_hash", columnDefinition = "BINARY(32)")
+	private byte[] previousRefreshHash;
+
+	@Column(name = "refreshed_at")
+	private LocalDateTime refreshedAt;
+
+	@Column(name = "device_label", length = 255)
+	private String deviceLabel;
+
+	@Column(name = "ip_address", length = 45)
+	private String ipAddress;
+
 	@Column(name = "expires_at", nullable = false)
 	private LocalDateTime expiresAt;
 
@@ -51,6 +87,13 @@ public class JWT {
 		this.expiresAt = expiresAt;
 	}
 
+	public JWT(User user, byte[] tokenHash, String jti, LocalDateTime expiresAt) {
+		this.user = user;
+		this.tokenHash = tokenHash;
+		this.jti = jti;
+		this.expiresAt = expiresAt;
+	}
+
 //	@PrePersist
 //	protected void onCreate() {
 //		createdAt = LocalDateTime.now();
@@ -84,6 +127,70 @@ public class JWT {
 		this.token = token;
 	}
 
+	public byte[] getTokenHash() {
+		return tokenHash;
+	}
+
+	public void setTokenHash(byte[] tokenHash) {
+		this.tokenHash = tokenHash;
+	}
+
+	public String getJti() {
+		return jti;
+	}
+
+	public void setJti(String jti) {
+		this.jti = jti;
+	}
+
+	public LocalDateTime getRevokedAt() {
+		return revokedAt;
+	}
+
+	public void setRevokedAt(LocalDateTime revokedAt) {
+		this.revokedAt = revokedAt;
+	}
+
+	public byte[] getRefreshTokenHash() {
+		return refreshTokenHash;
+	}
+
+	public void setRefreshTokenHash(byte[] refreshTokenHash) {
+		this.refreshTokenHash = refreshTokenHash;
+	}
+
+	public byte[] getPreviousRefreshHash() {
+		return previousRefreshHash;
+	}
+
+	public void setPreviousRefreshHash(byte[] previousRefreshHash) {
+		this.previousRefreshHash = previousRefreshHash;
+	}
+
+	public LocalDateTime getRefreshedAt() {
+		return refreshedAt;
+	}
+
+	public void setRefreshedAt(LocalDateTime refreshedAt) {
+		this.refreshedAt = refreshedAt;
+	}
+
+	public String getDeviceLabel() {
+		return deviceLabel;
+	}
+
+	public void setDeviceLabel(String deviceLabel) {
+		this.deviceLabel = deviceLabel;
+	}
+
+	public String getIpAddress() {
+		return ipAddress;
+	}
+
+	public void setIpAddress(String ipAddress) {
+		this.ipAddress = ipAddress;
+	}
+
 	public LocalDateTime getExpiresAt() {
 		return expiresAt;
 	}
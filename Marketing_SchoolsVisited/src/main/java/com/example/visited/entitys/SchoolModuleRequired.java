@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "school_modules_required")
+@Table(name = "school_modules_required", uniqueConstraints = @UniqueConstraint(
+		name = "uk_school_modules_required_visit_module", columnNames = { "school_visited_id", "module_id" }),
+		indexes = @Index(name = "ix_school_modules_required_selected",
+				columnList = "is_selected, module_id, school_visited_id"))
 public class SchoolModuleRequired {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,12 +1,24 @@
 package com.example.visited.entitys;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "school_visited")
+@Table(name = "school_visited", indexes = {
+        @Index(name = "ix_school_visited_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "ix_school_visited_status_created", columnList = "status, created_at, id"),
+        @Index(name = "ix_school_visited_created", columnList = "created_at, id"),
+        @Index(name = "ix_school_visited_city_created", columnList = "location_city, created_at, id"),
+        @Index(name = "ix_school_visited_exec_created", columnList = "marketing_executive_name, created_at, id"),
+        @Index(name = "ix_school_visited_visited_date", columnList = "visited_date, id"),
+        @Index(name = "ix_school_visited_budget", columnList = "budget_range, id"),
+        @Index(name = "ix_school_visited_status_booking", columnList = "status, order_booking_date") })
+// UPDATEs carry only the changed columns; @Version makes a concurrent edit fail instead of overwriting
+@DynamicUpdate
 public class SchoolVisited {
 
     @Id
@@ -27,7 +39,8 @@ public class SchoolVisited {
     @Column(name = "marketing_executive_name", length = 50)
     private String marketingExecutiveName;
 
-    @Column(name = "location_city", columnDefinition = "TEXT")
+    // VARCHAR so it can be indexed for the city search filter
+    @Column(name = "location_city", length = 100)
     private String locationCity;
 
     @Column(name = "contact_person_name", columnDefinition = "TEXT")
@@ -123,12 +136,17 @@ public class SchoolVisited {
     @Column(name = "rejection_reason", columnDefinition = "TEXT")
     private String rejectionReason;
 
-    @Column(name = "created_at")
+    // Keyset pagination orders on (created_at, id), so this is never null
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     // ── JPA Callbacks for timestamps ──
     @PrePersist
     protected void onCreate() {
@@ -261,6 +279,7 @@ public class SchoolVisited {
 
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    public Long getVersion() { return version; }
 	public String getBillingfrequency() {
 		return billingfrequency;
 	}
@@ -0,0 +1,117 @@
+package com.example.visited.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// AIMD concurrency limit with a latency-gradient overload signal.
+// The no-load latency is the lowest recent response time of each route, decaying slowly upward
+// so it can follow a permanent shift. It is kept per route because one group mixes cheap and
+// expensive endpoints: against a shared minimum, every normal response of the slow route would
+// look like overload and hold the whole group at its minimum limit. The limit itself stays
+// shared, as the routes share the same connections. A sample slower than tolerance x its route's
+// no-load (or a 5xx) cuts the limit
+// by 10%; a fast sample taken while the limit was actually in use grows it by 1/limit (about
+// +1 per limit's worth of requests). In-flight requests above the limit wait up to maxWait
+// in a bounded queue, then are rejected.
+final class AdaptiveConcurrencyLimiter {
+
+	private static final double BACKOFF_RATIO = 0.9;
+	// Per-sample drift of the no-load estimate towards the current sample (~1% per request)
+	private static final double NO_LOAD_DRIFT = 0.01;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final int queueSize;
+	private final long maxWaitNanos;
+	private final double latencyTolerance;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition slotFreed = lock.newCondition();
+
+	private double limit;
+	private int inFlight;
+	private int waiting;
+	// route -> no-load latency; routes come from configuration, so the map stays small
+	private final Map<String, Double> noLoadLatencyNanos = new HashMap<>();
+
+	AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int queueSize, long maxWaitNanos,
+			double latencyTolerance) {
+		if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("concurrency limits must satisfy 1 <= min <= initial <= max");
+		}
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.queueSize = queueSize;
+		this.maxWaitNanos = maxWaitNanos;
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	// true = caller holds a slot and must call release()
+	boolean tryAcquire() throws InterruptedException {
+		lock.lock();
+		try {
+			if (inFlight < (int) limit) {
+				inFlight++;
+				return true;
+			}
+			if (waiting >= queueSize) {
+				return false;
+			}
+			waiting++;
+			try {
+				long remaining = maxWaitNanos;
+				while (inFlight >= (int) limit) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = slotFreed.awaitNanos(remaining);
+				}
+				inFlight++;
+				return true;
+			} finally {
+				waiting--;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void release(String route, long latencyNanos, boolean failed) {
+		lock.lock();
+		try {
+			boolean utilized = inFlight >= limit / 2;
+			inFlight--;
+
+			Double previous = noLoadLatencyNanos.get(route);
+			double noLoad = previous == null || latencyNanos < previous
+					? latencyNanos
+					: previous + (latencyNanos - previous) * NO_LOAD_DRIFT;
+			noLoadLatencyNanos.put(route, noLoad);
+
+			if (failed || latencyNanos > noLoad * latencyTolerance) {
+				limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+			} else if (utilized) {
+				limit = Math.min(maxLimit, limit + 1.0 / limit);
+			}
+			slotFreed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int limit() {
+		return (int) limit;
+	}
+
+	int inFlight() {
+		return inFlight;
+	}
+
+	int waiting() {
+		return waiting;
+	}
+
+}
@@ -3,17 +3,22 @@ package com.example.visited.filter;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import com.example.visited.DTO.AuthPrincipal;
+import com.example.visited.DTO.CachedUser;
 import com.example.visited.entitys.User;
 import com.example.visited.entitys.User.Role;
-import com.example.visited.repositories.UserRepository;
 import com.example.visited.services.AuthService;
+import com.example.visited.services.UserPrincipalCache;
 
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
@@ -28,28 +33,34 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 @Component
+@Order(1) // before RateLimitFilter, which keys budgets on the principal set here
 @WebFilter(urlPatterns = {"/api/*", "/admin/*","/auth/*"})
 public class AuthenticationFilter implements Filter {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthenticationFilter.class);
 
     private final AuthService authService;
-    private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
     
 
     @Value("${cors.allowed-origin:http://localhost:5173}")
     private String allowedOrigin;
 
-    private static final String[] PUBLIC_PATHS = {
-        "/auth/login"
-    		
-        // add more public endpoints if needed: register, forgot-password, etc.
-    };
-
-    public AuthenticationFilter(AuthService authService, UserRepository userRepository) {
+    // Route policy table, compiled once into a trie. Most specific pattern wins; add public
+    // endpoints (register, forgot-password, etc.) here. Method-specific rules: Rule.forMethod("GET").
+    private static final RoutePolicy ROUTES = new RoutePolicy(List.of(
+            RoutePolicy.Rule.publicRoute("/auth/login"),
+            RoutePolicy.Rule.publicRoute("/auth/refresh"),
+            RoutePolicy.Rule.publicRoute("/health/**"),
+            RoutePolicy.Rule.roles("/admin/**", "Admin access required", Role.ADMIN),
+            // Both admin + marketing may access /api/*
+            RoutePolicy.Rule.roles("/api/**", "Marketing or Admin access required", Role.ADMIN, Role.MARKETING)
+    ), RoutePolicy.Rule.authenticated("/**"));
+
+    public AuthenticationFilter(AuthService authService, UserPrincipalCache userPrincipalCache) {
     	logger.info("Authentication filter initialized");
         this.authService = authService;
-        this.userRepository = userRepository;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     @Override
@@ -72,21 +83,23 @@ public class AuthenticationFilter implements Filter {
         }
 
         // 2. Allow public endpoints
-        if (isPublicEndpoint(requestURI)) {
+        RoutePolicy.Rule route = ROUTES.resolve(method, requestURI);
+        if (route.isPublic()) {
             chain.doFilter(request, response);
             return;
         }
 
-        // 3. Get + validate token
+        // 3. Get + validate token (parsed once, cached until it expires)
         String token = extractToken(request);
-        if (token == null || !authService.validateToken(token)) {
+        Optional<AuthPrincipal> principal = token == null ? Optional.empty() : authService.authenticateToken(token);
+        if (principal.isEmpty()) {
             sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Invalid or missing authentication token");
             return;
         }
 
-        // 4. Get username + user
-        Integer userId = authService.extractUserId(token);
-        User user = userRepository.findById(userId).orElse(null);
+        // 4. Get user (role + status served from cache, evicted on admin changes)
+        Integer userId = principal.get().userId();
+        CachedUser user = userPrincipalCache.get(userId).orElse(null);
         if (user == null) {
             sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "User not found");
             return;
@@ -94,37 +107,25 @@ public class AuthenticationFilter implements Filter {
 
 
         // 5. Critical: Check account status
-        if (user.getStatus() != User.Status.Approved) {   // ← assuming you have Status enum
+        if (user.status() != User.Status.Approved) {   // ← assuming you have Status enum
             sendError(response, HttpServletResponse.SC_FORBIDDEN, "Account is not approved");
             return;
         }
 
         // 6. Role-based authorization
-        boolean isAdminPath = requestURI.startsWith("/admin/");
-        boolean isApiPath = requestURI.startsWith("/api/");
-
-        if (isAdminPath && user.getRole() != Role.ADMIN) {
-            sendError(response, HttpServletResponse.SC_FORBIDDEN, "Admin access required");
-            return;
-        }
-
-        // Most likely you want BOTH admin + marketing to access /api/*
-        if (isApiPath && user.getRole() != Role.ADMIN && user.getRole() != Role.MARKETING) {
-            sendError(response, HttpServletResponse.SC_FORBIDDEN, "Marketing or Admin access required");
+        if (!route.permits(user.role())) {
+            sendError(response, HttpServletResponse.SC_FORBIDDEN, route.denyMessage());
             return;
         }
 
         // 7. Success → attach user to request
-        request.setAttribute("authenticatedUser", user);
-        logger.debug("Authenticated user: {} ({})", user.getUserId(), user.getRole());  // ✅ use userId instead of username
+        request.setAttribute("authenticatedUser", user.toUser());
+        request.setAttribute("authPrincipal", principal.get());
+        logger.debug("Authenticated user: {} ({})", user.userId(), user.role());  // ✅ use userId instead of username
 
         chain.doFilter(request, response);
     }
 
-    private boolean isPublicEndpoint(String uri) {
-        return Arrays.stream(PUBLIC_PATHS).anyMatch(uri::equals) || uri.startsWith("/health");
-    }
-
     private String extractToken(HttpServletRequest request) {
         Cookie[] cookies = request.getCookies();
         if (cookies == null) return null;
@@ -0,0 +1,136 @@
+package com.example.visited.filter;
+
+import com.example.visited.filter.ConcurrencyLimitProperties.Group;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.List;
+
+// Caps in-flight requests per endpoint group so a few slow DB-heavy dashboards cannot take
+// every Hikari connection. Runs after authentication and rate limiting, so rejected or
+// unauthenticated requests never occupy a slot.
+@Component
+@Order(3)
+public class ConcurrencyLimitFilter implements Filter {
+
+    private final List<LimitedGroup> groups;
+
+    @Value("${cors.allowed-origin:http://localhost:5173}")
+    private String allowedOrigin;
+
+    private record LimitedGroup(String name, List<PathPattern> patterns, AdaptiveConcurrencyLimiter limiter,
+            Counter rejected) {
+
+        // The matching pattern, which names the route for the limiter's per-route latency
+        PathPattern match(PathContainer path) {
+            for (PathPattern pattern : patterns) {
+                if (pattern.matches(path)) {
+                    return pattern;
+                }
+            }
+            return null;
+        }
+    }
+
+    private record Route(LimitedGroup group, String pattern) {
+    }
+
+    public ConcurrencyLimitFilter(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.groups = properties.getGroups().stream()
+                .map(group -> compile(group, meterRegistry))
+                .toList();
+    }
+
+    private static LimitedGroup compile(Group group, MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(group.getInitialLimit(),
+                group.getMinLimit(), group.getMaxLimit(), group.getQueueSize(), group.getMaxWait().toNanos(),
+                group.getLatencyTolerance());
+        Gauge.builder("http.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit")
+                .tag("group", group.getName())
+                .register(meterRegistry);
+        Gauge.builder("http.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Requests currently being processed")
+                .tag("group", group.getName())
+                .register(meterRegistry);
+        Gauge.builder("http.concurrency.queued", limiter, AdaptiveConcurrencyLimiter::waiting)
+                .description("Requests waiting for a slot")
+                .tag("group", group.getName())
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("http.concurrency.rejected")
+                .description("Requests shed with 503 because the group was at its limit")
+                .tag("group", group.getName())
+                .register(meterRegistry);
+        List<PathPattern> patterns = group.getPaths().stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+        return new LimitedGroup(group.getName(), patterns, limiter, rejected);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        Route route = resolveRoute(httpRequest.getRequestURI());
+        if (route == null || "OPTIONS".equalsIgnoreCase(httpRequest.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        LimitedGroup group = route.group();
+
+        boolean acquired;
+        try {
+            acquired = group.limiter().tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            group.rejected().increment();
+            httpResponse.setHeader("Access-Control-Allow-Origin", allowedOrigin);
+            httpResponse.setHeader("Access-Control-Allow-Credentials", "true");
+            httpResponse.setHeader("Retry-After", "1");
+            httpResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            httpResponse.setContentType("application/json");
+            httpResponse.getWriter().write("{\"error\":\"Server is busy. Try again shortly.\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = httpResponse.getStatus() >= 500;
+        } finally {
+            group.limiter().release(route.pattern(), System.nanoTime() - start, failed);
+        }
+    }
+
+    private Route resolveRoute(String uri) {
+        if (groups.isEmpty()) {
+            return null;
+        }
+        PathContainer path = PathContainer.parsePath(uri);
+        for (LimitedGroup group : groups) {
+            PathPattern pattern = group.match(path);
+            if (pattern != null) {
+                return new Route(group, pattern.getPatternString());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.visited.filter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// concurrency-limit.groups[n].* from application.properties: endpoint groups whose in-flight
+// requests are capped by an adaptive limit (see AdaptiveConcurrencyLimiter)
+@Component
+@ConfigurationProperties(prefix = "concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+	private List<Group> groups = new ArrayList<>();
+
+	public List<Group> getGroups() {
+		return groups;
+	}
+
+	public void setGroups(List<Group> groups) {
+		this.groups = groups;
+	}
+
+	public static class Group {
+		private String name;
+		// Spring PathPattern syntax
+		private List<String> paths = new ArrayList<>();
+		private int initialLimit = 8;
+		private int minLimit = 2;
+		private int maxLimit = 20;
+		// Requests allowed to wait for a slot, and for how long, before 503
+		private int queueSize = 10;
+		private Duration maxWait = Duration.ofMillis(500);
+		// A response slower than tolerance x the no-load latency counts as overload
+		private double latencyTolerance = 2.0;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public List<String> getPaths() {
+			return paths;
+		}
+
+		public void setPaths(List<String> paths) {
+			this.paths = paths;
+		}
+
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		public void setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+		}
+
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		public void setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public void setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+		}
+
+		public int getQueueSize() {
+			return queueSize;
+		}
+
+		public void setQueueSize(int queueSize) {
+			this.queueSize = queueSize;
+		}
+
+		public Duration getMaxWait() {
+			return maxWait;
+		}
+
+		public void setMaxWait(Duration maxWait) {
+			this.maxWait = maxWait;
+		}
+
+		public double getLatencyTolerance() {
+			return latencyTolerance;
+		}
+
+		public void setLatencyTolerance(double latencyTolerance) {
+			this.latencyTolerance = latencyTolerance;
+		}
+	}
+}
@@ -1,70 +1,149 @@
 package com.example.visited.filter;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.example.visited.DTO.AuthPrincipal;
+import com.example.visited.services.LoginAttemptService;
+import com.example.visited.services.RateLimitBucketStore;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
 import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.server.PathContainer;
 import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import java.io.IOException;
-import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+// Runs after AuthenticationFilter so per-user keys can use the verified principal
 @Component
-@Order(1)
+@Order(2)
 public class RateLimitFilter implements Filter {
 
-    private final Cache<String, Bucket> cache = Caffeine.newBuilder()
-            .maximumSize(10000)
-            .expireAfterAccess(1, TimeUnit.HOURS)
-            .build();
+    private final LoginAttemptService loginAttemptService;
+    private final RateLimitBucketStore bucketStore;
+    private final List<CompiledPolicy> policies;
+
+    @Value("${cors.allowed-origin:http://localhost:5173}")
+    private String allowedOrigin;
+
+    private record CompiledPolicy(RateLimitProperties.Policy policy, PathPattern pattern, Set<String> methods,
+            Bandwidth bandwidth, Counter rejected) {
+
+        boolean matches(String method, PathContainer path) {
+            return (methods.isEmpty() || methods.contains(method)) && pattern.matches(path);
+        }
+    }
+
+    public RateLimitFilter(LoginAttemptService loginAttemptService, RateLimitBucketStore bucketStore,
+            RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.loginAttemptService = loginAttemptService;
+        this.bucketStore = bucketStore;
+        // Compiled once: parsed path patterns and bandwidths, in declaration order
+        this.policies = properties.getPolicies().stream()
+                .map(policy -> compile(policy, meterRegistry))
+                .toList();
+    }
+
+    private static CompiledPolicy compile(RateLimitProperties.Policy policy, MeterRegistry meterRegistry) {
+        if (policy.getName() == null || policy.getPath() == null || policy.getCapacity() <= 0) {
+            throw new IllegalArgumentException("rate-limit policy needs name, path and a positive capacity: "
+                    + policy.getName());
+        }
+        long refillTokens = policy.getRefillTokens() > 0 ? policy.getRefillTokens() : policy.getCapacity();
+        Bandwidth bandwidth = Bandwidth.classic(policy.getCapacity(),
+                Refill.intervally(refillTokens, policy.getRefillPeriod()));
+        Set<String> methods = policy.getMethods().stream()
+                .map(m -> m.toUpperCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        Counter rejected = Counter.builder("http.rate_limited")
+                .description("Requests rejected with 429 by a rate-limit policy")
+                .tag("policy", policy.getName())
+                .register(meterRegistry);
+        return new CompiledPolicy(policy, PathPatternParser.defaultInstance.parse(policy.getPath()), methods,
+                bandwidth, rejected);
+    }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
-        
+
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         HttpServletResponse httpResponse = (HttpServletResponse) response;
-        
+
         String path = httpRequest.getRequestURI();
-        
-        // Only rate limit communication endpoints
-        if (path.contains("/messages/send") || path.contains("/announcements")) {
-            String key = getClientKey(httpRequest);
-            Bucket bucket = resolveBucket(key);
-            
-            if (bucket.tryConsume(1)) {
-                chain.doFilter(request, response);
-            } else {
-                // Add CORS headers for rate limit response
-                httpResponse.setHeader("Access-Control-Allow-Origin", "http://localhost:5173");
-                httpResponse.setHeader("Access-Control-Allow-Credentials", "true");
-                httpResponse.setStatus(429);
-                httpResponse.setContentType("application/json");
-                httpResponse.getWriter().write("{\"error\":\"Too many requests. Try again later.\"}");
+        String method = httpRequest.getMethod();
+
+        // Login attempts per client IP, answered before the body is read or BCrypt runs. Behind the
+        // load balancer getRemoteAddr() is already the forwarded client address (RemoteIpValve, see
+        // server.tomcat.remoteip.* in application.properties), so every IP key below is per client.
+        if ("/auth/login".equals(path) && "POST".equalsIgnoreCase(method)) {
+            long retryAfter = loginAttemptService.tryAcquireForIp(httpRequest.getRemoteAddr());
+            if (retryAfter > 0) {
+                reject(httpResponse, retryAfter, "Too many login attempts. Try again later.");
+                return;
             }
-        } else {
+        }
+
+        CompiledPolicy policy = resolvePolicy(method, path);
+        if (policy == null) {
             chain.doFilter(request, response);
+            return;
+        }
+
+        String key = policy.policy().getName() + ":" + getClientKey(httpRequest, policy.policy().getKey());
+        Bucket bucket = bucketStore.resolve(key, policy.bandwidth());
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        if (probe.isConsumed()) {
+            chain.doFilter(request, response);
+        } else {
+            policy.rejected().increment();
+            reject(httpResponse, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()) + 1,
+                    "Too many requests. Try again later.");
         }
     }
 
-    private Bucket resolveBucket(String key) {
-        return cache.get(key, k -> createNewBucket());
+    private CompiledPolicy resolvePolicy(String method, String path) {
+        if (policies.isEmpty()) {
+            return null;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        for (CompiledPolicy policy : policies) {
+            if (policy.matches(method, container)) {
+                return policy;
+            }
+        }
+        return null;
     }
 
-    private Bucket createNewBucket() {
-        // 10 requests per minute
-        Bandwidth limit = Bandwidth.classic(10, Refill.intervally(10, Duration.ofMinutes(1)));
-        return Bucket.builder().addLimit(limit).build();
+    private void reject(HttpServletResponse httpResponse, long retryAfterSeconds, String message) throws IOException {
+        // Add CORS headers for rate limit response
+        httpResponse.setHeader("Access-Control-Allow-Origin", allowedOrigin);
+        httpResponse.setHeader("Access-Control-Allow-Credentials", "true");
+        httpResponse.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        httpResponse.setStatus(429);
+        httpResponse.setContentType("application/json");
+        httpResponse.getWriter().write("{\"error\":\"" + message + "\"}");
     }
 
-    private String getClientKey(HttpServletRequest request) {
-        String userId = (String) request.getAttribute("userId");
-        return userId != null ? userId : request.getRemoteAddr();
+    // USER falls back to the client IP for requests that carry no principal (public routes)
+    private String getClientKey(HttpServletRequest request, RateLimitProperties.KeyType keyType) {
+        AuthPrincipal principal = (AuthPrincipal) request.getAttribute("authPrincipal");
+        return switch (keyType) {
+            case USER -> principal != null ? "user:" + principal.userId() : "ip:" + request.getRemoteAddr();
+            case ROLE -> principal != null ? "role:" + principal.role().name() : "ip:" + request.getRemoteAddr();
+            case IP -> "ip:" + request.getRemoteAddr();
+        };
     }
 }
@@ -0,0 +1,97 @@
+package com.example.visited.filter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// rate-limit.policies[n].* from application.properties. Policies are checked in order and the
+// first one whose path pattern and method match decides the budget for the request.
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+	public enum KeyType {
+		USER, IP, ROLE
+	}
+
+	private List<Policy> policies = new ArrayList<>();
+
+	public List<Policy> getPolicies() {
+		return policies;
+	}
+
+	public void setPolicies(List<Policy> policies) {
+		this.policies = policies;
+	}
+
+	public static class Policy {
+		private String name;
+		// Spring PathPattern syntax, e.g. /admin/school-visits or /admin/announcements/**
+		private String path;
+		// Empty = every method
+		private List<String> methods = new ArrayList<>();
+		private long capacity;
+		private long refillTokens;
+		private Duration refillPeriod = Duration.ofMinutes(1);
+		private KeyType key = KeyType.USER;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+
+		public List<String> getMethods() {
+			return methods;
+		}
+
+		public void setMethods(List<String> methods) {
+			this.methods = methods;
+		}
+
+		public long getCapacity() {
+			return capacity;
+		}
+
+		public void setCapacity(long capacity) {
+			this.capacity = capacity;
+		}
+
+		public long getRefillTokens() {
+			return refillTokens;
+		}
+
+		public void setRefillTokens(long refillTokens) {
+			this.refillTokens = refillTokens;
+		}
+
+		public Duration getRefillPeriod() {
+			return refillPeriod;
+		}
+
+		public void setRefillPeriod(Duration refillPeriod) {
+			this.refillPeriod = refillPeriod;
+		}
+
+		public KeyType getKey() {
+			return key;
+		}
+
+		public void setKey(KeyType key) {
+			this.key = key;
+		}
+	}
+}
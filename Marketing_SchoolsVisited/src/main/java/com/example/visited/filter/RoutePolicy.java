@@ -0,0 +1,152 @@
+package com.example.visited.filter;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.example.visited.entitys.User.Role;
+
+// Route authorization table compiled into a character trie. A lookup walks the request path once
+// (O(path length)), allocates nothing and returns the most specific rule:
+// an exact match beats the longest "/**" prefix match, which beats the default rule.
+final class RoutePolicy {
+
+	// roles == null -> public, empty -> any authenticated user, otherwise one of the roles
+	record Rule(String method, String pattern, Set<Role> roles, String denyMessage) {
+
+		static Rule publicRoute(String pattern) {
+			return new Rule(null, pattern, null, null);
+		}
+
+		static Rule authenticated(String pattern) {
+			return new Rule(null, pattern, Set.of(), null);
+		}
+
+		static Rule roles(String pattern, String denyMessage, Role... roles) {
+			return new Rule(null, pattern, EnumSet.copyOf(Arrays.asList(roles)), denyMessage);
+		}
+
+		Rule forMethod(String httpMethod) {
+			return new Rule(httpMethod, pattern, roles, denyMessage);
+		}
+
+		boolean isPublic() {
+			return roles == null;
+		}
+
+		boolean permits(Role role) {
+			return roles == null || roles.isEmpty() || roles.contains(role);
+		}
+	}
+
+	private static final class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private MethodRules exact;
+		private MethodRules subtree;
+
+		Node child(char c) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		Node getOrAddChild(char c) {
+			Node existing = child(c);
+			if (existing != null) {
+				return existing;
+			}
+			keys = Arrays.copyOf(keys, keys.length + 1);
+			children = Arrays.copyOf(children, children.length + 1);
+			keys[keys.length - 1] = c;
+			children[children.length - 1] = new Node();
+			return children[children.length - 1];
+		}
+	}
+
+	// Method-specific rules win over the any-method rule registered for the same pattern
+	private static final class MethodRules {
+		private final Map<String, Rule> byMethod = new HashMap<>();
+		private Rule anyMethod;
+
+		Rule get(String method) {
+			Rule rule = byMethod.isEmpty() ? null : byMethod.get(method);
+			return rule != null ? rule : anyMethod;
+		}
+
+		void add(Rule rule) {
+			if (rule.method() == null) {
+				anyMethod = rule;
+			} else {
+				byMethod.put(rule.method(), rule);
+			}
+		}
+	}
+
+	private final Node root = new Node();
+	private final Rule defaultRule;
+
+	// Patterns are either exact ("/auth/login") or a subtree ("/admin/**", matching "/admin"
+	// and everything below it on a segment boundary)
+	RoutePolicy(List<Rule> rules, Rule defaultRule) {
+		this.defaultRule = defaultRule;
+		for (Rule rule : rules) {
+			String pattern = rule.pattern();
+			boolean subtree = pattern.endsWith("/**");
+			String path = subtree ? pattern.substring(0, pattern.length() - 3) : pattern;
+			if (!path.startsWith("/") || path.contains("*")) {
+				throw new IllegalArgumentException("Unsupported route pattern: " + pattern);
+			}
+			Node node = root;
+			for (int i = 0; i < path.length(); i++) {
+				node = node.getOrAddChild(path.charAt(i));
+			}
+			if (subtree) {
+				if (node.subtree == null) {
+					node.subtree = new MethodRules();
+				}
+				node.subtree.add(rule);
+			} else {
+				if (node.exact == null) {
+					node.exact = new MethodRules();
+				}
+				node.exact.add(rule);
+			}
+		}
+	}
+
+	Rule resolve(String method, String path) {
+		Rule best = null;
+		Node node = root;
+		int length = path.length();
+		for (int i = 0; i <= length; i++) {
+			boolean boundary = i == length || path.charAt(i) == '/';
+			if (node.subtree != null && boundary) {
+				Rule rule = node.subtree.get(method);
+				if (rule != null) {
+					best = rule;
+				}
+			}
+			if (i == length) {
+				if (node.exact != null) {
+					Rule rule = node.exact.get(method);
+					if (rule != null) {
+						return rule;
+					}
+				}
+				break;
+			}
+			node = node.child(path.charAt(i));
+			if (node == null) {
+				break;
+			}
+		}
+		return best != null ? best : defaultRule;
+	}
+}
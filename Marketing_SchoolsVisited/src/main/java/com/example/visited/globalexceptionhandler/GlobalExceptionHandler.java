@@ -14,13 +14,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
-import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.validation.BindException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -77,11 +78,11 @@ public class GlobalExceptionHandler {
     }
 
     // ───────────────────────────────────────────────────────────────
-    //  1. Validation errors (@Valid, @Validated)
+    //  1. Validation errors (@Valid, @Validated, @ModelAttribute query binding)
     // ───────────────────────────────────────────────────────────────
-    @ExceptionHandler(MethodArgumentNotValidException.class)
+    @ExceptionHandler(BindException.class)
     public ResponseEntity<ApiError> handleValidationError(
-            MethodArgumentNotValidException ex,
+            BindException ex,
             HttpServletRequest request) {
 
         Map<String, String> fieldErrors = new HashMap<>();
@@ -234,7 +235,8 @@ public class GlobalExceptionHandler {
         );
     }
 
-    @ExceptionHandler({OptimisticLockException.class, PessimisticLockException.class, CannotAcquireLockException.class})
+    @ExceptionHandler({OptimisticLockException.class, OptimisticLockingFailureException.class,
+            PessimisticLockException.class, CannotAcquireLockException.class})
     public ResponseEntity<ApiError> handleConcurrentUpdate(
             Exception ex,
             HttpServletRequest request) {
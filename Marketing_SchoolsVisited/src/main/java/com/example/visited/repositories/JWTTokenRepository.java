@@ -1,23 +1,63 @@
 package com.example.visited.repositories;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.visited.entitys.JWT;
 import com.example.visited.entitys.User;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface JWTTokenRepository extends JpaRepository<JWT, Integer> {
-	 Optional<JWT> findByToken(String token);
+	 // Lookup by SHA-256 of the token (BINARY(32), unique index) instead of the raw token string
+	 Optional<JWT> findByTokenHash(byte[] tokenHash);
+
+	    // A user can own several rows (revoked ones are kept until they expire)
+	    List<JWT> findByUser(User user);
+
+	    // Row-locked so two concurrent refreshes of one session rotate one after the other
+	    @Lock(LockModeType.PESSIMISTIC_WRITE)
+	    @Query("SELECT j FROM JWT j WHERE j.jti = :jti")
+	    Optional<JWT> findByJtiForUpdate(String jti);
+
+	    // Live sessions of a user, served by the (user_id, expires_at) index
+	    List<JWT> findByUser_UserIdAndExpiresAtAfterAndRevokedAtIsNullOrderByCreatedAtDesc(Integer userId,
+	            LocalDateTime now);
+
+	    @Transactional
+	    @Modifying
+	    @Query("UPDATE JWT j SET j.revokedAt = :revokedAt "
+	            + "WHERE j.jti = :jti AND j.user.userId = :userId AND j.revokedAt IS NULL")
+	    int revokeSession(String jti, Integer userId, LocalDateTime revokedAt);
+
+	    List<JWT> findByUserAndRevokedAtIsNullAndExpiresAtAfter(User user, LocalDateTime now);
+
+	    // Revocations still relevant (token not yet expired) and recorded after the given instant
+	    @Query("SELECT j.jti, j.expiresAt, j.revokedAt FROM JWT j "
+	            + "WHERE j.revokedAt > :since AND j.expiresAt > :now AND j.jti IS NOT NULL")
+	    List<Object[]> findRevokedSince(LocalDateTime since, LocalDateTime now);
 
-	    JWT findByUser(User user);
+	    @Transactional
+	    @Modifying
+	    @Query("UPDATE JWT j SET j.revokedAt = :revokedAt WHERE j.user = :user AND j.revokedAt IS NULL")
+	    int revokeAllByUser(User user, LocalDateTime revokedAt);
 
 	    // Corrected version using actual field name
-	    JWT findByUser_UserId(Integer userId);
+	    List<JWT> findByUser_UserId(Integer userId);
+
+	    // Keyset page of expired row ids for the reaper: WHERE expires_at < ? AND id > ? ORDER BY id LIMIT ?
+	    @Query("SELECT j.id FROM JWT j WHERE j.expiresAt < :now AND j.id > :afterId ORDER BY j.id")
+	    List<Integer> findExpiredIds(LocalDateTime now, Integer afterId, Pageable page);
 
 	    @Transactional
 	    @Modifying
@@ -1,5 +1,6 @@
 package com.example.visited.repositories;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.visited.DTO.SelectedModule;
 import com.example.visited.entitys.SchoolModuleRequired;
 import com.example.visited.entitys.SchoolVisited;
 
@@ -20,6 +22,12 @@ public interface SchoolModuleRequiredRepository extends JpaRepository<SchoolModu
     List<SchoolModuleRequired> findByModuleId(Integer moduleId);
     List<SchoolModuleRequired> findBySchoolVisited(SchoolVisited schoolVisited);
 
+    // Batch load for listings, as read models; rows come back grouped by visit, in insertion order
+    // within a visit
+    @Query("SELECT new com.example.visited.DTO.SelectedModule(s.schoolVisited.id, s.moduleId, s.isSelected, s.remarks)"
+            + " FROM SchoolModuleRequired s WHERE s.schoolVisited.id IN :visitIds ORDER BY s.schoolVisited.id, s.id")
+    List<SelectedModule> findSelectedModulesByVisitIdIn(@Param("visitIds") Collection<Integer> visitIds);
+
     
     @Modifying
     @Transactional
@@ -1,10 +1,24 @@
 package com.example.visited.repositories;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.visited.DTO.VisitDetail;
+import com.example.visited.DTO.VisitIndexRow;
+import com.example.visited.DTO.VisitKey;
+import com.example.visited.DTO.VisitStatsFacts;
+import com.example.visited.DTO.VisitSummary;
 import com.example.visited.entitys.SchoolVisited;
 import com.example.visited.entitys.User;
 
@@ -16,4 +30,108 @@ public interface SchoolsVisitedRepository extends JpaRepository<SchoolVisited, I
 	List<SchoolVisited> findByLocationCity(String locationCity);
 	List<SchoolVisited> findByUser(User user);
 
+	String DETAIL = "SELECT new com.example.visited.DTO.VisitDetail(v.id, v.schoolName, v.visitedDate,"
+			+ " v.marketingExecutiveName, v.locationCity, v.contactPersonName, v.designation, v.contactNo, v.emailId,"
+			+ " v.schoolStrenght, v.boards, v.decisionMakerName, v.decisionTimeline, v.expectedGoLiveDate,"
+			+ " v.billingfrequency, v.orderBookingDate, v.initialPayment, v.paymentTerms, v.costPerMember,"
+			+ " v.currentSystem, v.requiredplatform, v.noOfUsers, v.dataMigrationRequired, v.customFeaturesRequired,"
+			+ " v.customFeatureDescription, v.rfidIntegration, v.idCards, v.paymentGatewayPreference, v.budgetRange,"
+			+ " v.demoRequired, v.demoDate, v.proposalSent, v.proposalDate, v.status, v.rejectionReason, v.createdAt,"
+			+ " v.version) FROM SchoolVisited v";
+
+	String SUMMARY = "SELECT new com.example.visited.DTO.VisitSummary(v.id, v.schoolName, v.visitedDate,"
+			+ " v.marketingExecutiveName, v.locationCity, v.status, v.createdAt) FROM SchoolVisited v";
+
+	String KEY = "SELECT new com.example.visited.DTO.VisitKey(v.id, v.createdAt) FROM SchoolVisited v";
+
+	String INDEX_ROW = "SELECT new com.example.visited.DTO.VisitIndexRow(v.id, v.user.userId, v.schoolName,"
+			+ " v.contactPersonName, v.decisionMakerName, v.emailId, v.locationCity, v.marketingExecutiveName, v.status)"
+			+ " FROM SchoolVisited v";
+
+	String AFTER = "(v.createdAt < :createdAt OR (v.createdAt = :createdAt AND v.id < :id))";
+
+	String NEWEST_FIRST = " ORDER BY v.createdAt DESC, v.id DESC";
+
+	// Read models for listings: only the rendered columns, no managed entities (nothing to
+	// dirty-check or hold in the persistence context)
+	@Query(DETAIL + " WHERE v.id IN :ids" + NEWEST_FIRST)
+	List<VisitDetail> findDetailsByIdIn(@Param("ids") Collection<Integer> ids);
+
+	@Query(SUMMARY + " WHERE v.id IN :ids" + NEWEST_FIRST)
+	List<VisitSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+
+	@Query(DETAIL + " WHERE v.user.userId = :userId ORDER BY v.id")
+	List<VisitDetail> findDetailsByUserId(@Param("userId") Integer userId);
+
+	@Query(DETAIL + " WHERE v.status = :status ORDER BY v.id")
+	List<VisitDetail> findDetailsByStatus(@Param("status") SchoolVisited.VisitStatus status);
+
+	// Full-text index feed: single rows after a change, id-ordered batches for a rebuild, rows
+	// written since the last catch-up, and every id for the deleted-visit sweep
+	@Query(INDEX_ROW + " WHERE v.id IN :ids")
+	List<VisitIndexRow> findIndexRowsByIdIn(@Param("ids") Collection<Integer> ids);
+
+	@Query(INDEX_ROW + " WHERE v.id > :afterId ORDER BY v.id")
+	List<VisitIndexRow> findIndexRowsAfter(@Param("afterId") Integer afterId, Pageable limit);
+
+	@Query(INDEX_ROW + " WHERE v.updatedAt >= :since ORDER BY v.id")
+	List<VisitIndexRow> findIndexRowsUpdatedSince(@Param("since") LocalDateTime since);
+
+	@Query("SELECT v.id FROM SchoolVisited v")
+	List<Integer> findAllIds();
+
+	// Keyset pages ordered newest first on (created_at, id). Only the key is selected, so each page
+	// is an index-only range scan on (user_id, created_at, id) / (status, created_at, id) /
+	// (created_at, id); the first-page and after-cursor variants are separate queries to keep it
+	// that way. The Pageable only carries the LIMIT, no count query is issued.
+	@Query(KEY + " WHERE v.user.userId = :userId" + NEWEST_FIRST)
+	List<VisitKey> findPageByUser(@Param("userId") Integer userId, Pageable limit);
+
+	@Query(KEY + " WHERE v.user.userId = :userId AND " + AFTER + NEWEST_FIRST)
+	List<VisitKey> findPageByUserAfter(@Param("userId") Integer userId,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Integer id, Pageable limit);
+
+	@Query(KEY + " WHERE v.status = :status" + NEWEST_FIRST)
+	List<VisitKey> findPageByStatus(@Param("status") SchoolVisited.VisitStatus status, Pageable limit);
+
+	@Query(KEY + " WHERE v.status = :status AND " + AFTER + NEWEST_FIRST)
+	List<VisitKey> findPageByStatusAfter(@Param("status") SchoolVisited.VisitStatus status,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Integer id, Pageable limit);
+
+	@Query(KEY + NEWEST_FIRST)
+	List<VisitKey> findPage(Pageable limit);
+
+	@Query(KEY + " WHERE " + AFTER + NEWEST_FIRST)
+	List<VisitKey> findPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Integer id,
+			Pageable limit);
+
+	// Status changes are a single conditional UPDATE: the WHERE on the expected current status is the
+	// state-machine check, so two concurrent decisions on the same visit cannot both succeed. 0 rows
+	// means the visit is missing or no longer in that status. Bumps version like an entity update.
+	@Modifying
+	@Query("UPDATE SchoolVisited v SET v.status = :to,"
+			+ " v.orderBookingDate = COALESCE(v.orderBookingDate, :today), v.initialPayment = :initialPayment,"
+			+ " v.paymentTerms = :paymentTerms, v.costPerMember = :costPerMember, v.rejectionReason = NULL,"
+			+ " v.version = v.version + 1, v.updatedAt = :now WHERE v.id = :id AND v.status = :from")
+	int acceptVisit(@Param("id") Integer id, @Param("from") SchoolVisited.VisitStatus from,
+			@Param("to") SchoolVisited.VisitStatus to,
+			@Param("initialPayment") BigDecimal initialPayment, @Param("paymentTerms") String paymentTerms,
+			@Param("costPerMember") BigDecimal costPerMember, @Param("today") LocalDate today,
+			@Param("now") LocalDateTime now);
+
+	@Modifying
+	@Query("UPDATE SchoolVisited v SET v.status = :to, v.rejectionReason = :reason,"
+			+ " v.version = v.version + 1, v.updatedAt = :now WHERE v.id = :id AND v.status = :from")
+	int transitionStatus(@Param("id") Integer id, @Param("from") SchoolVisited.VisitStatus from,
+			@Param("to") SchoolVisited.VisitStatus to, @Param("reason") String reason,
+			@Param("now") LocalDateTime now);
+
+	@Query("SELECT v.status FROM SchoolVisited v WHERE v.id = :id")
+	Optional<SchoolVisited.VisitStatus> findStatusById(@Param("id") Integer id);
+
+	@Query("SELECT new com.example.visited.DTO.VisitStatsFacts(v.user.userId, v.status, v.locationCity,"
+			+ " v.visitedDate, v.createdAt, v.budgetRange, v.initialPayment, v.orderBookingDate)"
+			+ " FROM SchoolVisited v WHERE v.id = :id")
+	Optional<VisitStatsFacts> findStatsFactsById(@Param("id") Integer id);
+
 }
\ No newline at end of file
@@ -3,7 +3,11 @@ package com.example.visited.repositories;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import com.example.visited.entitys.User;
 import com.example.visited.entitys.User.Role;
 
@@ -14,5 +18,11 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 	List<User> findByRole(Role marketing);
 	List<User> findByRoleOrderByUserIdAsc(User.Role role);
 
+	// Targeted update used by rehash-on-login; the detached User from login is never merged
+	@Transactional
+	@Modifying
+	@Query("UPDATE User u SET u.passwordHash = :passwordHash WHERE u.userId = :userId")
+	int updatePasswordHash(@Param("userId") Integer userId, @Param("passwordHash") String passwordHash);
+
 	
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.example.visited.repositories;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.example.visited.DTO.VisitSearchRequest;
+import com.example.visited.entitys.SchoolVisited;
+
+import jakarta.persistence.criteria.Path;
+
+// Composable predicates for the visit search. Each returns null when its filter is absent, which
+// Specification.and() skips. Columns are compared as stored (no functions around them) so MySQL
+// can use the indexes from V8; case-insensitive matching comes from the column collation.
+public final class VisitSpecifications {
+
+	private VisitSpecifications() {
+	}
+
+	public static Specification<SchoolVisited> matching(VisitSearchRequest request, Integer ownerUserId) {
+		return Specification.where(ownedBy(ownerUserId))
+				.and(hasStatus(request.status()))
+				.and(inCity(request.city()))
+				.and(byExecutive(request.executive()))
+				.and(visitedBetween(request.visitedFrom(), request.visitedTo()))
+				.and(boardContains(request.board()))
+				.and(budgetBetween(request.budgetMin(), request.budgetMax()));
+	}
+
+	public static Specification<SchoolVisited> ownedBy(Integer userId) {
+		return userId == null ? null : (v, q, cb) -> cb.equal(v.get("user").get("userId"), userId);
+	}
+
+	public static Specification<SchoolVisited> hasStatus(SchoolVisited.VisitStatus status) {
+		return status == null ? null : (v, q, cb) -> cb.equal(v.get("status"), status);
+	}
+
+	public static Specification<SchoolVisited> inCity(String city) {
+		return isBlank(city) ? null : (v, q, cb) -> cb.equal(v.get("locationCity"), city.trim());
+	}
+
+	public static Specification<SchoolVisited> byExecutive(String executive) {
+		return isBlank(executive) ? null : (v, q, cb) -> cb.equal(v.get("marketingExecutiveName"), executive.trim());
+	}
+
+	public static Specification<SchoolVisited> visitedBetween(LocalDate from, LocalDate to) {
+		if (from != null && to != null && from.isAfter(to)) {
+			throw new IllegalArgumentException("visitedFrom must not be after visitedTo");
+		}
+		return Specification.<SchoolVisited>where(
+				from == null ? null : (v, q, cb) -> cb.greaterThanOrEqualTo(v.get("visitedDate"), from))
+				.and(to == null ? null : (v, q, cb) -> cb.lessThanOrEqualTo(v.get("visitedDate"), to));
+	}
+
+	// boards is free text ("CBSE, ICSE"), so this is a residual filter on rows the other predicates select
+	public static Specification<SchoolVisited> boardContains(String board) {
+		if (isBlank(board)) {
+			return null;
+		}
+		String pattern = "%" + board.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+		return (v, q, cb) -> cb.like(v.get("boards"), pattern, '\\');
+	}
+
+	public static Specification<SchoolVisited> budgetBetween(BigDecimal min, BigDecimal max) {
+		if (min != null && max != null && min.compareTo(max) > 0) {
+			throw new IllegalArgumentException("budgetMin must not be greater than budgetMax");
+		}
+		return Specification.<SchoolVisited>where(
+				min == null ? null : (v, q, cb) -> cb.greaterThanOrEqualTo(v.get("budgetRange"), min))
+				.and(max == null ? null : (v, q, cb) -> cb.lessThanOrEqualTo(v.get("budgetRange"), max));
+	}
+
+	// Rows after (value, id) in ORDER BY attribute, id. NULLs sort lowest (MySQL), i.e. first when
+	// ascending and last when descending; value == null means the cursor row had a NULL sort value.
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static Specification<SchoolVisited> after(String attribute, boolean descending, Comparable value,
+			Integer id) {
+		return (v, q, cb) -> {
+			Path<Comparable> key = v.get(attribute);
+			Path<Integer> rowId = v.get("id");
+			if (descending) {
+				if (value == null) {
+					return cb.and(cb.isNull(key), cb.lessThan(rowId, id));
+				}
+				return cb.or(cb.lessThan(key, value),
+						cb.and(cb.equal(key, value), cb.lessThan(rowId, id)),
+						cb.isNull(key));
+			}
+			if (value == null) {
+				return cb.or(cb.and(cb.isNull(key), cb.greaterThan(rowId, id)), cb.isNotNull(key));
+			}
+			return cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(rowId, id)));
+		};
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.isBlank();
+	}
+}
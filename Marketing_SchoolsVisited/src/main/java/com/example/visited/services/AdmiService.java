@@ -11,14 +11,15 @@ import java.util.Optional;
 
 // AdmiService imports:
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile; // For @RequestPart
 
+import com.example.visited.DTO.VisitDetail;
 import com.example.visited.entitys.MarketingTeam;
 import com.example.visited.entitys.Modules;
 import com.example.visited.entitys.SchoolModuleRequired;
@@ -42,20 +43,30 @@ public class AdmiService {
 	private final UserRepository userRepository;
 	private final MarketingTeamRepository marketingTeamRepository;
 	private final ModulesRepository modulesRepository;
-	private final BCryptPasswordEncoder passwordEncoder;
+	private final PasswordHasher passwordEncoder;
 	private final SchoolsVisitedRepository schoolVisitedRepository;
 	private final SchoolModuleRequiredRepository schoolModuleRequiredRepository;
+	private final UserPrincipalCache userPrincipalCache;
+	private final AuthService authService;
+	private final VisitModuleLoader visitModuleLoader;
+	private final ApplicationEventPublisher eventPublisher;
 
 
 
 	public AdmiService(UserRepository userRepository, MarketingTeamRepository marketingTeamRepository,
-			ModulesRepository modulesRepository, BCryptPasswordEncoder passwordEncoder,SchoolsVisitedRepository schoolVisitedRepository,SchoolModuleRequiredRepository schoolModuleRequiredRepository) {
+			ModulesRepository modulesRepository, PasswordHasher passwordEncoder,SchoolsVisitedRepository schoolVisitedRepository,SchoolModuleRequiredRepository schoolModuleRequiredRepository,
+			UserPrincipalCache userPrincipalCache, AuthService authService, VisitModuleLoader visitModuleLoader,
+			ApplicationEventPublisher eventPublisher) {
 		this.userRepository = userRepository;
 		this.marketingTeamRepository = marketingTeamRepository;
 		this.modulesRepository = modulesRepository;
 		this.passwordEncoder = passwordEncoder;
 		this.schoolVisitedRepository  =schoolVisitedRepository;
 		this.schoolModuleRequiredRepository = schoolModuleRequiredRepository;
+		this.userPrincipalCache = userPrincipalCache;
+		this.authService = authService;
+		this.visitModuleLoader = visitModuleLoader;
+		this.eventPublisher = eventPublisher;
 	}
 
 	// ── Marketing Users ─────────────────────────────────────────────
@@ -209,6 +220,7 @@ public class AdmiService {
 	    }
 
 	    User savedUser = userRepository.save(user);
+	    userPrincipalCache.evict(userId); // status/username may have changed
 
 	    // ---------- MARKETING TEAM TABLE ----------
 	    marketingTeamRepository.findByUser(user).ifPresent(team -> {
@@ -314,84 +326,25 @@ public class AdmiService {
 	        marketingTeamRepository.delete(team);
 	    });
 
-	    // 3️⃣ Delete user (JWT, visits, etc cascade if FK configured)
+	    // 3️⃣ Revoke live tokens in memory first: the jwt_tokens rows may cascade away with the user
+	    authService.revokeAllTokens(user);
+
+	    // 4️⃣ Delete user (JWT, visits, etc cascade if FK configured)
 	    userRepository.delete(user);
+	    userPrincipalCache.evict(userId);
+	    eventPublisher.publishEvent(new MarketingUserDeletedEvent(userId));
 	}
 
 	
-	public List<Map<String, Object>> getschoolsbyUser(Integer userId) {
+	@Transactional(readOnly = true)
+	public List<VisitDetail> getschoolsbyUser(Integer userId) {
 		User user = userRepository.findByUserId(userId);
 	    if (user == null || user.getRole() != User.Role.MARKETING) {
 	        throw new IllegalArgumentException("Marketing user not found");
 	    }
-			List<SchoolVisited> visits = schoolVisitedRepository.findByUser(user);
-			List<Map<String, Object>> visitList = new ArrayList<>();
-			for (SchoolVisited visit : visits) {
-				Map<String, Object> visitMap = new HashMap<>();
-				visitMap.put("id", visit.getId());
-				visitMap.put("schoolName", visit.getSchoolName());
-				visitMap.put("visitedDate", visit.getVisitedDate());
-				visitMap.put("marketingExecutiveName", visit.getMarketingExecutiveName());
-				visitMap.put("locationCity", visit.getLocationCity());
-				visitMap.put("contactPersonName", visit.getContactPersonName());
-				visitMap.put("designation", visit.getDesignation());
-				visitMap.put("decisionMakerName", visit.getDecisionMakerName());
-				visitMap.put("boards", visit.getBoards());
-				visitMap.put("decisionTimeline", visit.getDecisionTimeline());
-				visitMap.put("contactNo", visit.getContactNo());
-				visitMap.put("emailId", visit.getEmailId());
-				visitMap.put("schoolStrenght", visit.getSchoolStrenght());
-				visitMap.put("expectedGoLiveDate", visit.getExpectedGoLiveDate());
-				visitMap.put("billingFrequency",visit.getBillingfrequency()); // "Monthly", "Quarterly",
-
-
-				// Only show payment fields if status is ACCEPTED
-				if (visit.getStatus() == SchoolVisited.VisitStatus.ACCEPTED) {
-					visitMap.put("orderBookingDate", visit.getOrderBookingDate());
-					visitMap.put("initialPayment", visit.getInitialPayment());
-					visitMap.put("paymentTerms", visit.getPaymentTerms());
-
-				}
-
-				visitMap.put("currentSystem", visit.getCurrentSystem());
-				visitMap.put("requiredplatform", visit.getRequiredplatform());
-				visitMap.put("noOfUsers", visit.getNoOfUsers());
-				visitMap.put("dataMigrationRequired", visit.getDataMigrationRequired());
-				visitMap.put("customFeaturesRequired", visit.getCustomFeaturesRequired());
-				visitMap.put("customFeatureDescription", visit.getCustomFeatureDescription());
-				visitMap.put("rfidIntegration", visit.getRfidIntegration());
-				visitMap.put("idCards", visit.getIdCards());
-				visitMap.put("paymentGatewayPreference", visit.getPaymentGatewayPreference());
-				visitMap.put("budgetRange", visit.getBudgetRange());
-				visitMap.put("costPerMember", visit.getCostPerMember());
-				visitMap.put("demoRequired", visit.getDemoRequired());
-				visitMap.put("demoDate", visit.getDemoDate());
-				visitMap.put("proposalSent", visit.getProposalSent());
-				visitMap.put("proposalDate", visit.getProposalDate());
-				visitMap.put("status", visit.getStatus());
-				if (visit.getStatus() == SchoolVisited.VisitStatus.REJECTED) {
-					visitMap.put("rejectionReason", visit.getRejectionReason());
-				}
-				visitMap.put("createdAt", visit.getCreatedAt());
-
-				// Get selected modules for this visit
-				List<SchoolModuleRequired> modules = schoolModuleRequiredRepository.findBySchoolVisited(visit);
-				List<Map<String, Object>> moduleList = new ArrayList<>();
-
-				for (SchoolModuleRequired module : modules) {
-					Map<String, Object> moduleMap = new HashMap<>();
-					moduleMap.put("moduleId", module.getModuleId());
-					moduleMap.put("isSelected", module.getIsSelected().name());
-					moduleMap.put("remarks", module.getRemarks());
-					moduleList.add(moduleMap);
-				}
-
-				visitMap.put("selectedModules", moduleList);
-				visitList.add(visitMap);
-			}
-
-			return visitList;
-		}
+		List<VisitDetail> visits = schoolVisitedRepository.findDetailsByUserId(userId);
+		return visitModuleLoader.attachModules(visits.stream().map(VisitDetail::forOwner).toList());
+	}
 
 
 	    
@@ -399,11 +352,8 @@ public class AdmiService {
 		
 	
 	// ── Modules ─────────────────────────────────────────────────────
-	@Transactional
-	public List<Modules> getAllModules() {
-		return modulesRepository.findAll();
-	}
-
+	// Reads are served by ModuleCatalog; every write here publishes ModuleChangedEvent so the
+	// catalog is rebuilt once the write commits
 	@Transactional
 	public Modules createModule(Map<String, Object> moduleData) {
 		String moduleName = (String) moduleData.get("moduleName");
@@ -422,7 +372,9 @@ public class AdmiService {
 			module.setIsActive(true); // Default to active
 		}
 
-		return modulesRepository.save(module);
+		Modules saved = modulesRepository.save(module);
+		eventPublisher.publishEvent(new ModuleChangedEvent(saved.getId()));
+		return saved;
 	}
 
 	@Transactional
@@ -452,7 +404,9 @@ public class AdmiService {
 	            }
 	        }
 
-	        return modulesRepository.save(module);
+	        Modules saved = modulesRepository.save(module);
+	        eventPublisher.publishEvent(new ModuleChangedEvent(moduleId));
+	        return saved;
 
 	    } catch (IllegalArgumentException e) {
 	        // Let this bubble up to controller → becomes 400 Bad Request
@@ -570,6 +524,7 @@ public class AdmiService {
 		}
 
 		User updatedAdmin = userRepository.save(admin);
+		userPrincipalCache.evict(userId);
 		logger.info("Admin profile updated for user: {}", userId);
 
 		return Map.of("message", "Profile updated successfully", "userId", updatedAdmin.getUserId(), "username",
@@ -3,19 +3,42 @@ package com.example.visited.services;
 import org.springframework.transaction.annotation.Transactional;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.example.visited.DTO.AuthPrincipal;
+import com.example.visited.DTO.CachedUser;
+import com.example.visited.DTO.SessionTokens;
 import com.example.visited.entitys.JWT;
 import com.example.visited.entitys.User;
 import com.example.visited.repositories.JWTTokenRepository;
 import com.example.visited.repositories.UserRepository;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -26,16 +49,41 @@ import org.slf4j.LoggerFactory;
 @Service
 public class AuthService {
 	private final Key SIGNING_KEY;
+	private final JwtParser jwtParser;
+	private final long tokenTtlMillis;
+	private final long refreshTtlMillis;
+	private final long refreshReuseGraceSeconds;
+	private final SecureRandom secureRandom = new SecureRandom();
 
 	private final UserRepository userRepository;
 	private final JWTTokenRepository jwtTokenRepository;
-	private final BCryptPasswordEncoder passwordEncoder;
+	private final TokenRevocationStore revocationStore;
+	private final UserPrincipalCache userPrincipalCache;
+	private final PasswordHasher passwordHasher;
+	private final LoginExecutor loginExecutor;
+	// Where a login continues once BCrypt is done: the rehash and the session INSERT do not hold
+	// one of the few login threads
+	private final Executor sessionExecutor;
+
+	// Verified tokens keyed by SHA-256 of the token, each entry lives until the token expires
+	private final Cache<String, AuthPrincipal> verifiedTokens;
 
 	public AuthService(UserRepository userRepository, JWTTokenRepository jwtTokenRepository,
-			@Value("${jwt.secret}") String jwtSecret) {
+			TokenRevocationStore revocationStore, UserPrincipalCache userPrincipalCache,
+			PasswordHasher passwordHasher, LoginExecutor loginExecutor,
+			@Qualifier("applicationTaskExecutor") Executor sessionExecutor,
+			@Value("${jwt.secret}") String jwtSecret,
+			@Value("${jwt.expiration:900000}") long tokenTtlMillis,
+			@Value("${jwt.refresh-expiration:1209600000}") long refreshTtlMillis,
+			@Value("${jwt.refresh-reuse-grace-seconds:30}") long refreshReuseGraceSeconds,
+			@Value("${jwt.verified-cache.max-size:10000}") long verifiedCacheMaxSize) {
 		this.userRepository = userRepository;
 		this.jwtTokenRepository = jwtTokenRepository;
-		this.passwordEncoder = new BCryptPasswordEncoder();
+		this.revocationStore = revocationStore;
+		this.userPrincipalCache = userPrincipalCache;
+		this.passwordHasher = passwordHasher;
+		this.loginExecutor = loginExecutor;
+		this.sessionExecutor = sessionExecutor;
 
 // Ensure the key length is at least 64 bytes
 		if (jwtSecret.getBytes(StandardCharsets.UTF_8).length < 64) {
@@ -43,117 +91,299 @@ public class AuthService {
 					"JWT_SECRET in application.properties must be at least 64 bytes long for HS512.");
 		}
 		this.SIGNING_KEY = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+		this.jwtParser = Jwts.parserBuilder().setSigningKey(SIGNING_KEY).build();
+		this.tokenTtlMillis = tokenTtlMillis;
+		this.refreshTtlMillis = refreshTtlMillis;
+		this.refreshReuseGraceSeconds = refreshReuseGraceSeconds;
+		this.verifiedTokens = Caffeine.newBuilder()
+				.maximumSize(verifiedCacheMaxSize)
+				.expireAfter(new Expiry<String, AuthPrincipal>() {
+					@Override
+					public long expireAfterCreate(String key, AuthPrincipal principal, long currentTime) {
+						long millisLeft = principal.expiresAt().toEpochMilli() - System.currentTimeMillis();
+						return Math.max(0, millisLeft) * 1_000_000L;
+					}
+
+					@Override
+					public long expireAfterUpdate(String key, AuthPrincipal principal, long currentTime,
+							long currentDuration) {
+						return expireAfterCreate(key, principal, currentTime);
+					}
+
+					@Override
+					public long expireAfterRead(String key, AuthPrincipal principal, long currentTime,
+							long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.build();
 	}
 	private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
 
-	public User authenticate(String username, String password) {
+	// The username lookup runs on the caller; only the BCrypt check is queued on the login executor,
+	// and the future completes on sessionExecutor, so whatever the caller chains on (creating the
+	// session) runs there too. Completes exceptionally with InvalidCredentialsException for a wrong
+	// username or password, and with RejectedExecutionException when the login queue is full.
+	public CompletableFuture<User> authenticate(String username, String password) {
 		User user = userRepository.findByUsername(username);
 		if (user == null) {
 			logger.warn("Authentication failed: User not found - {}", username);
-			throw new RuntimeException("Invalid username or password");
+			return CompletableFuture.failedFuture(new InvalidCredentialsException());
+		}
+		return loginExecutor.submit(() -> passwordHasher.matches(password, user.getPasswordHash()))
+				.thenApplyAsync(matches -> completeLogin(user, password, matches), sessionExecutor);
+	}
+
+	private User completeLogin(User user, String password, boolean matches) {
+		if (!matches) {
+			logger.warn("Authentication failed: Invalid password for user - {}", user.getUsername());
+			throw new InvalidCredentialsException();
 		}
 
-		if (!passwordEncoder.matches(password, user.getPasswordHash())) {
-			logger.warn("Authentication failed: Invalid password for user - {}", username);
-			throw new RuntimeException("Invalid username or password");
+		// Bring hashes from older/other cost settings in line while the plaintext is at hand
+		if (passwordHasher.needsRehash(user.getPasswordHash())) {
+			String rehashed = passwordHasher.encode(password);
+			userRepository.updatePasswordHash(user.getUserId(), rehashed);
+			user.setPasswordHash(rehashed);
+			logger.info("Re-hashed password for user {} at cost {}", user.getUsername(), passwordHasher.getCost());
 		}
-		
-		logger.info("User authenticated successfully: {}", username);
+
+		logger.info("User authenticated successfully: {}", user.getUsername());
 		return user;
 	}
 
-	    public String generateToken(User user) {
-	        String token;
+	    // Every login opens its own session (one row, one jti), so phone and laptop no longer
+	    // kick each other out. Cost: a single INSERT. The session outlives the short access token;
+	    // the refresh token renews it without going through BCrypt again.
+	    public SessionTokens createSession(User user, String deviceLabel, String ipAddress) {
+	        String jti = UUID.randomUUID().toString();
+	        String accessToken = generateNewToken(user.getUserId(), user.getRole(), jti);
+	        String refreshSecret = newRefreshSecret();
+
+	        JWT session = new JWT(user, tokenHash(accessToken), jti,
+	                LocalDateTime.now().plusNanos(refreshTtlMillis * 1_000_000L));
+	        session.setRefreshTokenHash(tokenHash(refreshSecret));
+	        session.setDeviceLabel(truncate(deviceLabel, 255));
+	        session.setIpAddress(truncate(ipAddress, 45));
+	        jwtTokenRepository.save(session);
+	        return new SessionTokens(accessToken, jti + "." + refreshSecret);
+	    }
+
+	    // Rotates the refresh token and mints a new access token for the same session: one locked
+	    // indexed SELECT + one UPDATE, no BCrypt. Presenting an already-rotated refresh token
+	    // (outside the short grace window for concurrent tabs) is treated as theft and ends the session.
+	    @Transactional
+	    public Optional<SessionTokens> refresh(String refreshToken) {
+	        int dot = refreshToken == null ? -1 : refreshToken.indexOf('.');
+	        if (dot <= 0) {
+	            return Optional.empty();
+	        }
+	        String sessionId = refreshToken.substring(0, dot);
+	        byte[] presented = tokenHash(refreshToken.substring(dot + 1));
+
+	        JWT session = jwtTokenRepository.findByJtiForUpdate(sessionId).orElse(null);
 	        LocalDateTime now = LocalDateTime.now();
-	        JWT existingToken = jwtTokenRepository.findByUser(user);
+	        if (session == null || session.getRevokedAt() != null || !session.getExpiresAt().isAfter(now)
+	                || session.getRefreshTokenHash() == null) {
+	            return Optional.empty();
+	        }
 
-	        if (existingToken != null && now.isBefore(existingToken.getExpiresAt())) {
-	            token = existingToken.getToken();
-	        } else {
-	            token = generateNewToken(user);
-	            if (existingToken != null) {
-	                jwtTokenRepository.delete(existingToken);
+	        if (!MessageDigest.isEqual(presented, session.getRefreshTokenHash())) {
+	            boolean concurrentRefresh = session.getPreviousRefreshHash() != null
+	                    && MessageDigest.isEqual(presented, session.getPreviousRefreshHash())
+	                    && session.getRefreshedAt() != null
+	                    && session.getRefreshedAt().plusSeconds(refreshReuseGraceSeconds).isAfter(now);
+	            if (!concurrentRefresh) {
+	                logger.warn("Refresh token reuse detected for session {}, revoking it", sessionId);
+	                session.setRevokedAt(now);
+	                LocalDateTime tokensExpireBy = now.plusNanos(tokenTtlMillis * 1_000_000L);
+	                afterCommit(() -> forgetSession(sessionId, tokensExpireBy));
 	            }
-	            saveToken(user, token);
+	            return Optional.empty();
+	        }
+
+	        Integer userId = session.getUser().getUserId(); // proxy id, no extra query
+	        CachedUser user = userPrincipalCache.get(userId).orElse(null);
+	        if (user == null || user.status() != User.Status.Approved) {
+	            return Optional.empty();
 	        }
-	        return token;
+
+	        String refreshSecret = newRefreshSecret();
+	        session.setPreviousRefreshHash(session.getRefreshTokenHash());
+	        session.setRefreshTokenHash(tokenHash(refreshSecret));
+	        session.setRefreshedAt(now);
+
+	        String accessToken = generateNewToken(userId, user.role(), sessionId);
+	        return Optional.of(new SessionTokens(accessToken, sessionId + "." + refreshSecret));
+	    }
+
+	    public int getAccessTokenMaxAgeSeconds() {
+	        return (int) (tokenTtlMillis / 1000);
+	    }
+
+	    public int getRefreshTokenMaxAgeSeconds() {
+	        return (int) (refreshTtlMillis / 1000);
+	    }
+
+	    private String newRefreshSecret() {
+	        byte[] bytes = new byte[32];
+	        secureRandom.nextBytes(bytes);
+	        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
 	    }
-//	    public String generateToken(User user) {
-//	        // Generate a fresh token
-//	        String token = generateNewToken(user);
-//
-//	        // Save token without deleting old ones
-//	        saveToken(user, token);
-//
-//	        return token;
-//	    }
-
-	    
-
-	    private String generateNewToken(User user) {
+
+	    private String generateNewToken(Integer userId, User.Role role, String jti) {
 	        return Jwts.builder()
-	                .setSubject(user.getUserId().toString())  // now immutable ID
-	                .claim("role", user.getRole().name())
+	                .setId(jti)
+	                .setSubject(userId.toString())  // now immutable ID
+	                .claim("role", role.name())
 	                .setIssuedAt(new Date())
-	                .setExpiration(new Date(System.currentTimeMillis() + 3600000)) // 1 hour
+	                .setExpiration(new Date(System.currentTimeMillis() + tokenTtlMillis))
 	                .signWith(SIGNING_KEY, SignatureAlgorithm.HS512)
 	                .compact();
 	    }
 
-	    public void saveToken(User user, String token) {
-	    	 LocalDateTime expiresAt = LocalDateTime.now().plusHours(1);
-	 	    JWT jwt = new JWT(user, token, expiresAt);
-	 	    jwtTokenRepository.save(jwt);
-	 	
+	    // Logout ends only the calling session: one indexed UPDATE by jti
+	    @Transactional
+	    public void logout(AuthPrincipal principal) {
+	        revokeSession(principal.userId(), principal.tokenId());
+	    }
+
+	    @Transactional(readOnly = true)
+	    public List<Map<String, Object>> listSessions(Integer userId, String currentSessionId) {
+	        List<JWT> sessions = jwtTokenRepository
+	                .findByUser_UserIdAndExpiresAtAfterAndRevokedAtIsNullOrderByCreatedAtDesc(userId, LocalDateTime.now());
+
+	        List<Map<String, Object>> result = new ArrayList<>();
+	        for (JWT session : sessions) {
+	            if (session.getJti() == null) {
+	                continue; // legacy row without a session id, cannot be addressed
+	            }
+	            Map<String, Object> map = new HashMap<>();
+	            map.put("sessionId", session.getJti());
+	            map.put("device", session.getDeviceLabel());
+	            map.put("ipAddress", session.getIpAddress());
+	            map.put("createdAt", session.getCreatedAt());
+	            map.put("expiresAt", session.getExpiresAt());
+	            map.put("current", session.getJti().equals(currentSessionId));
+	            result.add(map);
+	        }
+	        return result;
+	    }
+
+	    // Returns false when the session does not exist, is not the user's, or is already revoked
+	    @Transactional
+	    public boolean revokeSession(Integer userId, String sessionId) {
+	        if (sessionId == null) {
+	            return false;
+	        }
+	        LocalDateTime now = LocalDateTime.now();
+	        int updated = jwtTokenRepository.revokeSession(sessionId, userId, now);
+	        if (updated == 0) {
+	            return false;
+	        }
+	        // The exact expiry is not needed: no access token of this session outlives now + token lifetime,
+	        // and the revoked row already blocks further refreshes
+	        LocalDateTime tokensExpireBy = now.plusNanos(tokenTtlMillis * 1_000_000L);
+	        afterCommit(() -> forgetSession(sessionId, tokensExpireBy));
+	        return true;
+	    }
+
+	    private static String truncate(String value, int max) {
+	        return value != null && value.length() > max ? value.substring(0, max) : value;
 	    }
 
 	@Transactional
-	    public void logout(User user) {
-	     // Option A: Delete ALL tokens of this user (single session policy)
-	        jwtTokenRepository.deleteByUser(user);
+	    public void revokeAllTokens(User user) {
+	        LocalDateTime now = LocalDateTime.now();
+	        List<JWT> live = jwtTokenRepository.findByUserAndRevokedAtIsNullAndExpiresAtAfter(user, now);
+	        jwtTokenRepository.revokeAllByUser(user, now);
+	        Integer userId = user.getUserId();
+	        afterCommit(() -> {
+	            for (JWT jwt : live) {
+	                revocationStore.revoke(jwt.getJti(), jwt.getExpiresAt());
+	            }
+	            verifiedTokens.asMap().values().removeIf(p -> p.userId().equals(userId));
+	        });
+	    }
 
-	        // Option B: If you want to keep other sessions alive (more common in 2025+)
-	        // Do nothing here - or delete only specific token if you pass it
-	        // jwtTokenRepository.deleteByToken(currentToken);  ← if you pass token
+	    private void forgetSession(String sessionId, LocalDateTime tokensExpireBy) {
+	        revocationStore.revoke(sessionId, tokensExpireBy);
+	        verifiedTokens.asMap().values().removeIf(p -> sessionId.equals(p.tokenId()));
 	    }
 
-	    public boolean validateToken(String token) {
-	        try {
-	            logger.debug("Validating JWT token");
-
-	            // Parse and validate the token
-	            Jwts.parserBuilder()
-	                .setSigningKey(SIGNING_KEY)
-	                .build()
-	                .parseClaimsJws(token);
-
-	            // Check if the token exists in the database and is not expired
-	            Optional<JWT> jwtToken = jwtTokenRepository.findByToken(token);
-	            if (jwtToken.isPresent()) {
-	                boolean isValid = jwtToken.get().getExpiresAt().isAfter(LocalDateTime.now());
-	                logger.debug("Token validation result: {}", isValid);
-	                return isValid;
+	    // In-memory revocations follow the revoked_at write: applied once it commits (including the
+	    // caller's transaction, e.g. deleteMarketingUser), never when it rolls back
+	    private static void afterCommit(Runnable action) {
+	        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+	            action.run();
+	            return;
+	        }
+	        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+	            @Override
+	            public void afterCommit() {
+	                action.run();
 	            }
+	        });
+	    }
 
-	            logger.debug("Token not found in database");
-	            return false;
+	    // Single verification path for the filter: one signature check with the prebuilt parser
+	    // on a cache miss, then an in-memory revocation check. No DB query for tokens carrying a jti.
+	    public Optional<AuthPrincipal> authenticateToken(String token) {
+	        byte[] hash = tokenHash(token);
+	        String key = Base64.getEncoder().encodeToString(hash);
+	        AuthPrincipal cached = verifiedTokens.getIfPresent(key);
+	        if (cached != null) {
+	            return revocationStore.isRevoked(cached.tokenId()) ? Optional.empty() : Optional.of(cached);
+	        }
+
+	        Claims claims;
+	        try {
+	            claims = jwtParser.parseClaimsJws(token).getBody();
 	        } catch (Exception e) {
 	            logger.warn("Token validation failed: {}", e.getMessage());
-	            return false;
+	            return Optional.empty();
 	        }
-	    }
 
-	    public Integer extractUserId(String token) {
+	        String jti = claims.getId();
+	        if (jti != null) {
+	            if (revocationStore.isRevoked(jti)) {
+	                logger.debug("Token {} has been revoked", jti);
+	                return Optional.empty();
+	            }
+	        } else {
+	            // Tokens issued before jti was introduced: fall back to the old table check
+	            Optional<JWT> jwtToken = jwtTokenRepository.findByTokenHash(hash);
+	            if (jwtToken.isEmpty() || jwtToken.get().getRevokedAt() != null
+	                    || !jwtToken.get().getExpiresAt().isAfter(LocalDateTime.now())) {
+	                logger.debug("Token not found in database or expired");
+	                return Optional.empty();
+	            }
+	        }
+
+	        AuthPrincipal principal;
 	        try {
-	            String userIdStr = Jwts.parserBuilder()
-	                    .setSigningKey(SIGNING_KEY)
-	                    .build()
-	                    .parseClaimsJws(token)
-	                    .getBody()
-	                    .getSubject();
-	            return Integer.parseInt(userIdStr);
+	            principal = new AuthPrincipal(
+	                    Integer.parseInt(claims.getSubject()),
+	                    User.Role.valueOf(claims.get("role", String.class)),
+	                    jti,
+	                    claims.getExpiration().toInstant());
 	        } catch (Exception e) {
-	            throw new SecurityException("Invalid token");
+	            logger.warn("Token carries malformed claims: {}", e.getMessage());
+	            return Optional.empty();
+	        }
+
+	        if (principal.expiresAt().isAfter(Instant.now())) {
+	            verifiedTokens.put(key, principal);
+	        }
+	        return Optional.of(principal);
+	    }
+
+	    // SHA-256 of the raw token, matches UNHEX(SHA2(token, 256)) used by the backfill migration
+	    public static byte[] tokenHash(String token) {
+	        try {
+	            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+	        } catch (NoSuchAlgorithmException e) {
+	            throw new IllegalStateException("SHA-256 not available", e);
 	        }
 	    }
 
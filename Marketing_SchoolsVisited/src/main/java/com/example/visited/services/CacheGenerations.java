@@ -0,0 +1,61 @@
+package com.example.visited.services;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Cluster-wide generation counters (cache_generation, V15) for the caches every node keeps in
+// memory. The node that commits a change bumps the counter once its commit is done; each node polls
+// the counters its caches depend on and drops a cache when its counter has moved. That costs one
+// primary-key read per cache per poll, and one single-row UPDATE per committed change.
+@Service
+public class CacheGenerations {
+
+	private static final Logger logger = LoggerFactory.getLogger(CacheGenerations.class);
+
+	public static final String REVENUE_REPORTS = "revenue-reports";
+	public static final String MODULE_CATALOG = "module-catalog";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+
+	public CacheGenerations(DataSource dataSource, PlatformTransactionManager transactionManager) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		// Bumps run from after-commit listeners, where the finished transaction cannot take more writes
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	// Never throws: the change it announces has already committed. If the bump is lost, other nodes
+	// only see the change once their cache entries expire.
+	public void bump(String name) {
+		try {
+			transactionTemplate.executeWithoutResult(tx -> {
+				if (jdbcTemplate.update("UPDATE cache_generation SET generation = generation + 1 WHERE name = ?",
+						name) == 0) {
+					jdbcTemplate.update("INSERT INTO cache_generation (name, generation) VALUES (?, 1)", name);
+				}
+			});
+		} catch (DuplicateKeyException e) {
+			// Another node created the row first, which moves the generation just as well
+		} catch (RuntimeException e) {
+			logger.warn("Could not bump cache generation {}", name, e);
+		}
+	}
+
+	// 0 until the first bump
+	public long current(String name) {
+		List<Long> rows = jdbcTemplate.queryForList("SELECT generation FROM cache_generation WHERE name = ?",
+				Long.class, name);
+		return rows.isEmpty() ? 0 : rows.get(0);
+	}
+}
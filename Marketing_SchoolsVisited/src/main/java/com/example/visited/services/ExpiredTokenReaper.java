@@ -0,0 +1,84 @@
+package com.example.visited.services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.visited.repositories.JWTTokenRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Deletes expired jwt_tokens rows in small keyset batches. Each batch is its own short
+// transaction so the job never holds locks for long or runs into the default 5s timeout.
+@Service
+public class ExpiredTokenReaper {
+
+	private static final Logger logger = LoggerFactory.getLogger(ExpiredTokenReaper.class);
+
+	private final JWTTokenRepository jwtTokenRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final int batchSize;
+	private final int maxBatchesPerRun;
+	private final Counter purgedCounter;
+	private final Timer runTimer;
+
+	public ExpiredTokenReaper(JWTTokenRepository jwtTokenRepository, PlatformTransactionManager transactionManager,
+			MeterRegistry meterRegistry,
+			@Value("${jwt.reaper.batch-size:1000}") int batchSize,
+			@Value("${jwt.reaper.max-batches-per-run:100}") int maxBatchesPerRun) {
+		this.jwtTokenRepository = jwtTokenRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.batchSize = batchSize;
+		this.maxBatchesPerRun = maxBatchesPerRun;
+		this.purgedCounter = Counter.builder("auth.tokens.reaped")
+				.description("Expired jwt_tokens rows deleted by the reaper")
+				.register(meterRegistry);
+		this.runTimer = Timer.builder("auth.tokens.reaper.duration")
+				.description("Time spent per reaper run")
+				.register(meterRegistry);
+	}
+
+	@Scheduled(fixedDelayString = "${jwt.reaper.interval-ms:300000}", initialDelayString = "${jwt.reaper.initial-delay-ms:60000}")
+	public void reap() {
+		runTimer.record(() -> {
+			LocalDateTime now = LocalDateTime.now();
+			int afterId = 0;
+			long total = 0;
+
+			for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+				final int from = afterId;
+				List<Integer> ids = transactionTemplate.execute(status -> {
+					List<Integer> page = jwtTokenRepository.findExpiredIds(now, from, PageRequest.ofSize(batchSize));
+					if (!page.isEmpty()) {
+						jwtTokenRepository.deleteAllByIdInBatch(page);
+					}
+					return page;
+				});
+
+				if (ids == null || ids.isEmpty()) {
+					break;
+				}
+				total += ids.size();
+				purgedCounter.increment(ids.size());
+				afterId = ids.get(ids.size() - 1);
+				if (ids.size() < batchSize) {
+					break;
+				}
+			}
+
+			if (total > 0) {
+				logger.info("Reaped {} expired tokens", total);
+			}
+		});
+	}
+}
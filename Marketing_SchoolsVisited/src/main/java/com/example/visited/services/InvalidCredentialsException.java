@@ -0,0 +1,12 @@
+package com.example.visited.services;
+
+// Unknown username or wrong password. The only login failure that counts as a failed attempt for
+// LoginAttemptService; anything else thrown during login is a server fault.
+public class InvalidCredentialsException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidCredentialsException() {
+		super("Invalid username or password");
+	}
+}
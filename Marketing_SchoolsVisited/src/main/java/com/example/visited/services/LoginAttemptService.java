@@ -0,0 +1,142 @@
+package com.example.visited.services;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Login throttle, checked before any password check (buckets come from RateLimitBucketStore,
+// so with the jdbc backend they are shared by all nodes):
+//  - per client IP bucket (RateLimitFilter) caps credential stuffing from one source,
+//  - per username bucket (AuthController) caps guessing one account from many IPs,
+//  - after repeated failures the username is locked out for an exponentially growing delay.
+// All checks return the number of seconds to wait, 0 meaning the attempt may proceed.
+@Service
+public class LoginAttemptService {
+
+	private final RateLimitBucketStore bucketStore;
+	private final Bandwidth ipBandwidth;
+	private final Bandwidth usernameBandwidth;
+	// username -> consecutive failures and lockout end
+	private final Cache<String, FailureState> failures;
+
+	private final int backoffAfterFailures;
+	private final long backoffBaseSeconds;
+	private final long backoffMaxSeconds;
+
+	private final Counter ipThrottled;
+	private final Counter usernameThrottled;
+	private final Counter backoffThrottled;
+	private final Counter failedLogins;
+
+	private static final class FailureState {
+		private int count;
+		private long lockedUntilMillis;
+	}
+
+	public LoginAttemptService(MeterRegistry meterRegistry, RateLimitBucketStore bucketStore,
+			@Value("${auth.login.ip.attempts-per-minute:20}") long ipCapacity,
+			@Value("${auth.login.username.attempts-per-minute:5}") long usernameCapacity,
+			@Value("${auth.login.backoff.after-failures:3}") int backoffAfterFailures,
+			@Value("${auth.login.backoff.base-seconds:1}") long backoffBaseSeconds,
+			@Value("${auth.login.backoff.max-seconds:900}") long backoffMaxSeconds) {
+		this.bucketStore = bucketStore;
+		this.ipBandwidth = perMinute(ipCapacity);
+		this.usernameBandwidth = perMinute(usernameCapacity);
+		this.backoffAfterFailures = backoffAfterFailures;
+		this.backoffBaseSeconds = backoffBaseSeconds;
+		this.backoffMaxSeconds = backoffMaxSeconds;
+
+		// Bounded so a spray of random usernames cannot grow memory without limit
+		this.failures = Caffeine.newBuilder().maximumSize(100_000)
+				.expireAfterAccess(Math.max(backoffMaxSeconds, 3600), TimeUnit.SECONDS).build();
+
+		this.ipThrottled = throttledCounter(meterRegistry, "ip");
+		this.usernameThrottled = throttledCounter(meterRegistry, "username");
+		this.backoffThrottled = throttledCounter(meterRegistry, "backoff");
+		this.failedLogins = Counter.builder("auth.login.failures")
+				.description("Failed login attempts (bad username or password)")
+				.register(meterRegistry);
+	}
+
+	private static Counter throttledCounter(MeterRegistry meterRegistry, String reason) {
+		return Counter.builder("auth.login.throttled")
+				.description("Login attempts answered with 429 before any password check")
+				.tag("reason", reason)
+				.register(meterRegistry);
+	}
+
+	public long tryAcquireForIp(String ipAddress) {
+		long wait = tryConsume(bucketStore.resolve("login-ip:" + ipAddress, ipBandwidth));
+		if (wait > 0) {
+			ipThrottled.increment();
+		}
+		return wait;
+	}
+
+	public long tryAcquireForUsername(String username) {
+		String key = normalize(username);
+		FailureState state = failures.getIfPresent(key);
+		if (state != null) {
+			long remainingMillis;
+			synchronized (state) {
+				remainingMillis = state.lockedUntilMillis - System.currentTimeMillis();
+			}
+			if (remainingMillis > 0) {
+				backoffThrottled.increment();
+				return TimeUnit.MILLISECONDS.toSeconds(remainingMillis) + 1;
+			}
+		}
+		long wait = tryConsume(bucketStore.resolve("login-user:" + key, usernameBandwidth));
+		if (wait > 0) {
+			usernameThrottled.increment();
+		}
+		return wait;
+	}
+
+	// Lockout doubles with every failure past the threshold: base, 2x base, 4x base ... up to max
+	public void recordFailure(String username) {
+		failedLogins.increment();
+		FailureState state = failures.get(normalize(username), k -> new FailureState());
+		synchronized (state) {
+			state.count++;
+			int over = state.count - backoffAfterFailures;
+			if (over >= 0) {
+				long delaySeconds = Math.min(backoffMaxSeconds, backoffBaseSeconds << Math.min(over, 30));
+				state.lockedUntilMillis = System.currentTimeMillis() + delaySeconds * 1000;
+			}
+		}
+	}
+
+	public void recordSuccess(String username) {
+		failures.invalidate(normalize(username));
+	}
+
+	private static long tryConsume(Bucket bucket) {
+		ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+		if (probe.isConsumed()) {
+			return 0;
+		}
+		return TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()) + 1;
+	}
+
+	private static Bandwidth perMinute(long attempts) {
+		return Bandwidth.classic(attempts, Refill.greedy(attempts, Duration.ofMinutes(1)));
+	}
+
+	private static String normalize(String username) {
+		return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+	}
+}
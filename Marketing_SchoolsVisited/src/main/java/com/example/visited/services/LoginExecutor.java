@@ -0,0 +1,63 @@
+package com.example.visited.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+
+// Runs password verification off the Tomcat workers. BCrypt is pure CPU, so the pool is sized
+// to the cores and the queue is bounded: a login burst waits here (or is rejected with 503)
+// instead of occupying every request thread and starving the rest of the API.
+@Service
+public class LoginExecutor {
+
+	private final ThreadPoolExecutor executor;
+	private final Counter rejectedCounter;
+
+	public LoginExecutor(MeterRegistry meterRegistry,
+			@Value("${auth.login.threads:0}") int threads,
+			@Value("${auth.login.queue-capacity:64}") int queueCapacity) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> {
+					Thread thread = new Thread(runnable, "login-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy());
+		// executor.queued / executor.active / executor.queue.remaining etc. tagged name=login
+		ExecutorServiceMetrics.monitor(meterRegistry, executor, "login", Tags.empty());
+		this.rejectedCounter = Counter.builder("auth.login.rejected")
+				.description("Logins rejected because the password verification queue was full")
+				.register(meterRegistry);
+	}
+
+	// Completes exceptionally with RejectedExecutionException when the queue is full
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		try {
+			return CompletableFuture.supplyAsync(task, executor);
+		} catch (RejectedExecutionException e) {
+			rejectedCounter.increment();
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
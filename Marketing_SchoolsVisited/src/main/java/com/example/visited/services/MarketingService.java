@@ -2,64 +2,71 @@ package com.example.visited.services;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.example.visited.DTO.SelectedModule;
+import com.example.visited.DTO.VisitCursor;
+import com.example.visited.DTO.VisitDetail;
+import com.example.visited.DTO.VisitKey;
+import com.example.visited.DTO.VisitStatsFacts;
 import com.example.visited.entitys.MarketingTeam;
-import com.example.visited.entitys.Modules;
 import com.example.visited.entitys.SchoolModuleRequired;
 import com.example.visited.entitys.SchoolVisited;
 import com.example.visited.entitys.User;
 import com.example.visited.repositories.MarketingTeamRepository;
-import com.example.visited.repositories.ModulesRepository;
 import com.example.visited.repositories.SchoolModuleRequiredRepository;
 import com.example.visited.repositories.SchoolsVisitedRepository;
 import com.example.visited.repositories.UserRepository;
 
-import jakarta.transaction.Transactional;
-
 @Service
 @Transactional
 public class MarketingService {
 
 	private static final Logger logger = LoggerFactory.getLogger(MarketingService.class);
+	// Width of school_visited.location_city (V8)
+	private static final int LOCATION_CITY_MAX_LENGTH = 100;
 	private final SchoolsVisitedRepository schoolVisitedRepository;
-	private final ModulesRepository modulesRepository;
 	private final SchoolModuleRequiredRepository schoolModuleRequiredRepository;
 	private final MarketingTeamRepository marketingTeamRepository;
 	private final UserRepository userRepository;
-
-	public MarketingService(SchoolsVisitedRepository schoolVisitedRepository, ModulesRepository modulesRepository,
+	private final VisitModuleLoader visitModuleLoader;
+	private final VisitModuleWriter visitModuleWriter;
+	private final VisitStatsService visitStatsService;
+	private final ApplicationEventPublisher eventPublisher;
+	private final int defaultPageSize;
+	private final int maxPageSize;
+
+	public MarketingService(SchoolsVisitedRepository schoolVisitedRepository,
 			SchoolModuleRequiredRepository schoolModuleRequiredRepository,
-			MarketingTeamRepository marketingTeamRepository, UserRepository userRepository) {
+			MarketingTeamRepository marketingTeamRepository, UserRepository userRepository,
+			VisitModuleLoader visitModuleLoader, VisitModuleWriter visitModuleWriter,
+			VisitStatsService visitStatsService, ApplicationEventPublisher eventPublisher,
+			@Value("${visits.page.default-size:50}") int defaultPageSize,
+			@Value("${visits.page.max-size:200}") int maxPageSize) {
 		this.schoolVisitedRepository = schoolVisitedRepository;
-		this.modulesRepository = modulesRepository;
 		this.schoolModuleRequiredRepository = schoolModuleRequiredRepository;
 		this.marketingTeamRepository = marketingTeamRepository;
 		this.userRepository = userRepository;
-	}
-
-	public List<Map<String, Object>> getAllActiveModules() {
-		List<Modules> modules = modulesRepository.findByIsActiveTrue();
-		logger.debug("Found {} active modules", modules.size());
-		List<Map<String, Object>> moduleList = new ArrayList<>();
-
-		for (Modules module : modules) {
-			Map<String, Object> moduleMap = new HashMap<>();
-			moduleMap.put("id", module.getId());
-			moduleMap.put("moduleName", module.getModuleName());
-			moduleMap.put("description", module.getDescription());
-			moduleList.add(moduleMap);
-		}
-
-		return moduleList;
+		this.visitModuleLoader = visitModuleLoader;
+		this.visitModuleWriter = visitModuleWriter;
+		this.visitStatsService = visitStatsService;
+		this.eventPublisher = eventPublisher;
+		this.defaultPageSize = defaultPageSize;
+		this.maxPageSize = maxPageSize;
 	}
 
 	public Map<String, Object> saveSchoolVisit(Map<String, Object> visitData, Integer userId) {
@@ -90,7 +97,7 @@ public class MarketingService {
 			schoolVisit.setMarketingExecutiveName(team.getFullName());
 		}
 
-		schoolVisit.setLocationCity((String) visitData.get("locationCity"));
+		schoolVisit.setLocationCity(toLocationCity(visitData.get("locationCity")));
 
 		// Contact information
 		schoolVisit.setContactPersonName((String) visitData.get("contactPersonName"));
@@ -149,29 +156,17 @@ public class MarketingService {
 		// Save school visit
 		SchoolVisited savedSchoolVisit = schoolVisitedRepository.save(schoolVisit);
 		logger.info("School visit saved with ID: {}", savedSchoolVisit.getId());
+		visitStatsService.apply(null, VisitStatsFacts.of(savedSchoolVisit));
+		eventPublisher.publishEvent(new VisitChangedEvent(savedSchoolVisit.getId()));
 
 		// Handle selected modules
 		@SuppressWarnings("unchecked")
 		List<Map<String, Object>> selectedModules = (List<Map<String, Object>>) visitData.get("selectedModules");
 
-		if (selectedModules != null) {
-			for (Map<String, Object> moduleData : selectedModules) {
-				Integer moduleId = (Integer) moduleData.get("moduleId");
-
-				// Find existing record by school and module
-				Optional<SchoolModuleRequired> existingModuleOpt = schoolModuleRequiredRepository
-						.findBySchoolVisitedIdAndModuleId(savedSchoolVisit.getId(), moduleId);
-
-				SchoolModuleRequired schoolModule = existingModuleOpt.orElse(new SchoolModuleRequired());
-
-				schoolModule.setSchoolVisited(savedSchoolVisit);
-				schoolModule.setModuleId(moduleId);
-				schoolModule
-						.setIsSelected(SchoolModuleRequired.IsSelected.valueOf((String) moduleData.get("isSelected")));
-				schoolModule.setRemarks((String) moduleData.get("remarks"));
-
-				schoolModuleRequiredRepository.save(schoolModule);
-			}
+		if (selectedModules != null && !selectedModules.isEmpty()) {
+			// All rows in one statement
+			visitModuleWriter.upsert(savedSchoolVisit.getId(),
+					toSelectedModules(savedSchoolVisit.getId(), selectedModules));
 		}
 
 		// Return success response
@@ -182,6 +177,39 @@ public class MarketingService {
 
 		return response;
 	}
+	// selectedModules entries: moduleId as a number or numeric string, isSelected as "Yes"/"No" or 1/0
+	// (missing means No)
+	private static List<SelectedModule> toSelectedModules(Integer visitId, List<Map<String, Object>> modules) {
+		List<SelectedModule> rows = new ArrayList<>(modules.size());
+		for (Map<String, Object> moduleData : modules) {
+			Object moduleIdObj = moduleData.get("moduleId");
+			if (moduleIdObj == null) {
+				throw new IllegalArgumentException("moduleId is required for each selected module");
+			}
+			Integer moduleId;
+			try {
+				moduleId = moduleIdObj instanceof Number number ? number.intValue()
+						: Integer.parseInt(moduleIdObj.toString().trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid moduleId: " + moduleIdObj);
+			}
+
+			Object isSelectedObj = moduleData.get("isSelected");
+			SchoolModuleRequired.IsSelected isSelected;
+			if (isSelectedObj == null) {
+				isSelected = SchoolModuleRequired.IsSelected.No;
+			} else if (isSelectedObj instanceof Number number) {
+				isSelected = number.intValue() == 1 ? SchoolModuleRequired.IsSelected.Yes
+						: SchoolModuleRequired.IsSelected.No;
+			} else {
+				isSelected = SchoolModuleRequired.IsSelected.valueOf(isSelectedObj.toString());
+			}
+
+			rows.add(new SelectedModule(visitId, moduleId, isSelected, (String) moduleData.get("remarks")));
+		}
+		return rows;
+	}
+
 	private BigDecimal toBigDecimall(Object value) {
 	    if (value == null) return null;
 	    try {
@@ -191,6 +219,46 @@ public class MarketingService {
 	    }
 	}
 
+	// Stored trimmed; anything longer than the column is a 400 rather than a silent cut
+	private static String toLocationCity(Object value) {
+		if (value == null) {
+			return null;
+		}
+		String city = value.toString().trim();
+		if (city.length() > LOCATION_CITY_MAX_LENGTH) {
+			throw new IllegalArgumentException(
+					"locationCity must be at most " + LOCATION_CITY_MAX_LENGTH + " characters");
+		}
+		return city;
+	}
+
+	// Edits may send back the version they were made against (VisitDetail.version); a visit changed
+	// since then is not overwritten
+	private static void checkVersion(SchoolVisited visit, Object expected) {
+		if (expected == null) {
+			return;
+		}
+		long version;
+		try {
+			version = expected instanceof Number number ? number.longValue() : Long.parseLong(expected.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid version: " + expected);
+		}
+		if (visit.getVersion() == null || visit.getVersion() != version) {
+			throw new ObjectOptimisticLockingFailureException(SchoolVisited.class, visit.getId());
+		}
+	}
+
+	// Module rows are written directly, so a change there touches the visit to bump its version too
+	private void reconcileModules(SchoolVisited visit, List<Map<String, Object>> modules) {
+		VisitModuleWriter.Changes changes = visitModuleWriter.reconcile(visit.getId(),
+				toSelectedModules(visit.getId(), modules));
+		logger.debug("Visit {} modules: {}", visit.getId(), changes);
+		if (!changes.isEmpty()) {
+			visit.setUpdatedAt(LocalDateTime.now());
+		}
+	}
+
 	public Map<String, Object> updateSchoolVisit(Integer visitId, Map<String, Object> visitData, Integer userId) {
 		SchoolVisited visit = schoolVisitedRepository.findById(visitId)
 				.orElseThrow(() -> new IllegalArgumentException("School visit not found"));
@@ -199,6 +267,8 @@ public class MarketingService {
 		if (!visit.getUser().getUserId().equals(userId)) {
 			throw new IllegalArgumentException("You can only edit your own school visits");
 		}
+		checkVersion(visit, visitData.get("version"));
+		VisitStatsFacts before = VisitStatsFacts.of(visit);
 
 		// Prevent editing restricted fields
 		if (visitData.containsKey("schoolName") || visitData.containsKey("visitedDate")
@@ -289,199 +359,114 @@ public class MarketingService {
 		}
 
 		if (visitData.containsKey("selectedModules")) {
-
 			List<Map<String, Object>> modules = (List<Map<String, Object>>) visitData.get("selectedModules");
-
-			// delete old modules
-			schoolModuleRequiredRepository.deleteBySchoolVisited(visit);
-
-			// insert new modules
-			for (Map<String, Object> moduleData : modules) {
-
-				SchoolModuleRequired schoolModule = new SchoolModuleRequired();
-				schoolModule.setSchoolVisited(visit); // relationship
-
-				// Safe moduleId conversion
-				Object moduleIdObj = moduleData.get("moduleId");
-				if (moduleIdObj != null) {
-					if (moduleIdObj instanceof Number) {
-						schoolModule.setModuleId(((Number) moduleIdObj).intValue());
-					} else {
-						schoolModule.setModuleId(Integer.parseInt(moduleIdObj.toString()));
-					}
-				}
-
-				// Safe isSelected conversion
-				Object isSelectedObj = moduleData.get("isSelected");
-				if (isSelectedObj != null) {
-					SchoolModuleRequired.IsSelected isSelected;
-					if (isSelectedObj instanceof Number) {
-						int val = ((Number) isSelectedObj).intValue();
-						isSelected = val == 1 ? SchoolModuleRequired.IsSelected.Yes
-								: SchoolModuleRequired.IsSelected.No;
-					} else {
-						isSelected = SchoolModuleRequired.IsSelected.valueOf(isSelectedObj.toString());
-					}
-					schoolModule.setIsSelected(isSelected);
-				}
-
-				schoolModule.setRemarks((String) moduleData.get("remarks"));
-
-				schoolModuleRequiredRepository.save(schoolModule);
-			}
+			reconcileModules(visit, modules);
 		}
 
-		schoolVisitedRepository.save(visit);
+		// Flushed here so a concurrent edit fails this request (409) and the response carries the new version
+		schoolVisitedRepository.saveAndFlush(visit);
+		visitStatsService.apply(before, VisitStatsFacts.of(visit));
+		eventPublisher.publishEvent(new VisitChangedEvent(visitId));
 		logger.info("School visit updated: {}", visitId);
 
-		return Map.of("message", "School visit updated successfully", "visitId", visitId, "status", "success");
+		return Map.of("message", "School visit updated successfully", "visitId", visitId, "status", "success",
+				"version", visit.getVersion());
 	}
 
-	public List<Map<String, Object>> getAllSchoolVisits(Integer userId) {
-		User user = userRepository.findByUserId(userId);
-		List<SchoolVisited> visits = schoolVisitedRepository.findByUser(user);
+	@Transactional(readOnly = true)
+	public List<VisitDetail> getAllSchoolVisits(Integer userId) {
+		List<VisitDetail> visits = schoolVisitedRepository.findDetailsByUserId(userId);
 		logger.debug("Retrieved {} school visits for user: {}", visits.size(), userId);
-		List<Map<String, Object>> visitList = new ArrayList<>();
-
-		for (SchoolVisited visit : visits) {
-			Map<String, Object> visitMap = new HashMap<>();
-			visitMap.put("id", visit.getId());
-			visitMap.put("schoolName", visit.getSchoolName());
-			visitMap.put("visitedDate", visit.getVisitedDate());
-			visitMap.put("marketingExecutiveName", visit.getMarketingExecutiveName());
-			visitMap.put("locationCity", visit.getLocationCity());
-			visitMap.put("contactPersonName", visit.getContactPersonName());
-			visitMap.put("designation", visit.getDesignation());
-			visitMap.put("decisionMakerName", visit.getDecisionMakerName());
-			visitMap.put("boards", visit.getBoards());
-			visitMap.put("decisionTimeline", visit.getDecisionTimeline());
-			visitMap.put("contactNo", visit.getContactNo());
-			visitMap.put("emailId", visit.getEmailId());
-			visitMap.put("schoolStrenght", visit.getSchoolStrenght());
-			visitMap.put("expectedGoLiveDate", visit.getExpectedGoLiveDate());
-			visitMap.put("billingFrequency",visit.getBillingfrequency()); // "Monthly", "Quarterly",
-
-
-			// Only show payment fields if status is ACCEPTED
-			if (visit.getStatus() == SchoolVisited.VisitStatus.ACCEPTED) {
-				visitMap.put("orderBookingDate", visit.getOrderBookingDate());
-				visitMap.put("initialPayment", visit.getInitialPayment());
-				visitMap.put("paymentTerms", visit.getPaymentTerms());
-
-			}
+		return visitModuleLoader.attachModules(visits.stream().map(VisitDetail::forOwner).toList());
+	}
 
-			visitMap.put("currentSystem", visit.getCurrentSystem());
-			visitMap.put("requiredplatform", visit.getRequiredplatform());
-			visitMap.put("noOfUsers", visit.getNoOfUsers());
-			visitMap.put("dataMigrationRequired", visit.getDataMigrationRequired());
-			visitMap.put("customFeaturesRequired", visit.getCustomFeaturesRequired());
-			visitMap.put("customFeatureDescription", visit.getCustomFeatureDescription());
-			visitMap.put("rfidIntegration", visit.getRfidIntegration());
-			visitMap.put("idCards", visit.getIdCards());
-			visitMap.put("paymentGatewayPreference", visit.getPaymentGatewayPreference());
-			visitMap.put("budgetRange", visit.getBudgetRange());
-			visitMap.put("costPerMember", visit.getCostPerMember());
-			visitMap.put("demoRequired", visit.getDemoRequired());
-			visitMap.put("demoDate", visit.getDemoDate());
-			visitMap.put("proposalSent", visit.getProposalSent());
-			visitMap.put("proposalDate", visit.getProposalDate());
-			visitMap.put("status", visit.getStatus());
-			if (visit.getStatus() == SchoolVisited.VisitStatus.REJECTED) {
-				visitMap.put("rejectionReason", visit.getRejectionReason());
-			}
-			visitMap.put("createdAt", visit.getCreatedAt());
-
-			// Get selected modules for this visit
-			List<SchoolModuleRequired> modules = schoolModuleRequiredRepository.findBySchoolVisited(visit);
-			List<Map<String, Object>> moduleList = new ArrayList<>();
-
-			for (SchoolModuleRequired module : modules) {
-				Map<String, Object> moduleMap = new HashMap<>();
-				moduleMap.put("moduleId", module.getModuleId());
-				moduleMap.put("isSelected", module.getIsSelected().name());
-				moduleMap.put("remarks", module.getRemarks());
-				moduleList.add(moduleMap);
-			}
+	// One keyset page of a marketing user's visits, newest first. cursor is the nextCursor of the
+	// previous page (absent for the first page); limit defaults to visits.page.default-size.
+	// summary = compact rows without TEXT columns or modules.
+	@Transactional(readOnly = true)
+	public Map<String, Object> getSchoolVisitsPage(Integer userId, String cursor, Integer limit, boolean summary) {
+		VisitCursor after = VisitCursor.decode(cursor);
+		int pageSize = resolvePageSize(limit);
+		// One extra row tells whether another page exists without a count query
+		Pageable fetch = PageRequest.of(0, pageSize + 1);
+		List<VisitKey> keys = after == null
+				? schoolVisitedRepository.findPageByUser(userId, fetch)
+				: schoolVisitedRepository.findPageByUserAfter(userId, after.createdAt(), after.id(), fetch);
+		logger.debug("Retrieved {} school visits for user: {} (cursor: {})", keys.size(), userId, cursor);
+		return toVisitPage(keys, pageSize, summary, true);
+	}
 
-			visitMap.put("selectedModules", moduleList);
-			visitList.add(visitMap);
+	// Admin listing across all users, optionally restricted to one status
+	@Transactional(readOnly = true)
+	public Map<String, Object> getSchoolVisitsPageForAdmin(SchoolVisited.VisitStatus status, String cursor,
+			Integer limit, boolean summary) {
+		VisitCursor after = VisitCursor.decode(cursor);
+		int pageSize = resolvePageSize(limit);
+		Pageable fetch = PageRequest.of(0, pageSize + 1);
+		List<VisitKey> keys;
+		if (status != null) {
+			keys = after == null
+					? schoolVisitedRepository.findPageByStatus(status, fetch)
+					: schoolVisitedRepository.findPageByStatusAfter(status, after.createdAt(), after.id(), fetch);
+		} else {
+			keys = after == null
+					? schoolVisitedRepository.findPage(fetch)
+					: schoolVisitedRepository.findPageAfter(after.createdAt(), after.id(), fetch);
 		}
+		logger.debug("Retrieved {} school visits for admin (status: {}, cursor: {})", keys.size(), status, cursor);
+		return toVisitPage(keys, pageSize, summary, false);
+	}
 
-		return visitList;
+	private int resolvePageSize(Integer limit) {
+		if (limit == null) {
+			return defaultPageSize;
+		}
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		return Math.min(limit, maxPageSize);
 	}
 
-	public List<Map<String, Object>> getAllSchoolVisitsForAdmin() {
-		List<SchoolVisited> visits = schoolVisitedRepository.findAll();
-		logger.debug("Retrieved {} school visits for admin", visits.size());
-		List<Map<String, Object>> visitList = new ArrayList<>();
-
-		for (SchoolVisited visit : visits) {
-			Map<String, Object> visitMap = new HashMap<>();
-			visitMap.put("id", visit.getId());
-			visitMap.put("schoolName", visit.getSchoolName());
-			visitMap.put("visitedDate", visit.getVisitedDate());
-			visitMap.put("marketingExecutiveName", visit.getMarketingExecutiveName());
-			visitMap.put("locationCity", visit.getLocationCity());
-			visitMap.put("contactPersonName", visit.getContactPersonName());
-			visitMap.put("contactNo", visit.getContactNo());
-			visitMap.put("designation", visit.getDesignation());
-			visitMap.put("emailId", visit.getEmailId());
-			visitMap.put("schoolStrenght", visit.getSchoolStrenght());
-			visitMap.put("decisionMakerName", visit.getDecisionMakerName());
-			visitMap.put("decisionTimeline", visit.getDecisionTimeline());
-			visitMap.put("expectedGoLiveDate", visit.getExpectedGoLiveDate());
-			visitMap.put("orderBookingDate", visit.getOrderBookingDate());
-			visitMap.put("initialPayment", visit.getInitialPayment());
-			visitMap.put("paymentTerms", visit.getPaymentTerms());
-			visitMap.put("costPerMember", visit.getCostPerMember());
-			visitMap.put("currentSystem", visit.getCurrentSystem());
-			visitMap.put("requiredplatform", visit.getRequiredplatform());
-			visitMap.put("noOfUsers", visit.getNoOfUsers());
-			visitMap.put("dataMigrationRequired", visit.getDataMigrationRequired());
-			visitMap.put("customFeaturesRequired", visit.getCustomFeaturesRequired());
-			visitMap.put("customFeatureDescription", visit.getCustomFeatureDescription());
-			visitMap.put("rfidIntegration", visit.getRfidIntegration());
-			visitMap.put("idCards", visit.getIdCards());
-			visitMap.put("paymentGatewayPreference", visit.getPaymentGatewayPreference());
-			visitMap.put("budgetRange", visit.getBudgetRange());
-			visitMap.put("costPerMember", visit.getCostPerMember());
-			visitMap.put("demoRequired", visit.getDemoRequired());
-			visitMap.put("demoDate", visit.getDemoDate());
-			visitMap.put("proposalSent", visit.getProposalSent());
-			visitMap.put("proposalDate", visit.getProposalDate());
-			visitMap.put("status", visit.getStatus());
-			visitMap.put( "billingFrequency",visit.getBillingfrequency()); // "Monthly", "Quarterly",
-
-			visitMap.put("rejectedreason", visit.getRejectionReason());
-			if (visit.getStatus() == SchoolVisited.VisitStatus.REJECTED) {
-				visitMap.put("rejectionReason", visit.getRejectionReason());
-			}
-			visitMap.put("createdAt", visit.getCreatedAt());
-
-			// Get selected modules for this visit
-			List<SchoolModuleRequired> modules = schoolModuleRequiredRepository.findBySchoolVisited(visit);
-			List<Map<String, Object>> moduleList = new ArrayList<>();
-
-			for (SchoolModuleRequired module : modules) {
-				Map<String, Object> moduleMap = new HashMap<>();
-				moduleMap.put("moduleId", module.getModuleId());
-				moduleMap.put("isSelected", module.getIsSelected().name());
-				moduleMap.put("remarks", module.getRemarks());
-				moduleList.add(moduleMap);
+	// The page's rows are read by primary key in a second query, selecting only the rendered columns
+	private Map<String, Object> toVisitPage(List<VisitKey> keys, int pageSize, boolean summary, boolean ownerView) {
+		boolean hasMore = keys.size() > pageSize;
+		List<VisitKey> page = hasMore ? keys.subList(0, pageSize) : keys;
+		List<Integer> ids = page.stream().map(VisitKey::id).toList();
+
+		List<?> visits;
+		if (ids.isEmpty()) {
+			visits = List.of();
+		} else if (summary) {
+			visits = schoolVisitedRepository.findSummariesByIdIn(ids);
+		} else {
+			List<VisitDetail> details = schoolVisitedRepository.findDetailsByIdIn(ids);
+			if (ownerView) {
+				details = details.stream().map(VisitDetail::forOwner).toList();
 			}
+			visits = visitModuleLoader.attachModules(details);
+		}
 
-			visitMap.put("selectedModules", moduleList);
-			visitList.add(visitMap);
+		String nextCursor = null;
+		if (hasMore) {
+			VisitKey last = page.get(page.size() - 1);
+			nextCursor = new VisitCursor(last.createdAt(), last.id()).encode();
 		}
 
-		return visitList;
+		Map<String, Object> result = new HashMap<>();
+		result.put("visits", visits);
+		result.put("nextCursor", nextCursor);
+		result.put("hasMore", hasMore);
+		result.put("limit", pageSize);
+		return result;
 	}
 
 	public Map<String, Object> adminUpdateSchoolVisit(Integer visitId, Map<String, Object> visitData) {
 		SchoolVisited visit = schoolVisitedRepository.findById(visitId)
 				.orElseThrow(() -> new IllegalArgumentException("School visit not found"));
+		checkVersion(visit, visitData.get("version"));
+		VisitStatsFacts before = VisitStatsFacts.of(visit);
 
-		// Update basic/editable fields (based on getAllSchoolVisitsForAdmin)
+		// Update basic/editable fields (based on the admin visit listing)
 		if (visitData.containsKey("schoolName")) {
 			visit.setSchoolName((String) visitData.get("schoolName"));
 		}
@@ -492,7 +477,7 @@ public class MarketingService {
 			visit.setMarketingExecutiveName((String) visitData.get("marketingExecutiveName"));
 		}
 		if (visitData.containsKey("locationCity")) {
-			visit.setLocationCity((String) visitData.get("locationCity"));
+			visit.setLocationCity(toLocationCity(visitData.get("locationCity")));
 		}
 
 		if (visitData.containsKey("contactPersonName")) {
@@ -580,174 +565,88 @@ public class MarketingService {
 			visit.setDecisionTimeline((String) visitData.get("decisionTimeline"));
 		}
 
-		// Status handling (admin can set any status)
-		if (visitData.containsKey("status") && visitData.get("status") != null) {
-			String statusStr = ((String) visitData.get("status")).toUpperCase();
-			SchoolVisited.VisitStatus newStatus = SchoolVisited.VisitStatus.valueOf(statusStr);
-
-			if (newStatus == SchoolVisited.VisitStatus.REJECTED) {
+		// Admins do not get to override the state machine: a status change goes through the same
+		// transitions and payload checks as changeVisitStatus (409 when the visit cannot move there).
+		SchoolVisited.VisitStatus newStatus = visitData.get("status") == null ? null
+				: parseStatus(visitData.get("status").toString());
+		if (newStatus == visit.getStatus()) {
+			// Already there; a REJECTED visit may still have its reason reworded
+			newStatus = null;
+			if (visit.getStatus() == SchoolVisited.VisitStatus.REJECTED
+					&& visitData.containsKey("rejectionReason")) {
 				String rejectionReason = (String) visitData.get("rejectionReason");
 				if (rejectionReason == null || rejectionReason.trim().isEmpty()) {
 					throw new IllegalArgumentException("Rejection reason is required when rejecting a visit");
 				}
 				visit.setRejectionReason(rejectionReason.trim());
-			} else {
-				// clear rejection reason if moving away from REJECTED
-				visit.setRejectionReason(null);
 			}
+		}
 
-			visit.setStatus(newStatus);
-			if (newStatus == SchoolVisited.VisitStatus.ACCEPTED) {
-				// If admin provides orderBookingDate use it; otherwise set now
-				if (visit.getOrderBookingDate() == null) {
-					visit.setOrderBookingDate(LocalDate.now());
-				}
-				if (visitData.containsKey("initialPayment") && visitData.get("initialPayment") != null) {
-					visit.setInitialPayment(new BigDecimal(visitData.get("initialPayment").toString()));
-				}
-				if (visitData.containsKey("paymentTerms")) {
-					visit.setPaymentTerms((String) visitData.get("paymentTerms"));
-				}
-				if (visitData.containsKey("costPerMember") && visitData.get("costPerMember") != null) {
-					visit.setCostPerMember(new BigDecimal(visitData.get("costPerMember").toString()));
-				}
-			}
+		if (visitData.containsKey("selectedModules")) {
+			List<Map<String, Object>> modules = (List<Map<String, Object>>) visitData.get("selectedModules");
+			reconcileModules(visit, modules);
 		}
 
 		// Persist visit
-		schoolVisitedRepository.save(visit);
+		schoolVisitedRepository.saveAndFlush(visit);
+		visitStatsService.apply(before, VisitStatsFacts.of(visit));
+		SchoolVisited.VisitStatus status = visit.getStatus();
+		Long version = visit.getVersion();
+		if (newStatus != null) {
+			// The flush above holds the row lock, so the conditional UPDATE bumps this exact version
+			transitionStatus(visitId, newStatus, visitData);
+			status = newStatus;
+			version = version + 1;
+		}
+		eventPublisher.publishEvent(new VisitChangedEvent(visitId));
 		logger.info("Admin updated school visit: {}", visitId);
 
 		Map<String, Object> response = new HashMap<>();
 		response.put("message", "School visit updated by admin successfully");
 		response.put("visitId", visitId);
-		response.put("status", visit.getStatus() != null ? visit.getStatus().name() : null);
-		if (visitData.containsKey("selectedModules")) {
-			List<Map<String, Object>> modules = (List<Map<String, Object>>) visitData.get("selectedModules");
-
-			// delete old modules
-			schoolModuleRequiredRepository.deleteBySchoolVisited(visit);
-
-			// add new ones
-			for (Map<String, Object> moduleData : modules) {
-				SchoolModuleRequired schoolModule = new SchoolModuleRequired();
-				schoolModule.setSchoolVisited(visit); // RELATIONSHIP
-				schoolModule.setModuleId((Integer) moduleData.get("moduleId"));
-				schoolModule
-						.setIsSelected(SchoolModuleRequired.IsSelected.valueOf((String) moduleData.get("isSelected")));
-				schoolModule.setRemarks((String) moduleData.get("remarks"));
-
-				schoolModuleRequiredRepository.save(schoolModule);
-			}
-		}
+		response.put("status", status != null ? status.name() : null);
+		response.put("version", version);
 
 		return response;
 	}
 
-	public List<Map<String, Object>> getAcceptedOrders() {
-		List<SchoolVisited> acceptedVisits = schoolVisitedRepository.findByStatus(SchoolVisited.VisitStatus.ACCEPTED);
+	@Transactional(readOnly = true)
+	public List<VisitDetail> getAcceptedOrders() {
+		List<VisitDetail> acceptedVisits = schoolVisitedRepository.findDetailsByStatus(SchoolVisited.VisitStatus.ACCEPTED);
 		logger.info("Retrieved {} accepted orders", acceptedVisits.size());
-		List<Map<String, Object>> orderList = new ArrayList<>();
-
-		for (SchoolVisited visit : acceptedVisits) {
-			Map<String, Object> orderMap = new HashMap<>();
-			orderMap.put("id", visit.getId());
-			orderMap.put("schoolName", visit.getSchoolName());
-			orderMap.put("visitedDate", visit.getVisitedDate());
-			orderMap.put("orderBookingDate", visit.getOrderBookingDate());
-			orderMap.put("expectedGoLiveDate", visit.getExpectedGoLiveDate());
-			orderMap.put("schoolStrenght", visit.getSchoolStrenght());
-			orderMap.put("budgetRange", visit.getBudgetRange());
-			orderMap.put("initialPayment", visit.getInitialPayment());
-			orderMap.put("decisionMakerName", visit.getDecisionMakerName());
-			orderMap.put("decisionTimeline", visit.getDecisionTimeline());
-//            orderMap.put("No Of Users", visit.getNoOfUsers());
-
-			orderMap.put("paymentTerms", visit.getPaymentTerms());
-			orderMap.put("costPerMember", visit.getCostPerMember());
-			orderMap.put("currentSystem", visit.getCurrentSystem());
-			orderMap.put("requiredplatform", visit.getRequiredplatform());
-			orderMap.put("noOfUsers", visit.getNoOfUsers());
-			orderMap.put("idCards", visit.getIdCards());
-			orderMap.put("rfidIntegration", visit.getRfidIntegration());
-			orderMap.put("paymentGatewayPreference", visit.getPaymentGatewayPreference());
-			orderMap.put("demoRequired", visit.getDemoRequired());
-			orderMap.put("demoDate", visit.getDemoDate());
-			orderMap.put("proposalDate", visit.getProposalDate());
-			orderMap.put("dataMigrationRequired", visit.getDataMigrationRequired());
-			orderMap.put("customFeaturesRequired", visit.getCustomFeaturesRequired());
-			orderMap.put("customFeatureDescription", visit.getCustomFeatureDescription());
-
-			orderMap.put("marketingExecutiveName", visit.getMarketingExecutiveName());
-			orderMap.put("locationCity", visit.getLocationCity());
-			orderMap.put("contactPersonName", visit.getContactPersonName());
-			orderMap.put("designation", visit.getDesignation());
-			orderMap.put("contactNo", visit.getContactNo());
-			orderMap.put("emailId", visit.getEmailId());
-			orderMap.put("proposalSent", visit.getProposalSent());
-			orderMap.put("status", visit.getStatus().name());
-			orderMap.put("createdAt", visit.getCreatedAt());
-			orderMap.put( "billingFrequency",visit.getBillingfrequency()); // "Monthly", "Quarterly",
-
-
-			// Get selected modules
-			List<SchoolModuleRequired> modules = schoolModuleRequiredRepository.findBySchoolVisited(visit);
-			List<Map<String, Object>> moduleList = new ArrayList<>();
-
-			for (SchoolModuleRequired module : modules) {
-				Map<String, Object> moduleMap = new HashMap<>();
-				moduleMap.put("moduleId", module.getModuleId());
-				moduleMap.put("isSelected", module.getIsSelected().name());
-				moduleMap.put("remarks", module.getRemarks());
-				moduleList.add(moduleMap);
-			}
-
-			orderMap.put("selectedModules", moduleList);
-			orderList.add(orderMap);
-		}
-
-		return orderList;
+		return visitModuleLoader.attachModules(acceptedVisits);
 	}
 
-	private void validateStatusTransition(SchoolVisited.VisitStatus current, SchoolVisited.VisitStatus next) {
-
-		if (current == SchoolVisited.VisitStatus.ACCEPTED) {
-			throw new IllegalStateException("Accepted visits cannot change status");
-		}
-
-		if (current == SchoolVisited.VisitStatus.REJECTED && next != SchoolVisited.VisitStatus.PENDING) {
-			throw new IllegalStateException("Rejected visit can only move back to PENDING");
-		}
+	// PENDING -> ACCEPTED / REJECTED, REJECTED -> PENDING; ACCEPTED is final
+	private static SchoolVisited.VisitStatus requiredCurrentStatus(SchoolVisited.VisitStatus next) {
+		return next == SchoolVisited.VisitStatus.PENDING ? SchoolVisited.VisitStatus.REJECTED
+				: SchoolVisited.VisitStatus.PENDING;
 	}
 
 	public Map<String, Object> changeVisitStatus(Integer visitId, String newStatusStr, Map<String, Object> statusData) {
-		SchoolVisited visit = schoolVisitedRepository.findById(visitId)
-				.orElseThrow(() -> new IllegalArgumentException("School visit not found"));
-
 		// Safe enum parsing
 		SchoolVisited.VisitStatus newStatus = parseStatus(newStatusStr);
+		VisitStatsFacts after = transitionStatus(visitId, newStatus, (statusData != null) ? statusData : Map.of());
 
-		validateStatusTransition(visit.getStatus(), newStatus);
+		eventPublisher.publishEvent(new VisitChangedEvent(visitId));
+		Map<String, Object> response = new HashMap<>();
+		response.put("message", "Status updated successfully");
+		response.put("visitId", visitId);
+		response.put("newStatus", newStatus.name());
+		response.put("orderBookingDate", after.orderBookingDate()); // can be null
 
-		Map<String, Object> data = (statusData != null) ? statusData : Map.of();
+		return response;
+	}
 
-		// Handle rejection
-		if (newStatus == SchoolVisited.VisitStatus.REJECTED) {
-			String reason = (String) data.get("rejectionReason");
-			if (reason == null || reason.trim().isEmpty()) {
-				throw new IllegalArgumentException("Rejection reason is required");
-			}
-			visit.setRejectionReason(reason.trim());
-		} else {
-			visit.setRejectionReason(null);
-		}
+	// No read-modify-write: the payload is validated first, then one conditional UPDATE both checks
+	// the current status and applies the change. The visit is only read again to explain a refusal.
+	private VisitStatsFacts transitionStatus(Integer visitId, SchoolVisited.VisitStatus newStatus,
+			Map<String, Object> data) {
+		SchoolVisited.VisitStatus from = requiredCurrentStatus(newStatus);
+		LocalDateTime now = LocalDateTime.now();
+		int updated;
 
-		// Handle acceptance
 		if (newStatus == SchoolVisited.VisitStatus.ACCEPTED) {
-			if (visit.getOrderBookingDate() == null) {
-				visit.setOrderBookingDate(LocalDate.now());
-			}
-
 			BigDecimal initialPayment = toBigDecimal(data.get("initialPayment"));
 			String paymentTerms = (String) data.get("paymentTerms");
 			BigDecimal costPerMember = toBigDecimal(data.get("costPerMember"));
@@ -762,20 +661,30 @@ public class MarketingService {
 				throw new IllegalArgumentException("Cost per member is required and must be positive");
 			}
 
-			visit.setInitialPayment(initialPayment);
-			visit.setPaymentTerms(paymentTerms.trim());
-			visit.setCostPerMember(costPerMember);
+			updated = schoolVisitedRepository.acceptVisit(visitId, from, newStatus, initialPayment,
+					paymentTerms.trim(), costPerMember, now.toLocalDate(), now);
+		} else if (newStatus == SchoolVisited.VisitStatus.REJECTED) {
+			String reason = (String) data.get("rejectionReason");
+			if (reason == null || reason.trim().isEmpty()) {
+				throw new IllegalArgumentException("Rejection reason is required");
+			}
+			updated = schoolVisitedRepository.transitionStatus(visitId, from, newStatus, reason.trim(), now);
+		} else {
+			updated = schoolVisitedRepository.transitionStatus(visitId, from, newStatus, null, now);
 		}
 
-		visit.setStatus(newStatus);
-		schoolVisitedRepository.save(visit);
-		Map<String, Object> response = new HashMap<>();
-		response.put("message", "Status updated successfully");
-		response.put("visitId", visitId);
-		response.put("newStatus", newStatus.name());
-		response.put("orderBookingDate", visit.getOrderBookingDate()); // can be null
+		if (updated == 0) {
+			SchoolVisited.VisitStatus current = schoolVisitedRepository.findStatusById(visitId)
+					.orElseThrow(() -> new IllegalArgumentException("School visit not found"));
+			throw new IllegalStateException("Cannot change status from " + current + " to " + newStatus
+					+ "; only a " + from + " visit can move to " + newStatus);
+		}
 
-		return response;
+		// The row is locked by the UPDATE until commit. Only the status and (for ACCEPTED) the payment
+		// fields changed, and a visit that was not ACCEPTED added no initial payment to the rollup.
+		VisitStatsFacts after = schoolVisitedRepository.findStatsFactsById(visitId).orElseThrow();
+		visitStatsService.apply(after.withStatus(from), after);
+		return after;
 	}
 
 	private SchoolVisited.VisitStatus parseStatus(String statusStr) {
@@ -817,7 +726,9 @@ public class MarketingService {
 		schoolModuleRequiredRepository.deleteAll(modules);
 
 		// Delete the school visit
+		visitStatsService.apply(VisitStatsFacts.of(visit), null);
 		schoolVisitedRepository.delete(visit);
+		eventPublisher.publishEvent(new VisitChangedEvent(visitId));
 		logger.info("Rejected school visit deleted: {}", visitId);
 	}
 
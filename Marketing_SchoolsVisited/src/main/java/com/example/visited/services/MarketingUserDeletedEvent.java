@@ -0,0 +1,5 @@
+package com.example.visited.services;
+
+// Published when a marketing user (and with it their visits) is deleted
+public record MarketingUserDeletedEvent(Integer userId) {
+}
@@ -0,0 +1,166 @@
+package com.example.visited.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.visited.entitys.Modules;
+import com.example.visited.repositories.ModulesRepository;
+
+// The module catalog as an immutable in-memory snapshot. Modules change a few times a year, so the
+// table is read once and again only after a module is created or updated; the new snapshot replaces
+// the old one in a single write, so readers see either the old catalog or the new one, never a mix.
+// A change made on this node reloads it right after the commit; one made on another node is seen
+// through the shared generation (CacheGenerations) within modules.catalog.sync-interval-ms. Each view
+// carries a strong ETag derived from its content.
+@Service
+public class ModuleCatalog {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModuleCatalog.class);
+
+	// all: every module, as listed under /admin/modules. active: active modules without the flag, as
+	// offered on the visit form. names: module id -> name for every module, including inactive ones
+	// still referenced by old visits.
+	public record Snapshot(List<Map<String, Object>> all, List<Map<String, Object>> active,
+			Map<Integer, String> names, String allETag, String activeETag) {
+
+		public String name(Integer moduleId) {
+			return names.get(moduleId);
+		}
+	}
+
+	private final ModulesRepository modulesRepository;
+	private final CacheGenerations cacheGenerations;
+	private final TransactionTemplate transactionTemplate;
+
+	private volatile Snapshot snapshot;
+	// Shared generation seen at the last poll; -1 so the first poll always reloads
+	private volatile long sharedGeneration = -1;
+
+	public ModuleCatalog(ModulesRepository modulesRepository, CacheGenerations cacheGenerations,
+			PlatformTransactionManager transactionManager) {
+		this.modulesRepository = modulesRepository;
+		this.cacheGenerations = cacheGenerations;
+		// Change events arrive after the publishing transaction has committed; reads need a fresh one
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	// Loaded on first use; after that never touches the database
+	public Snapshot snapshot() {
+		Snapshot current = snapshot;
+		return current != null ? current : loadOnce();
+	}
+
+	private synchronized Snapshot loadOnce() {
+		return snapshot != null ? snapshot : reload();
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onModuleChanged(ModuleChangedEvent event) {
+		reload();
+		cacheGenerations.bump(CacheGenerations.MODULE_CATALOG);
+	}
+
+	// Polls the generation other nodes bump after a module change: one primary-key read, and the
+	// modules table only when it has moved
+	@Scheduled(fixedDelayString = "${modules.catalog.sync-interval-ms:10000}",
+			initialDelayString = "${modules.catalog.sync-interval-ms:10000}")
+	public void syncGeneration() {
+		try {
+			long current = cacheGenerations.current(CacheGenerations.MODULE_CATALOG);
+			if (current != sharedGeneration) {
+				reload();
+				sharedGeneration = current;
+			}
+		} catch (RuntimeException e) {
+			// The current snapshot keeps being served; the next poll tries again
+			logger.warn("Could not check the module catalog generation", e);
+		}
+	}
+
+	// Serialised so two rebuilds cannot finish out of order and leave the older catalog in place
+	synchronized Snapshot reload() {
+		List<Modules> modules = transactionTemplate.execute(status -> modulesRepository.findAll());
+		Snapshot rebuilt = build(modules);
+		snapshot = rebuilt;
+		logger.info("Module catalog loaded: {} modules, {} active", rebuilt.all().size(), rebuilt.active().size());
+		return rebuilt;
+	}
+
+	// If-None-Match holds one or more tags, or *; W/ prefixes are ignored as the header is compared
+	// weakly (RFC 9110 13.1.2)
+	public static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			String candidate = tag.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Snapshot build(List<Modules> modules) {
+		List<Modules> sorted = new ArrayList<>(modules);
+		sorted.sort(Comparator.comparing(Modules::getId));
+
+		List<Map<String, Object>> all = new ArrayList<>(sorted.size());
+		List<Map<String, Object>> active = new ArrayList<>();
+		Map<Integer, String> names = new HashMap<>();
+		MessageDigest digest = sha256();
+		for (Modules module : sorted) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("id", module.getId());
+			entry.put("moduleName", module.getModuleName());
+			entry.put("description", module.getDescription());
+			if (Boolean.TRUE.equals(module.getIsActive())) {
+				active.add(Collections.unmodifiableMap(new LinkedHashMap<>(entry)));
+			}
+			entry.put("isActive", module.getIsActive());
+			all.add(Collections.unmodifiableMap(entry));
+			names.put(module.getId(), module.getModuleName());
+
+			// Unit separators keep ("ab", "c") and ("a", "bc") apart
+			digest.update((module.getId() + "\u001f" + module.getModuleName() + "\u001f"
+					+ Objects.toString(module.getDescription(), "\u0000") + "\u001f" + module.getIsActive() + "\u001e")
+					.getBytes(StandardCharsets.UTF_8));
+		}
+		String version = HexFormat.of().formatHex(digest.digest(), 0, 16);
+		return new Snapshot(List.copyOf(all), List.copyOf(active), Map.copyOf(names),
+				"\"" + version + "-all\"", "\"" + version + "-active\"");
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+}
@@ -0,0 +1,5 @@
+package com.example.visited.services;
+
+// Published when a module is created or updated; the catalog snapshot is rebuilt after the commit
+public record ModuleChangedEvent(Integer moduleId) {
+}
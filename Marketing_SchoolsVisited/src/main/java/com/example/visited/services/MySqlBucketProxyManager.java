@@ -0,0 +1,126 @@
+package com.example.visited.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import io.github.bucket4j.BucketExceptions;
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.select_for_update.AbstractSelectForUpdateBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.select_for_update.LockAndGetResult;
+import io.github.bucket4j.distributed.proxy.generic.select_for_update.SelectForUpdateBasedTransaction;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+
+// Bucket4j proxy manager storing bucket state in rate_limit_buckets on the application's
+// datasource. Each remote call is one short transaction: SELECT ... FOR UPDATE on the bucket
+// row (INSERT IGNORE first time), then UPDATE of the serialized state.
+public class MySqlBucketProxyManager extends AbstractSelectForUpdateBasedProxyManager<String> {
+
+	private final DataSource dataSource;
+	private final String selectForUpdateSql;
+	private final String insertSql;
+	private final String updateSql;
+	private final String deleteSql;
+
+	public MySqlBucketProxyManager(DataSource dataSource, String tableName) {
+		super(ClientSideConfig.getDefault());
+		this.dataSource = dataSource;
+		this.selectForUpdateSql = "SELECT state FROM " + tableName + " WHERE id = ? FOR UPDATE";
+		this.insertSql = "INSERT IGNORE INTO " + tableName + " (id, state) VALUES (?, NULL)";
+		this.updateSql = "UPDATE " + tableName + " SET state = ? WHERE id = ?";
+		this.deleteSql = "DELETE FROM " + tableName + " WHERE id = ?";
+	}
+
+	@Override
+	protected SelectForUpdateBasedTransaction allocateTransaction(String key) {
+		Connection connection;
+		try {
+			connection = dataSource.getConnection();
+		} catch (SQLException e) {
+			throw BucketExceptions.executionException(e);
+		}
+
+		return new SelectForUpdateBasedTransaction() {
+			@Override
+			public void begin() {
+				run(() -> connection.setAutoCommit(false));
+			}
+
+			@Override
+			public LockAndGetResult tryLockAndGet() {
+				try (PreparedStatement statement = connection.prepareStatement(selectForUpdateSql)) {
+					statement.setString(1, key);
+					try (ResultSet rs = statement.executeQuery()) {
+						return rs.next() ? LockAndGetResult.locked(rs.getBytes(1)) : LockAndGetResult.notLocked();
+					}
+				} catch (SQLException e) {
+					throw BucketExceptions.executionException(e);
+				}
+			}
+
+			// false = another node inserted the row first; the caller retries the lock
+			@Override
+			public boolean tryInsertEmptyData() {
+				try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+					statement.setString(1, key);
+					return statement.executeUpdate() > 0;
+				} catch (SQLException e) {
+					throw BucketExceptions.executionException(e);
+				}
+			}
+
+			@Override
+			public void update(byte[] data, RemoteBucketState newState) {
+				try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+					statement.setBytes(1, data);
+					statement.setString(2, key);
+					statement.executeUpdate();
+				} catch (SQLException e) {
+					throw BucketExceptions.executionException(e);
+				}
+			}
+
+			@Override
+			public void commit() {
+				run(connection::commit);
+			}
+
+			@Override
+			public void rollback() {
+				run(connection::rollback);
+			}
+
+			@Override
+			public void release() {
+				run(connection::close);
+			}
+
+			private void run(SqlAction action) {
+				try {
+					action.run();
+				} catch (SQLException e) {
+					throw BucketExceptions.executionException(e);
+				}
+			}
+		};
+	}
+
+	@Override
+	public void removeProxy(String key) {
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+			statement.setString(1, key);
+			statement.executeUpdate();
+		} catch (SQLException e) {
+			throw BucketExceptions.executionException(e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface SqlAction {
+		void run() throws SQLException;
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.visited.services;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+// Owns the BCrypt cost for the whole application. Unless auth.bcrypt.cost is pinned, the cost is
+// calibrated once at startup: the highest cost whose hash stays under auth.bcrypt.target-millis
+// on this hardware. Stored hashes at a lower cost are re-hashed on the next successful login; never
+// the other way, so nodes that calibrate to different costs behind the load balancer do not keep
+// re-hashing each other's work. Pin the cost when nodes differ a lot in speed, or a slow node pays
+// for the fastest one's hashes.
+@Service
+public class PasswordHasher {
+
+	private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+
+	// $2a$12$<22 char salt><31 char hash>
+	private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d{2})\\$");
+
+	private final int cost;
+	private final BCryptPasswordEncoder encoder;
+
+	public PasswordHasher(@Value("${auth.bcrypt.cost:0}") int fixedCost,
+			@Value("${auth.bcrypt.target-millis:250}") long targetMillis,
+			@Value("${auth.bcrypt.min-cost:10}") int minCost,
+			@Value("${auth.bcrypt.max-cost:14}") int maxCost) {
+		if (minCost < 4 || maxCost > 31 || minCost > maxCost) {
+			throw new IllegalArgumentException("auth.bcrypt.min-cost/max-cost must satisfy 4 <= min <= max <= 31");
+		}
+		this.cost = fixedCost > 0 ? fixedCost : calibrate(targetMillis, minCost, maxCost);
+		this.encoder = new BCryptPasswordEncoder(cost);
+		logger.info("BCrypt cost set to {} ({})", cost, fixedCost > 0 ? "configured" : "calibrated for " + targetMillis + "ms");
+	}
+
+	public String encode(CharSequence rawPassword) {
+		return encoder.encode(rawPassword);
+	}
+
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return encoder.matches(rawPassword, encodedPassword);
+	}
+
+	// True when the stored hash was produced with a lower cost than the current one
+	public boolean needsRehash(String encodedPassword) {
+		if (encodedPassword == null) {
+			return false;
+		}
+		Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+		return matcher.find() && Integer.parseInt(matcher.group(1)) < cost;
+	}
+
+	public int getCost() {
+		return cost;
+	}
+
+	// Each cost step doubles the work, so time one hash at minCost (after a JIT warm-up) and
+	// extrapolate instead of hashing at every candidate cost
+	static int calibrate(long targetMillis, int minCost, int maxCost) {
+		BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minCost);
+		String sample = "calibration-password";
+		probe.encode(sample);
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			probe.encode(sample);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		double millis = best / 1_000_000.0;
+		int chosen = minCost;
+		while (chosen < maxCost && millis * 2 <= targetMillis) {
+			millis *= 2;
+			chosen++;
+		}
+		logger.info("BCrypt calibration: cost {} takes ~{}ms", chosen, Math.round(millis));
+		return chosen;
+	}
+}
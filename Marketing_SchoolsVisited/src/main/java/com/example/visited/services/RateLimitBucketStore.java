@@ -0,0 +1,104 @@
+package com.example.visited.services;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.proxy.optimization.DelayParameters;
+import io.github.bucket4j.distributed.proxy.optimization.Optimization;
+import io.github.bucket4j.distributed.proxy.optimization.Optimizations;
+
+// Hands out rate-limit buckets by key. rate-limit.backend=local keeps them in this JVM (limit is
+// per node); jdbc keeps the state in MySQL so all nodes share one budget. With jdbc each node
+// consumes up to rate-limit.jdbc.max-unsynchronized-tokens locally before syncing, so most
+// requests do not touch the database; the cluster may overshoot a limit by that many per node.
+@Service
+public class RateLimitBucketStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(RateLimitBucketStore.class);
+
+	private final Cache<String, Bucket> buckets = Caffeine.newBuilder()
+			.maximumSize(10000)
+			.expireAfterAccess(1, TimeUnit.HOURS)
+			.build();
+
+	private final MySqlBucketProxyManager proxyManager;
+	private final Optimization optimization;
+	private final JdbcTemplate jdbcTemplate;
+	private final String tableName;
+	private final long retentionHours;
+
+	public RateLimitBucketStore(DataSource dataSource,
+			@Value("${rate-limit.backend:local}") String backend,
+			@Value("${rate-limit.jdbc.table:rate_limit_buckets}") String tableName,
+			@Value("${rate-limit.jdbc.max-unsynchronized-tokens:2}") long maxUnsynchronizedTokens,
+			@Value("${rate-limit.jdbc.max-unsynchronized-ms:500}") long maxUnsynchronizedMillis,
+			@Value("${rate-limit.jdbc.retention-hours:24}") long retentionHours) {
+		if (!"local".equals(backend) && !"jdbc".equals(backend)) {
+			throw new IllegalArgumentException("rate-limit.backend must be 'local' or 'jdbc': " + backend);
+		}
+		this.tableName = tableName;
+		this.retentionHours = retentionHours;
+		if ("jdbc".equals(backend)) {
+			this.proxyManager = new MySqlBucketProxyManager(dataSource, tableName);
+			// 0 disables prefetch: every consumption is a database round trip
+			this.optimization = maxUnsynchronizedTokens > 0
+					? Optimizations.delaying(new DelayParameters(maxUnsynchronizedTokens, Duration.ofMillis(maxUnsynchronizedMillis)))
+					: null;
+			this.jdbcTemplate = new JdbcTemplate(dataSource);
+		} else {
+			this.proxyManager = null;
+			this.optimization = null;
+			this.jdbcTemplate = null;
+		}
+		logger.info("Rate limit buckets: {} backend", backend);
+	}
+
+	// The key must include whatever identifies the limit (policy name etc.): one key, one budget
+	public Bucket resolve(String key, Bandwidth bandwidth) {
+		// The proxy is cached too, it carries the local (unsynchronized) token state
+		return buckets.get(key, k -> proxyManager == null
+				? Bucket.builder().addLimit(bandwidth).build()
+				: buildProxy(k, bandwidth));
+	}
+
+	private Bucket buildProxy(String key, Bandwidth bandwidth) {
+		Supplier<BucketConfiguration> configuration = () -> BucketConfiguration.builder().addLimit(bandwidth).build();
+		if (optimization == null) {
+			return proxyManager.builder().build(key, configuration);
+		}
+		// The delaying optimization cannot create a missing bucket (BucketNotFoundException),
+		// so make sure the row has state first. Rows are only purged after retention-hours idle,
+		// far longer than a proxy stays in the local cache.
+		proxyManager.builder().build(key, configuration).getAvailableTokens();
+		return proxyManager.builder().withOptimization(optimization).build(key, configuration);
+	}
+
+	// Rows of keys nobody used for a while (e.g. one-off IPs); a bucket idle that long is full anyway
+	@Scheduled(fixedDelayString = "${rate-limit.jdbc.cleanup-interval-ms:3600000}")
+	public void purgeIdleBuckets() {
+		if (jdbcTemplate == null) {
+			return;
+		}
+		int deleted = jdbcTemplate.update("DELETE FROM " + tableName
+				+ " WHERE updated_at < NOW() - INTERVAL " + retentionHours + " HOUR LIMIT 10000");
+		if (deleted > 0) {
+			logger.info("Purged {} idle rate limit buckets", deleted);
+		}
+	}
+}
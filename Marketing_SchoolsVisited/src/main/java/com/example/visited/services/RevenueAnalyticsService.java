@@ -0,0 +1,242 @@
+package com.example.visited.services;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.visited.DTO.RevenueGroup;
+import com.example.visited.DTO.RevenueReport;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Booked revenue (ACCEPTED visits by order_booking_date) grouped by month, executive, billing
+// frequency or module. Each report is one GROUP BY over the (status, order_booking_date) range from
+// V12, and is cached until a visit changes. A change committed on this node drops the cache at once;
+// one committed on another node reaches this one through the shared generation (CacheGenerations),
+// within analytics.revenue.sync-interval-ms.
+@Service
+public class RevenueAnalyticsService {
+
+	private static final Logger logger = LoggerFactory.getLogger(RevenueAnalyticsService.class);
+
+	private static final int MAX_MONTHS = 120;
+	private static final String TOTAL = "total";
+	private static final String TOTAL_LABEL = "Total";
+
+	private static final String MEASURES = "COUNT(*) AS orders, COALESCE(SUM(v.initial_payment), 0) AS initial_payment,"
+			+ " COALESCE(SUM(v.budget_range), 0) AS budget,"
+			+ " COALESCE(SUM(v.cost_per_member * v.no_of_users), 0) AS contract_value";
+	private static final String BOOKED = " WHERE v.status = 'ACCEPTED' AND v.order_booking_date >= ?"
+			+ " AND v.order_booking_date < ?";
+	private static final String LARGEST_FIRST = " ORDER BY contract_value DESC, initial_payment DESC, k";
+
+	enum Dimension {
+		MONTH("month", "SELECT YEAR(v.order_booking_date) AS y, MONTH(v.order_booking_date) AS m, " + MEASURES
+				+ " FROM school_visited v" + BOOKED
+				+ " GROUP BY YEAR(v.order_booking_date), MONTH(v.order_booking_date) ORDER BY y, m"),
+		EXECUTIVE("executive", "SELECT v.user_id AS k, MAX(v.marketing_executive_name) AS label, " + MEASURES
+				+ " FROM school_visited v" + BOOKED + " GROUP BY v.user_id" + LARGEST_FIRST),
+		BILLING_FREQUENCY("billingFrequency", "SELECT COALESCE(v.billingfrequency, '') AS k, " + MEASURES
+				+ " FROM school_visited v" + BOOKED + " GROUP BY COALESCE(v.billingfrequency, '')" + LARGEST_FIRST),
+		// The booked range is read once into the CTE, which both halves share. Selected module rows come
+		// from the covering (is_selected, module_id, school_visited_id) index from V16. The is_total row
+		// counts each order once, however many modules it has, and sorts last.
+		MODULE("module", "WITH booked AS (SELECT v.id, v.initial_payment, v.budget_range, v.cost_per_member,"
+				+ " v.no_of_users FROM school_visited v" + BOOKED + ")"
+				+ " SELECT 0 AS is_total, m.module_id AS k, MAX(md.module_name) AS label, " + MEASURES
+				+ " FROM booked v JOIN school_modules_required m ON m.school_visited_id = v.id"
+				+ " AND m.is_selected = 'Yes' JOIN modules md ON md.id = m.module_id GROUP BY m.module_id"
+				+ " UNION ALL SELECT 1, NULL, NULL, " + MEASURES + " FROM booked v"
+				+ " ORDER BY is_total, contract_value DESC, initial_payment DESC, k");
+
+		final String name;
+		final String sql;
+
+		Dimension(String name, String sql) {
+			this.name = name;
+			this.sql = sql;
+		}
+
+		static Dimension of(String by) {
+			if (by == null || by.isBlank()) {
+				return MONTH;
+			}
+			for (Dimension dimension : values()) {
+				if (dimension.name.equalsIgnoreCase(by.trim())) {
+					return dimension;
+				}
+			}
+			throw new IllegalArgumentException("by must be month, executive, billingFrequency or module");
+		}
+	}
+
+	// generation changes on every invalidation, so a report computed from pre-commit data is cached
+	// under a key nobody asks for again
+	private record ReportKey(long generation, Dimension by, YearMonth from, YearMonth to) {
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+	private final Cache<ReportKey, RevenueReport> cache;
+	private final AtomicLong generation = new AtomicLong();
+	private final MeterRegistry meterRegistry;
+	private final CacheGenerations cacheGenerations;
+
+	// Shared generation seen at the last poll; -1 so the first poll always starts afresh
+	private volatile long sharedGeneration = -1;
+
+	public RevenueAnalyticsService(DataSource dataSource, MeterRegistry meterRegistry,
+			CacheGenerations cacheGenerations,
+			@Value("${analytics.revenue.cache.ttl-seconds:600}") long ttlSeconds,
+			@Value("${analytics.revenue.cache.max-size:500}") long maxSize) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.meterRegistry = meterRegistry;
+		this.cacheGenerations = cacheGenerations;
+		// Application writes invalidate explicitly, here and (through the shared generation) on the
+		// other nodes; the TTL only bounds changes made outside the application, or a lost bump
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "revenueReports");
+	}
+
+	// from/to are booking months, inclusive; by default the last 12 months up to the current one
+	@Transactional(readOnly = true)
+	public RevenueReport getReport(String by, YearMonth from, YearMonth to) {
+		Dimension dimension = Dimension.of(by);
+		YearMonth end = to != null ? to : YearMonth.now();
+		YearMonth start = from != null ? from : end.minusMonths(11);
+		if (start.isAfter(end)) {
+			throw new IllegalArgumentException("from must not be after to");
+		}
+		if (start.plusMonths(MAX_MONTHS).isBefore(end.plusMonths(1))) {
+			throw new IllegalArgumentException("range must be at most " + MAX_MONTHS + " months");
+		}
+		return cache.get(new ReportKey(generation.get(), dimension, start, end),
+				key -> compute(key.by(), key.from(), key.to()));
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onVisitChanged(VisitChangedEvent event) {
+		invalidate();
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onMarketingUserDeleted(MarketingUserDeletedEvent event) {
+		invalidate();
+	}
+
+	// Module groups are labelled with the module name
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onModuleChanged(ModuleChangedEvent event) {
+		invalidate();
+	}
+
+	// Polls the generation other nodes bump after their changes
+	@Scheduled(fixedDelayString = "${analytics.revenue.sync-interval-ms:10000}",
+			initialDelayString = "${analytics.revenue.sync-interval-ms:10000}")
+	public void syncGeneration() {
+		try {
+			long current = cacheGenerations.current(CacheGenerations.REVENUE_REPORTS);
+			if (current != sharedGeneration) {
+				sharedGeneration = current;
+				dropReports();
+			}
+		} catch (RuntimeException e) {
+			logger.warn("Could not read the revenue report generation", e);
+		}
+	}
+
+	private void invalidate() {
+		dropReports();
+		cacheGenerations.bump(CacheGenerations.REVENUE_REPORTS);
+	}
+
+	private void dropReports() {
+		generation.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	private RevenueReport compute(Dimension dimension, YearMonth from, YearMonth to) {
+		Date start = Date.valueOf(from.atDay(1));
+		Date end = Date.valueOf(to.plusMonths(1).atDay(1));
+		Timer.Sample sample = Timer.start(meterRegistry);
+		List<RevenueGroup> rows = jdbcTemplate.query(dimension.sql,
+				(rs, rowNum) -> toGroup(dimension, rs), start, end);
+		// Every order is in exactly one month, executive or frequency group, so their sum is the total.
+		// An order with several modules is in several module groups; that query returns its own total.
+		List<RevenueGroup> groups = rows;
+		RevenueGroup totals;
+		if (dimension == Dimension.MODULE) {
+			groups = List.copyOf(rows.subList(0, rows.size() - 1));
+			totals = rows.get(rows.size() - 1);
+		} else {
+			totals = sum(rows);
+		}
+		long nanos = sample.stop(Timer.builder("visits.revenue.query")
+				.tag("by", dimension.name)
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry));
+		logger.debug("Revenue by {} for {}..{}: {} groups in {} ms", dimension.name, from, to, groups.size(),
+				nanos / 1_000_000);
+		return new RevenueReport(dimension.name, from, to, groups, totals);
+	}
+
+	private static RevenueGroup sum(List<RevenueGroup> groups) {
+		long orders = 0;
+		BigDecimal initialPayment = BigDecimal.ZERO;
+		BigDecimal budget = BigDecimal.ZERO;
+		BigDecimal contractValue = BigDecimal.ZERO;
+		for (RevenueGroup group : groups) {
+			orders += group.orders();
+			initialPayment = initialPayment.add(group.initialPayment());
+			budget = budget.add(group.budget());
+			contractValue = contractValue.add(group.contractValue());
+		}
+		return new RevenueGroup(TOTAL, TOTAL_LABEL, orders, initialPayment, budget, contractValue);
+	}
+
+	private static RevenueGroup toGroup(Dimension dimension, ResultSet rs) throws SQLException {
+		return switch (dimension) {
+			case MONTH -> {
+				String month = YearMonth.of(rs.getInt("y"), rs.getInt("m")).toString();
+				yield measures(rs, month, month);
+			}
+			case BILLING_FREQUENCY -> measures(rs, rs.getString("k"), rs.getString("k"));
+			case MODULE -> rs.getInt("is_total") == 1 ? measures(rs, TOTAL, TOTAL_LABEL)
+					: measures(rs, rs.getString("k"), rs.getString("label"));
+			default -> measures(rs, rs.getString("k"), rs.getString("label"));
+		};
+	}
+
+	private static RevenueGroup measures(ResultSet rs, String key, String label) throws SQLException {
+		return new RevenueGroup(key, label, rs.getLong("orders"), orZero(rs.getBigDecimal("initial_payment")),
+				orZero(rs.getBigDecimal("budget")), orZero(rs.getBigDecimal("contract_value")));
+	}
+
+	private static BigDecimal orZero(BigDecimal value) {
+		return value == null ? BigDecimal.ZERO : value;
+	}
+}
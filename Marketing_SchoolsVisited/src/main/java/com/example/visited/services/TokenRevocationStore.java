@@ -0,0 +1,80 @@
+package com.example.visited.services;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.visited.repositories.JWTTokenRepository;
+
+// In-memory set of revoked token ids (jti). Signed tokens are trusted until they expire unless
+// their jti is in here, so validation costs no DB query. The set is persisted through
+// jwt_tokens.revoked_at, loaded at startup and polled so revocations made on other nodes arrive.
+@Service
+public class TokenRevocationStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(TokenRevocationStore.class);
+
+	private final JWTTokenRepository jwtTokenRepository;
+
+	// jti -> token expiry; an entry is useless once the token itself has expired
+	private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+
+	private volatile LocalDateTime lastSync = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+	public TokenRevocationStore(JWTTokenRepository jwtTokenRepository) {
+		this.jwtTokenRepository = jwtTokenRepository;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadOnStartup() {
+		sync();
+		logger.info("Loaded {} revoked tokens", revoked.size());
+	}
+
+	@Scheduled(fixedDelayString = "${jwt.revocation.sync-interval-ms:10000}",
+			initialDelayString = "${jwt.revocation.sync-interval-ms:10000}")
+	public void sync() {
+		LocalDateTime now = LocalDateTime.now();
+		// Overlap the window a little so a row committed just before the last poll is not missed
+		LocalDateTime since = lastSync.minusSeconds(5);
+		List<Object[]> rows = jwtTokenRepository.findRevokedSince(since, now);
+		for (Object[] row : rows) {
+			revoked.put((String) row[0], toInstant((LocalDateTime) row[1]));
+		}
+		lastSync = now;
+		purgeExpired();
+	}
+
+	public boolean isRevoked(String jti) {
+		return jti != null && revoked.containsKey(jti);
+	}
+
+	public void revoke(String jti, LocalDateTime expiresAt) {
+		if (jti != null) {
+			revoked.put(jti, toInstant(expiresAt));
+		}
+	}
+
+	public int size() {
+		return revoked.size();
+	}
+
+	private void purgeExpired() {
+		Instant now = Instant.now();
+		revoked.values().removeIf(expiry -> expiry.isBefore(now));
+	}
+
+	private static Instant toInstant(LocalDateTime dateTime) {
+		return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.visited.services;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.visited.DTO.CachedUser;
+import com.example.visited.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+@Service
+public class UserPrincipalCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(UserPrincipalCache.class);
+
+	private final UserRepository userRepository;
+	private final Cache<Integer, CachedUser> cache;
+
+	public UserPrincipalCache(UserRepository userRepository, MeterRegistry meterRegistry,
+			@Value("${auth.user-cache.ttl-seconds:30}") long ttlSeconds,
+			@Value("${auth.user-cache.max-size:10000}") long maxSize) {
+		this.userRepository = userRepository;
+		// expireAfterWrite is the hard bound on how long a stale role/status can be served
+		// if an eviction is ever missed (e.g. a change made directly in the database)
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "authUserPrincipals");
+	}
+
+	public Optional<CachedUser> get(Integer userId) {
+		CachedUser cached = cache.getIfPresent(userId);
+		if (cached != null) {
+			return Optional.of(cached);
+		}
+		// Unknown users are not cached, so a freshly registered user is picked up immediately
+		return userRepository.findById(userId).map(user -> {
+			CachedUser loaded = CachedUser.of(user);
+			cache.put(userId, loaded);
+			return loaded;
+		});
+	}
+
+	// Evicts after the surrounding transaction commits, otherwise a concurrent request could
+	// reload the pre-commit row and keep it for the whole TTL
+	public void evict(Integer userId) {
+		if (userId == null) {
+			return;
+		}
+		cache.invalidate(userId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					cache.invalidate(userId);
+				}
+			});
+		}
+		logger.debug("Evicted cached principal for user {}", userId);
+	}
+}
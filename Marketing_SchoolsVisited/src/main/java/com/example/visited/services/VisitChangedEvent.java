@@ -0,0 +1,6 @@
+package com.example.visited.services;
+
+// Published when a visit is created, edited, changes status or is deleted; listeners that keep
+// derived data (the full-text index) re-read the row after the transaction commits
+public record VisitChangedEvent(Integer visitId) {
+}
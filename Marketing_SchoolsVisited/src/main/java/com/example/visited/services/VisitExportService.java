@@ -0,0 +1,140 @@
+package com.example.visited.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.SelectionQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.visited.DTO.VisitDetail;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.repositories.SchoolsVisitedRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.persistence.EntityManager;
+
+// Writes every visit as one JSON array straight to the response. Rows come from a forward-only
+// scroll with a JDBC fetch size (MySQL server-side cursor, see useCursorFetch) and are written
+// fetch-size rows at a time, each chunk with its modules from one IN query, so heap use does not
+// depend on the number of visits. Runs in its own read-only transaction with a longer timeout
+// than spring.transaction.default-timeout.
+@Service
+public class VisitExportService {
+
+	private static final Logger logger = LoggerFactory.getLogger(VisitExportService.class);
+
+	private final EntityManager entityManager;
+	private final VisitModuleLoader visitModuleLoader;
+	private final ObjectWriter visitWriter;
+	private final ObjectMapper objectMapper;
+	private final TransactionTemplate transactionTemplate;
+	private final int fetchSize;
+	// Each running export holds a pooled connection for its whole duration
+	private final Semaphore permits;
+	private final Counter rowsCounter;
+	private final Timer exportTimer;
+
+	public VisitExportService(EntityManager entityManager, VisitModuleLoader visitModuleLoader,
+			ObjectMapper objectMapper, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+			@Value("${visits.export.fetch-size:500}") int fetchSize,
+			@Value("${visits.export.timeout-seconds:300}") int timeoutSeconds,
+			@Value("${visits.export.max-concurrent:2}") int maxConcurrent) {
+		this.entityManager = entityManager;
+		this.visitModuleLoader = visitModuleLoader;
+		this.objectMapper = objectMapper;
+		// Flushing is done per chunk, not after every visit
+		this.visitWriter = objectMapper.writerFor(VisitDetail.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.transactionTemplate.setTimeout(timeoutSeconds);
+		this.fetchSize = fetchSize;
+		this.permits = new Semaphore(maxConcurrent);
+		this.rowsCounter = Counter.builder("visits.export.rows")
+				.description("Visits written by the streaming export")
+				.register(meterRegistry);
+		this.exportTimer = Timer.builder("visits.export.duration")
+				.description("Time spent per streaming visit export")
+				.register(meterRegistry);
+	}
+
+	// Empty when visits.export.max-concurrent exports are already running
+	public Optional<StreamingResponseBody> export(SchoolVisited.VisitStatus status) {
+		if (!permits.tryAcquire()) {
+			return Optional.empty();
+		}
+		return Optional.of(out -> {
+			try {
+				exportTimer.record(() -> transactionTemplate.executeWithoutResult(tx -> write(status, out)));
+			} catch (UncheckedIOException e) {
+				// Usually the client went away; the scroll and transaction are already closed
+				throw e.getCause();
+			} finally {
+				permits.release();
+			}
+		});
+	}
+
+	private void write(SchoolVisited.VisitStatus status, OutputStream out) {
+		String hql = SchoolsVisitedRepository.DETAIL + (status != null ? " WHERE v.status = :status" : "")
+				+ " ORDER BY v.id";
+		SelectionQuery<VisitDetail> query = entityManager.unwrap(Session.class)
+				.createSelectionQuery(hql, VisitDetail.class)
+				.setFetchSize(fetchSize)
+				.setReadOnly(true);
+		if (status != null) {
+			query.setParameter("status", status);
+		}
+
+		long rows = 0;
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+				ScrollableResults<VisitDetail> results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+			generator.writeStartArray();
+			List<VisitDetail> chunk = new ArrayList<>(fetchSize);
+			while (results.next()) {
+				chunk.add(results.get());
+				if (chunk.size() == fetchSize) {
+					rows += writeChunk(generator, chunk);
+				}
+			}
+			rows += writeChunk(generator, chunk);
+			generator.writeEndArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			rowsCounter.increment(rows);
+		}
+		logger.info("Exported {} school visits (status: {})", rows, status);
+	}
+
+	private int writeChunk(JsonGenerator generator, List<VisitDetail> chunk) throws IOException {
+		int size = chunk.size();
+		for (VisitDetail visit : visitModuleLoader.attachModules(chunk)) {
+			visitWriter.writeValue(generator, visit);
+		}
+		generator.flush();
+		chunk.clear();
+		return size;
+	}
+}
@@ -0,0 +1,462 @@
+package com.example.visited.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.en.EnglishPossessiveFilter;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.visited.DTO.VisitIndexRow;
+import com.example.visited.DTO.VisitSearchHit;
+import com.example.visited.repositories.SchoolsVisitedRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Embedded Lucene index over the searchable text of every visit (school, contacts, email, city,
+// executive). The database stays the source of truth: the index is rebuilt from it at startup and
+// kept current by re-reading a visit after each committed change on this node. Changes made
+// through other nodes arrive with the periodic catch-up (edits) and sweep (deletes), so this
+// node's search can lag them by up to one interval of each. Hits are rendered from stored fields,
+// so a search never touches the database.
+@Service
+public class VisitFullTextIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(VisitFullTextIndex.class);
+
+	private static final String ID = "id";
+	private static final String USER_ID = "userId";
+	private static final String STATUS = "status";
+	private static final String EMAIL = "emailId";
+	// Every name-like field (not the email) indexed once more together, for prefix and fuzzy matching
+	private static final String NAMES = "names";
+
+	// Searched fields and their weight for an exact word match; a match on the school name
+	// outranks one on the city
+	private static final Map<String, Float> FIELD_BOOSTS = Map.of(
+			"schoolName", 4f,
+			"contactPersonName", 3f,
+			"decisionMakerName", 3f,
+			EMAIL, 2f,
+			"marketingExecutiveName", 1.5f,
+			"locationCity", 1f);
+
+	private static final int MAX_QUERY_LENGTH = 200;
+	private static final int MAX_QUERY_TERMS = 8;
+	private static final int DEFAULT_LIMIT = 20;
+	private static final int MAX_LIMIT = 100;
+	// Re-read window behind the last catch-up: covers a transaction that committed a while after it
+	// stamped updated_at, and clock skew between the nodes that stamp it
+	private static final Duration CATCH_UP_OVERLAP = Duration.ofSeconds(30);
+
+	private final SchoolsVisitedRepository schoolVisitedRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final Path indexDir;
+	private final int rebuildBatchSize;
+	private final Analyzer analyzer = new VisitAnalyzer();
+	private final Timer searchTimer;
+
+	private Directory directory;
+	private IndexWriter writer;
+	private SearcherManager searcherManager;
+	// Start of the last successful rebuild or catch-up; null until the first rebuild succeeds
+	private volatile LocalDateTime lastSync;
+
+	public VisitFullTextIndex(SchoolsVisitedRepository schoolVisitedRepository,
+			PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+			@Value("${visits.fulltext.index-dir:data/visit-index}") String indexDir,
+			@Value("${visits.fulltext.rebuild-batch-size:1000}") int rebuildBatchSize) {
+		this.schoolVisitedRepository = schoolVisitedRepository;
+		// Change events arrive after the publishing transaction has committed; reads need a fresh one
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.transactionTemplate.setReadOnly(true);
+		this.indexDir = Path.of(indexDir);
+		this.rebuildBatchSize = rebuildBatchSize;
+		this.searchTimer = Timer.builder("visits.fulltext.search")
+				.description("Time spent answering full-text visit searches")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+	}
+
+	@PostConstruct
+	public void open() throws IOException {
+		directory = FSDirectory.open(indexDir);
+		writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+				.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+		searcherManager = new SearcherManager(writer, null);
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		try {
+			searcherManager.close();
+			writer.commit();
+		} finally {
+			writer.close();
+			directory.close();
+		}
+	}
+
+	// Replaces the index contents with what is in the database, reading visits in id order in
+	// batches. Changes indexed while this runs are kept: deleteAll() only drops what came before it.
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		long start = System.nanoTime();
+		LocalDateTime started = LocalDateTime.now();
+		try {
+			writer.deleteAll();
+			int count = 0;
+			int afterId = 0;
+			List<VisitIndexRow> batch;
+			do {
+				batch = schoolVisitedRepository.findIndexRowsAfter(afterId, PageRequest.ofSize(rebuildBatchSize));
+				for (VisitIndexRow row : batch) {
+					writer.updateDocument(new Term(ID, row.id().toString()), toDocument(row));
+				}
+				count += batch.size();
+				if (!batch.isEmpty()) {
+					afterId = batch.get(batch.size() - 1).id();
+				}
+			} while (batch.size() == rebuildBatchSize);
+			writer.commit();
+			searcherManager.maybeRefreshBlocking();
+			lastSync = started;
+			logger.info("Full-text index rebuilt with {} visits in {} ms", count,
+					(System.nanoTime() - start) / 1_000_000);
+		} catch (IOException | RuntimeException e) {
+			// Not rethrown: startup carries on and search serves whatever the index holds
+			logger.error("Full-text index rebuild failed", e);
+		}
+	}
+
+	// Picks up visits written through other nodes: every write path stamps updated_at, so the rows
+	// stamped since the last pass (less the overlap) are indexed again. Until a rebuild has succeeded
+	// there is nothing to catch up from, so it retries the rebuild instead.
+	@Scheduled(fixedDelayString = "${visits.fulltext.sync-interval-ms:30000}",
+			initialDelayString = "${visits.fulltext.sync-interval-ms:30000}")
+	public void catchUp() {
+		LocalDateTime since = lastSync;
+		if (since == null) {
+			rebuild();
+			return;
+		}
+		LocalDateTime now = LocalDateTime.now();
+		try {
+			List<VisitIndexRow> rows = schoolVisitedRepository.findIndexRowsUpdatedSince(since.minus(CATCH_UP_OVERLAP));
+			for (VisitIndexRow row : rows) {
+				writer.updateDocument(new Term(ID, row.id().toString()), toDocument(row));
+			}
+			if (!rows.isEmpty()) {
+				searcherManager.maybeRefresh();
+			}
+			lastSync = now;
+		} catch (IOException | RuntimeException e) {
+			// lastSync stays put, so the next pass covers this window too
+			logger.warn("Full-text index catch-up failed", e);
+		}
+	}
+
+	// Deleted visits leave no row for the catch-up to find: drops indexed ids that are no longer in
+	// the database. The index is read first; anything in it was committed before, so it is in the id
+	// list read next unless it has since been deleted, and a visit created in between is not touched.
+	@Scheduled(fixedDelayString = "${visits.fulltext.sweep-interval-ms:60000}",
+			initialDelayString = "${visits.fulltext.sweep-interval-ms:60000}")
+	public void sweepDeleted() {
+		try {
+			Set<Integer> stale = indexedIds();
+			stale.removeAll(schoolVisitedRepository.findAllIds());
+			if (stale.isEmpty()) {
+				return;
+			}
+			for (Integer id : stale) {
+				writer.deleteDocuments(new Term(ID, id.toString()));
+			}
+			searcherManager.maybeRefresh();
+			logger.info("Removed {} deleted visits from the full-text index", stale.size());
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Full-text index sweep failed", e);
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onVisitChanged(VisitChangedEvent event) {
+		try {
+			transactionTemplate.executeWithoutResult(tx -> reindex(List.of(event.visitId())));
+		} catch (RuntimeException e) {
+			// An exception here would reach the caller whose write has already committed
+			logger.warn("Could not update the full-text index for visit {}", event.visitId(), e);
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+	public void onMarketingUserDeleted(MarketingUserDeletedEvent event) {
+		try {
+			writer.deleteDocuments(new Term(USER_ID, event.userId().toString()));
+			searcherManager.maybeRefresh();
+		} catch (IOException e) {
+			logger.warn("Could not remove visits of user {} from the full-text index", event.userId(), e);
+		}
+	}
+
+	// Indexes the current state of the given visits; ids no longer in the database are removed.
+	// Failures are logged, never thrown: the write they follow has already committed.
+	void reindex(Collection<Integer> visitIds) {
+		try {
+			Set<Integer> missing = new HashSet<>(visitIds);
+			for (VisitIndexRow row : schoolVisitedRepository.findIndexRowsByIdIn(visitIds)) {
+				writer.updateDocument(new Term(ID, row.id().toString()), toDocument(row));
+				missing.remove(row.id());
+			}
+			for (Integer id : missing) {
+				writer.deleteDocuments(new Term(ID, id.toString()));
+			}
+			searcherManager.maybeRefresh();
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Could not update the full-text index for visits {}", visitIds, e);
+		}
+	}
+
+	// Ranked, typo-tolerant search. Every query word must match some field, exactly, as a prefix
+	// (for search-as-you-type) or within one or two edits; exact matches rank first. ownerUserId
+	// limits hits to one user's visits; null searches all of them.
+	public List<VisitSearchHit> search(String text, Integer ownerUserId, Integer limit) {
+		if (text == null || text.isBlank()) {
+			throw new IllegalArgumentException("q is required");
+		}
+		if (text.length() > MAX_QUERY_LENGTH) {
+			throw new IllegalArgumentException("q must be at most " + MAX_QUERY_LENGTH + " characters");
+		}
+		if (limit != null && limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		int maxHits = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+		return searchTimer.record(() -> {
+			Query query = buildQuery(text, ownerUserId);
+			if (query == null) {
+				return List.<VisitSearchHit>of();
+			}
+			IndexSearcher searcher = null;
+			try {
+				searcher = searcherManager.acquire();
+				TopDocs top = searcher.search(query, maxHits);
+				StoredFields stored = searcher.storedFields();
+				List<VisitSearchHit> hits = new ArrayList<>(top.scoreDocs.length);
+				for (ScoreDoc scoreDoc : top.scoreDocs) {
+					Document doc = stored.document(scoreDoc.doc);
+					hits.add(new VisitSearchHit(Integer.valueOf(doc.get(ID)), scoreDoc.score,
+							doc.get("schoolName"), doc.get("contactPersonName"), doc.get("decisionMakerName"),
+							doc.get(EMAIL), doc.get("locationCity"), doc.get(STATUS)));
+				}
+				return hits;
+			} catch (IOException e) {
+				throw new IllegalStateException("Full-text search failed", e);
+			} finally {
+				release(searcher);
+			}
+		});
+	}
+
+	Query buildQuery(String text, Integer ownerUserId) {
+		List<String> words = analyze(text);
+		if (words.isEmpty()) {
+			return null;
+		}
+		BooleanQuery.Builder query = new BooleanQuery.Builder();
+		for (String word : words) {
+			// Each kind of match scores a fixed weight: which field matched, and how closely, decides the
+			// rank rather than term statistics, which swing wildly on short fields like these
+			List<Query> alternatives = new ArrayList<>();
+			for (Map.Entry<String, Float> field : FIELD_BOOSTS.entrySet()) {
+				alternatives.add(weighted(new TermQuery(new Term(field.getKey(), word)), field.getValue()));
+			}
+			// Prefixes and misspellings are only expanded over the combined name field: one term
+			// dictionary walk per word instead of one per field
+			Term nameTerm = new Term(NAMES, word);
+			if (word.length() >= 2) {
+				alternatives.add(weighted(new PrefixQuery(nameTerm), 0.5f));
+			}
+			int edits = word.length() >= 8 ? 2 : word.length() >= 4 ? 1 : 0;
+			if (edits > 0) {
+				// The first two letters must match, which keeps the term expansion small
+				alternatives.add(weighted(new FuzzyQuery(nameTerm, edits, 2), 0.25f));
+			}
+			if (word.length() >= 3) {
+				// Emails are nearly unique per visit, so they only take prefixes of a few letters or more
+				alternatives.add(weighted(new PrefixQuery(new Term(EMAIL, word)), 0.5f));
+			}
+			// Score a word by its best match, with a little credit for matching several fields
+			query.add(new DisjunctionMaxQuery(alternatives, 0.1f), BooleanClause.Occur.MUST);
+		}
+		if (ownerUserId != null) {
+			query.add(new TermQuery(new Term(USER_ID, ownerUserId.toString())), BooleanClause.Occur.FILTER);
+		}
+		return query.build();
+	}
+
+	// Ids of the live documents, read from the id terms rather than stored fields
+	private Set<Integer> indexedIds() throws IOException {
+		Set<Integer> ids = new HashSet<>();
+		IndexSearcher searcher = searcherManager.acquire();
+		try {
+			for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+				LeafReader reader = leaf.reader();
+				Terms terms = reader.terms(ID);
+				if (terms == null) {
+					continue;
+				}
+				// A deleted document keeps its term until segments merge
+				Bits live = reader.getLiveDocs();
+				TermsEnum termsEnum = terms.iterator();
+				PostingsEnum postings = null;
+				for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+					postings = termsEnum.postings(postings, PostingsEnum.NONE);
+					for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+						if (live == null || live.get(doc)) {
+							ids.add(Integer.valueOf(term.utf8ToString()));
+							break;
+						}
+					}
+				}
+			}
+		} finally {
+			release(searcher);
+		}
+		return ids;
+	}
+
+	private static Query weighted(Query query, float weight) {
+		return new BoostQuery(new ConstantScoreQuery(query), weight);
+	}
+
+	private List<String> analyze(String text) {
+		List<String> words = new ArrayList<>();
+		try (TokenStream stream = analyzer.tokenStream("", text)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken() && words.size() < MAX_QUERY_TERMS) {
+				words.add(term.toString());
+			}
+			stream.end();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return words;
+	}
+
+	private static Document toDocument(VisitIndexRow row) {
+		Document doc = new Document();
+		doc.add(new StringField(ID, row.id().toString(), Field.Store.YES));
+		if (row.userId() != null) {
+			doc.add(new StringField(USER_ID, row.userId().toString(), Field.Store.NO));
+		}
+		if (row.status() != null) {
+			doc.add(new StoredField(STATUS, row.status().name()));
+		}
+		addText(doc, "schoolName", row.schoolName(), true);
+		addText(doc, "contactPersonName", row.contactPersonName(), true);
+		addText(doc, "decisionMakerName", row.decisionMakerName(), true);
+		addText(doc, EMAIL, row.emailId(), false);
+		addText(doc, "locationCity", row.locationCity(), true);
+		addText(doc, "marketingExecutiveName", row.marketingExecutiveName(), true);
+		return doc;
+	}
+
+	private static void addText(Document doc, String field, String value, boolean name) {
+		if (value != null && !value.isBlank()) {
+			doc.add(new TextField(field, value, Field.Store.YES));
+			if (name) {
+				doc.add(new TextField(NAMES, value, Field.Store.NO));
+			}
+		}
+	}
+
+	private void release(IndexSearcher searcher) {
+		if (searcher != null) {
+			try {
+				searcherManager.release(searcher);
+			} catch (IOException e) {
+				logger.warn("Could not release full-text searcher", e);
+			}
+		}
+	}
+
+	// Words split on Unicode boundaries, without a trailing 's, lower-cased and folded to ASCII, so
+	// "St. Mary's" is found by "mary" and "José" by "jose"
+	private static final class VisitAnalyzer extends Analyzer {
+
+		@Override
+		protected TokenStreamComponents createComponents(String fieldName) {
+			Tokenizer tokenizer = new StandardTokenizer();
+			TokenStream stream = new ASCIIFoldingFilter(new LowerCaseFilter(new EnglishPossessiveFilter(tokenizer)));
+			return new TokenStreamComponents(tokenizer, stream);
+		}
+
+		@Override
+		protected TokenStream normalize(String fieldName, TokenStream in) {
+			return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.example.visited.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.visited.DTO.SelectedModule;
+import com.example.visited.DTO.VisitDetail;
+import com.example.visited.repositories.SchoolModuleRequiredRepository;
+
+// Loads the selected-module rows of a whole visit listing with one IN query per chunk of visits
+// instead of one query per visit. 5,000 visits = 5 queries at the default chunk size. Module names
+// come from the in-memory catalog rather than a join or the lazy SchoolModuleRequired.module.
+@Service
+public class VisitModuleLoader {
+
+	private final SchoolModuleRequiredRepository schoolModuleRequiredRepository;
+	private final ModuleCatalog moduleCatalog;
+	private final int chunkSize;
+
+	public VisitModuleLoader(SchoolModuleRequiredRepository schoolModuleRequiredRepository, ModuleCatalog moduleCatalog,
+			@Value("${visits.module-batch-size:1000}") int chunkSize) {
+		this.schoolModuleRequiredRepository = schoolModuleRequiredRepository;
+		this.moduleCatalog = moduleCatalog;
+		this.chunkSize = chunkSize;
+	}
+
+	// Returns the visits with selectedModules filled in, in the same order
+	public List<VisitDetail> attachModules(List<VisitDetail> visits) {
+		List<Integer> ids = new ArrayList<>(visits.size());
+		for (VisitDetail visit : visits) {
+			ids.add(visit.id());
+		}
+		Map<Integer, List<SelectedModule>> byVisit = loadModules(ids);
+
+		List<VisitDetail> result = new ArrayList<>(visits.size());
+		for (VisitDetail visit : visits) {
+			result.add(visit.withModules(byVisit.get(visit.id())));
+		}
+		return result;
+	}
+
+	// visit id -> its module rows; visits without modules map to an empty list
+	public Map<Integer, List<SelectedModule>> loadModules(List<Integer> visitIds) {
+		Map<Integer, List<SelectedModule>> byVisit = new HashMap<>();
+		for (Integer id : visitIds) {
+			byVisit.put(id, new ArrayList<>());
+		}
+
+		ModuleCatalog.Snapshot catalog = moduleCatalog.snapshot();
+		for (int from = 0; from < visitIds.size(); from += chunkSize) {
+			List<Integer> chunk = visitIds.subList(from, Math.min(from + chunkSize, visitIds.size()));
+			for (SelectedModule module : schoolModuleRequiredRepository.findSelectedModulesByVisitIdIn(chunk)) {
+				byVisit.get(module.visitId()).add(module.withModuleName(catalog.name(module.moduleId())));
+			}
+		}
+		return byVisit;
+	}
+}
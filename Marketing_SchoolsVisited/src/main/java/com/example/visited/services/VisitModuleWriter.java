@@ -0,0 +1,120 @@
+package com.example.visited.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.visited.DTO.SelectedModule;
+import com.example.visited.entitys.SchoolModuleRequired;
+
+// Writes a visit's selected-module rows with one multi-row INSERT ... ON DUPLICATE KEY UPDATE per
+// chunk instead of a lookup and a save per module (IDENTITY ids keep Hibernate from batching
+// inserts), and brings an edited visit's rows in line with the submitted set by applying only the
+// difference. Relies on the unique (school_visited_id, module_id) key from V9; a module listed twice
+// keeps its last entry. Runs on the caller's transaction and connection.
+@Service
+public class VisitModuleWriter {
+
+	private static final String INSERT = "INSERT INTO school_modules_required"
+			+ " (school_visited_id, module_id, is_selected, remarks, created_at, updated_at) VALUES ";
+	private static final String ROW = "(?, ?, ?, ?, ?, ?)";
+	// VALUES(col) rather than a row alias so it also runs on MySQL 5.7 and H2's MySQL mode
+	private static final String ON_DUPLICATE = " ON DUPLICATE KEY UPDATE is_selected = VALUES(is_selected),"
+			+ " remarks = VALUES(remarks), updated_at = VALUES(updated_at)";
+
+	// What reconcile() changed
+	public record Changes(int inserted, int updated, int deleted) {
+
+		public boolean isEmpty() {
+			return inserted == 0 && updated == 0 && deleted == 0;
+		}
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int rowsPerStatement;
+
+	public VisitModuleWriter(DataSource dataSource,
+			@Value("${visits.module-write-batch-size:200}") int rowsPerStatement) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.rowsPerStatement = rowsPerStatement;
+	}
+
+	// Makes the visit's rows match the submitted set: one read, then new and changed rows in one
+	// upsert and dropped modules in one DELETE. Unchanged rows are not written, so they keep
+	// updated_at; rows that stay keep their id and created_at.
+	public Changes reconcile(Integer visitId, List<SelectedModule> submitted) {
+		Map<Integer, SelectedModule> wanted = new LinkedHashMap<>();
+		for (SelectedModule module : submitted) {
+			wanted.put(module.moduleId(), module);
+		}
+		Map<Integer, SelectedModule> current = new HashMap<>();
+		jdbcTemplate.query("SELECT module_id, is_selected, remarks FROM school_modules_required"
+				+ " WHERE school_visited_id = ?", rs -> {
+			String isSelected = rs.getString("is_selected");
+			current.put(rs.getInt("module_id"), new SelectedModule(visitId, rs.getInt("module_id"),
+					isSelected == null ? null : SchoolModuleRequired.IsSelected.valueOf(isSelected),
+					rs.getString("remarks")));
+		}, visitId);
+
+		List<SelectedModule> writes = new ArrayList<>();
+		int inserted = 0;
+		for (SelectedModule module : wanted.values()) {
+			SelectedModule existing = current.get(module.moduleId());
+			if (existing == null) {
+				inserted++;
+				writes.add(module);
+			} else if (existing.isSelected() != module.isSelected()
+					|| !Objects.equals(existing.remarks(), module.remarks())) {
+				writes.add(module);
+			}
+		}
+		List<Integer> removed = new ArrayList<>(current.keySet());
+		removed.removeAll(wanted.keySet());
+		Collections.sort(removed);
+
+		upsert(visitId, writes);
+		if (!removed.isEmpty()) {
+			List<Object> args = new ArrayList<>(removed.size() + 1);
+			args.add(visitId);
+			args.addAll(removed);
+			jdbcTemplate.update("DELETE FROM school_modules_required WHERE school_visited_id = ? AND module_id IN ("
+					+ String.join(", ", Collections.nCopies(removed.size(), "?")) + ")", args.toArray());
+		}
+		return new Changes(inserted, writes.size() - inserted, removed.size());
+	}
+
+	// Inserts or updates the given rows for the visit; rows of other modules are left alone
+	public void upsert(Integer visitId, List<SelectedModule> modules) {
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		for (int from = 0; from < modules.size(); from += rowsPerStatement) {
+			List<SelectedModule> chunk = modules.subList(from, Math.min(from + rowsPerStatement, modules.size()));
+			StringBuilder sql = new StringBuilder(INSERT);
+			List<Object> args = new ArrayList<>(chunk.size() * 6);
+			for (SelectedModule module : chunk) {
+				if (!args.isEmpty()) {
+					sql.append(", ");
+				}
+				sql.append(ROW);
+				args.add(visitId);
+				args.add(module.moduleId());
+				args.add(module.isSelected() == null ? null : module.isSelected().name());
+				args.add(module.remarks());
+				args.add(now);
+				args.add(now);
+			}
+			jdbcTemplate.update(sql.append(ON_DUPLICATE).toString(), args.toArray());
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package com.example.visited.services;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.visited.DTO.VisitDetail;
+import com.example.visited.DTO.VisitSearchCursor;
+import com.example.visited.DTO.VisitSearchRequest;
+import com.example.visited.DTO.VisitSummary;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.repositories.SchoolsVisitedRepository;
+import com.example.visited.repositories.VisitSpecifications;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+// Filtered, sorted, keyset-paged visit search. The first query selects only (id, sort value) for
+// limit + 1 rows with the combined Specification; the page's rows are then read by id as
+// projections, like the plain listings.
+@Service
+public class VisitSearchService {
+
+	private static final Logger logger = LoggerFactory.getLogger(VisitSearchService.class);
+
+	enum SortKey {
+		CREATED_AT("createdAt", LocalDateTime::parse),
+		VISITED_DATE("visitedDate", LocalDate::parse),
+		BUDGET_RANGE("budgetRange", BigDecimal::new);
+
+		final String attribute;
+		final Function<String, Comparable<?>> parser;
+
+		SortKey(String attribute, Function<String, Comparable<?>> parser) {
+			this.attribute = attribute;
+			this.parser = parser;
+		}
+
+		static SortKey of(String sort) {
+			if (sort == null || sort.isBlank()) {
+				return CREATED_AT;
+			}
+			for (SortKey key : values()) {
+				if (key.attribute.equalsIgnoreCase(sort.trim())) {
+					return key;
+				}
+			}
+			throw new IllegalArgumentException("sort must be createdAt, visitedDate or budgetRange");
+		}
+	}
+
+	private final EntityManager entityManager;
+	private final SchoolsVisitedRepository schoolVisitedRepository;
+	private final VisitModuleLoader visitModuleLoader;
+	private final int defaultPageSize;
+	private final int maxPageSize;
+
+	public VisitSearchService(EntityManager entityManager, SchoolsVisitedRepository schoolVisitedRepository,
+			VisitModuleLoader visitModuleLoader,
+			@Value("${visits.page.default-size:50}") int defaultPageSize,
+			@Value("${visits.page.max-size:200}") int maxPageSize) {
+		this.entityManager = entityManager;
+		this.schoolVisitedRepository = schoolVisitedRepository;
+		this.visitModuleLoader = visitModuleLoader;
+		this.defaultPageSize = defaultPageSize;
+		this.maxPageSize = maxPageSize;
+	}
+
+	// ownerUserId restricts the search to one marketing user's visits (and applies the owner view);
+	// null searches all visits
+	@Transactional(readOnly = true)
+	public Map<String, Object> search(VisitSearchRequest request, Integer ownerUserId, boolean summary) {
+		SortKey sort = SortKey.of(request.sort());
+		boolean descending = isDescending(request.direction());
+		int pageSize = resolvePageSize(request.limit());
+
+		Specification<SchoolVisited> spec = VisitSpecifications.matching(request, ownerUserId);
+		VisitSearchCursor cursor = VisitSearchCursor.decode(request.cursor());
+		if (cursor != null) {
+			if (!sort.attribute.equals(cursor.sort()) || descending != cursor.descending()) {
+				throw new IllegalArgumentException("cursor belongs to a different sort order");
+			}
+			Comparable<?> value = parseCursorValue(sort, cursor.value());
+			spec = spec.and(VisitSpecifications.after(sort.attribute, descending, value, cursor.id()));
+		}
+
+		List<Object[]> keys = findKeys(spec, sort, descending, pageSize + 1);
+		boolean hasMore = keys.size() > pageSize;
+		List<Object[]> page = hasMore ? keys.subList(0, pageSize) : keys;
+		logger.debug("Visit search returned {} rows (sort: {} {}, owner: {})", page.size(), sort.attribute,
+				descending ? "desc" : "asc", ownerUserId);
+
+		List<Integer> ids = new ArrayList<>(page.size());
+		Map<Integer, Integer> position = new HashMap<>();
+		for (Object[] key : page) {
+			position.put((Integer) key[0], ids.size());
+			ids.add((Integer) key[0]);
+		}
+
+		List<?> visits;
+		if (ids.isEmpty()) {
+			visits = List.of();
+		} else if (summary) {
+			List<VisitSummary> summaries = new ArrayList<>(schoolVisitedRepository.findSummariesByIdIn(ids));
+			summaries.sort(Comparator.comparing(s -> position.get(s.id())));
+			visits = summaries;
+		} else {
+			List<VisitDetail> details = new ArrayList<>(schoolVisitedRepository.findDetailsByIdIn(ids));
+			details.sort(Comparator.comparing(d -> position.get(d.id())));
+			visits = visitModuleLoader.attachModules(ownerUserId != null
+					? details.stream().map(VisitDetail::forOwner).toList()
+					: details);
+		}
+
+		String nextCursor = null;
+		if (hasMore) {
+			Object[] last = page.get(page.size() - 1);
+			nextCursor = new VisitSearchCursor(sort.attribute, descending,
+					last[1] == null ? null : last[1].toString(), (Integer) last[0]).encode();
+		}
+
+		Map<String, Object> result = new HashMap<>();
+		result.put("visits", visits);
+		result.put("nextCursor", nextCursor);
+		result.put("hasMore", hasMore);
+		result.put("limit", pageSize);
+		return result;
+	}
+
+	private List<Object[]> findKeys(Specification<SchoolVisited> spec, SortKey sort, boolean descending, int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+		Root<SchoolVisited> visit = query.from(SchoolVisited.class);
+		Path<Object> key = visit.get(sort.attribute);
+		Path<Object> id = visit.get("id");
+		query.multiselect(id, key);
+		Predicate predicate = spec.toPredicate(visit, query, cb);
+		if (predicate != null) {
+			query.where(predicate);
+		}
+		query.orderBy(descending ? cb.desc(key) : cb.asc(key), descending ? cb.desc(id) : cb.asc(id));
+		return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+	}
+
+	private static Comparable<?> parseCursorValue(SortKey sort, String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return sort.parser.apply(value);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+	}
+
+	private static boolean isDescending(String direction) {
+		if (direction == null || direction.isBlank()) {
+			return true;
+		}
+		return switch (direction.trim().toLowerCase(Locale.ROOT)) {
+			case "desc" -> true;
+			case "asc" -> false;
+			default -> throw new IllegalArgumentException("direction must be asc or desc");
+		};
+	}
+
+	private int resolvePageSize(Integer limit) {
+		if (limit == null) {
+			return defaultPageSize;
+		}
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		return Math.min(limit, maxPageSize);
+	}
+}
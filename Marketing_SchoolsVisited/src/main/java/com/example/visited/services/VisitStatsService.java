@@ -0,0 +1,271 @@
+package com.example.visited.services;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.visited.DTO.VisitStatsFacts;
+import com.example.visited.DTO.VisitStatsRow;
+import com.example.visited.entitys.SchoolVisited;
+
+// Keeps the visit_stats rollup (V11) in step with school_visited. Every visit write in
+// MarketingService passes the visit's facts before and after the change; the difference is applied
+// as atomic increments on the caller's transaction, so the rollup commits or rolls back with the
+// visit. Dashboards then read the rollup (a few rows per executive and month) instead of every visit.
+// Cities are grouped trimmed and lower-cased, both here (Key.of) and in SQL (FROM_BASE, V14), and the
+// city column compares them in binary (V14), so a rollup key and its row are equal on both sides.
+@Service
+public class VisitStatsService {
+
+	private static final Logger logger = LoggerFactory.getLogger(VisitStatsService.class);
+
+	private static final String UPSERT = "INSERT INTO visit_stats (user_id, status, city, visit_month, visit_count,"
+			+ " budget_sum, initial_payment_sum) VALUES (?, ?, ?, ?, ?, ?, ?)";
+	private static final String ADD = UPSERT + " ON DUPLICATE KEY UPDATE visit_count = visit_count"
+			+ " + VALUES(visit_count), budget_sum = budget_sum + VALUES(budget_sum),"
+			+ " initial_payment_sum = initial_payment_sum + VALUES(initial_payment_sum)";
+	private static final String REPLACE = UPSERT + " ON DUPLICATE KEY UPDATE visit_count = VALUES(visit_count),"
+			+ " budget_sum = VALUES(budget_sum), initial_payment_sum = VALUES(initial_payment_sum)";
+	private static final String KEY_MATCH = " WHERE user_id = ? AND status = ? AND city = ? AND visit_month = ?";
+
+	// The rollup recomputed from the base table; YEAR/MONTH rather than DATE_FORMAT so it also runs on H2
+	private static final String MONTH_OF_VISIT = "COALESCE(visited_date, created_at)";
+	private static final String CITY_OF_VISIT = "LOWER(TRIM(COALESCE(location_city, '')))";
+	private static final String FROM_BASE = "SELECT user_id, status, " + CITY_OF_VISIT + " AS city,"
+			+ " YEAR(" + MONTH_OF_VISIT + ") AS y, MONTH(" + MONTH_OF_VISIT + ") AS m, COUNT(*) AS visit_count,"
+			+ " COALESCE(SUM(budget_range), 0) AS budget_sum,"
+			+ " COALESCE(SUM(CASE WHEN status = 'ACCEPTED' THEN initial_payment END), 0) AS initial_payment_sum"
+			+ " FROM school_visited GROUP BY user_id, status, " + CITY_OF_VISIT + ","
+			+ " YEAR(" + MONTH_OF_VISIT + "), MONTH(" + MONTH_OF_VISIT + ")";
+
+	private static final Map<String, String> DIMENSIONS = Map.of("userid", "user_id", "status", "status",
+			"city", "city", "month", "visit_month");
+
+	record Key(Integer userId, SchoolVisited.VisitStatus status, String city, LocalDate month) {
+
+		static final Comparator<Key> ORDER = Comparator.comparing(Key::userId)
+				.thenComparing(Key::status)
+				.thenComparing(Key::city)
+				.thenComparing(Key::month);
+
+		static Key of(VisitStatsFacts facts) {
+			LocalDate day = facts.visitedDate() != null ? facts.visitedDate()
+					: facts.createdAt() != null ? facts.createdAt().toLocalDate() : LocalDate.now();
+			return new Key(facts.userId(), facts.status(), city(facts.locationCity()), day.withDayOfMonth(1));
+		}
+
+		// CITY_OF_VISIT in Java: SQL's TRIM only strips spaces, so String.trim()/strip() would not agree
+		static String city(String locationCity) {
+			if (locationCity == null) {
+				return "";
+			}
+			int start = 0;
+			int end = locationCity.length();
+			while (start < end && locationCity.charAt(start) == ' ') {
+				start++;
+			}
+			while (end > start && locationCity.charAt(end - 1) == ' ') {
+				end--;
+			}
+			return locationCity.substring(start, end).toLowerCase(Locale.ROOT);
+		}
+	}
+
+	record Measures(long count, BigDecimal budget, BigDecimal initialPayment) {
+
+		static Measures of(VisitStatsFacts facts) {
+			return new Measures(1, orZero(facts.budgetRange()),
+					facts.status() == SchoolVisited.VisitStatus.ACCEPTED ? orZero(facts.initialPayment())
+							: BigDecimal.ZERO);
+		}
+
+		Measures plus(Measures other) {
+			return new Measures(count + other.count, budget.add(other.budget),
+					initialPayment.add(other.initialPayment));
+		}
+
+		Measures negate() {
+			return new Measures(-count, budget.negate(), initialPayment.negate());
+		}
+
+		boolean isZero() {
+			return count == 0 && budget.signum() == 0 && initialPayment.signum() == 0;
+		}
+
+		boolean sameAs(Measures other) {
+			return count == other.count && budget.compareTo(other.budget) == 0
+					&& initialPayment.compareTo(other.initialPayment) == 0;
+		}
+	}
+
+	// What rebuild() found; rebuilt is false for a dry run or when nothing differed
+	public record Verification(int groups, int missing, int unexpected, int different, boolean rebuilt) {
+
+		public boolean consistent() {
+			return missing == 0 && unexpected == 0 && different == 0;
+		}
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public VisitStatsService(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	// before is null for a new visit, after is null for a deleted one. Groups are written in key
+	// order so two transactions touching the same groups lock them in the same order.
+	public void apply(VisitStatsFacts before, VisitStatsFacts after) {
+		Map<Key, Measures> deltas = new TreeMap<>(Key.ORDER);
+		if (before != null) {
+			deltas.merge(Key.of(before), Measures.of(before).negate(), Measures::plus);
+		}
+		if (after != null) {
+			deltas.merge(Key.of(after), Measures.of(after), Measures::plus);
+		}
+		deltas.forEach((key, delta) -> {
+			if (delta.isZero()) {
+				return;
+			}
+			jdbcTemplate.update(ADD, key.userId(), key.status().name(), key.city(), Date.valueOf(key.month()),
+					delta.count(), delta.budget(), delta.initialPayment());
+			if (delta.count() < 0) {
+				jdbcTemplate.update("DELETE FROM visit_stats" + KEY_MATCH + " AND visit_count <= 0", key.userId(),
+						key.status().name(), key.city(), Date.valueOf(key.month()));
+			}
+		});
+	}
+
+	// Runs inside AdmiService.deleteMarketingUser's transaction: the user's visits go with the user
+	@EventListener
+	public void onMarketingUserDeleted(MarketingUserDeletedEvent event) {
+		int removed = jdbcTemplate.update("DELETE FROM visit_stats WHERE user_id = ?", event.userId());
+		logger.debug("Removed {} visit_stats groups of deleted user {}", removed, event.userId());
+	}
+
+	// Groups between two months (inclusive, either open), collapsed to the requested dimensions
+	// (userId, status, city, month; all four when empty). Reads only the rollup.
+	@Transactional(readOnly = true)
+	public List<VisitStatsRow> getStats(List<String> groupBy, YearMonth from, YearMonth to) {
+		if (from != null && to != null && from.isAfter(to)) {
+			throw new IllegalArgumentException("from must not be after to");
+		}
+		List<String> columns = new ArrayList<>();
+		if (groupBy == null || groupBy.isEmpty()) {
+			columns.addAll(List.of("user_id", "status", "city", "visit_month"));
+		} else {
+			for (String dimension : groupBy) {
+				String column = DIMENSIONS.get(dimension.trim().toLowerCase(Locale.ROOT));
+				if (column == null) {
+					throw new IllegalArgumentException("groupBy must be userId, status, city or month");
+				}
+				if (!columns.contains(column)) {
+					columns.add(column);
+				}
+			}
+		}
+
+		String select = String.join(", ", columns);
+		StringBuilder sql = new StringBuilder("SELECT ").append(select)
+				.append(", SUM(visit_count) AS visit_count, SUM(budget_sum) AS budget_sum,")
+				.append(" SUM(initial_payment_sum) AS initial_payment_sum FROM visit_stats WHERE 1 = 1");
+		List<Object> args = new ArrayList<>();
+		if (from != null) {
+			sql.append(" AND visit_month >= ?");
+			args.add(Date.valueOf(from.atDay(1)));
+		}
+		if (to != null) {
+			sql.append(" AND visit_month <= ?");
+			args.add(Date.valueOf(to.atDay(1)));
+		}
+		sql.append(" GROUP BY ").append(select).append(" ORDER BY ").append(select);
+
+		return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new VisitStatsRow(
+				columns.contains("user_id") ? rs.getInt("user_id") : null,
+				columns.contains("status") ? SchoolVisited.VisitStatus.valueOf(rs.getString("status")) : null,
+				columns.contains("city") ? rs.getString("city") : null,
+				columns.contains("visit_month") ? rs.getDate("visit_month").toLocalDate() : null,
+				rs.getLong("visit_count"), rs.getBigDecimal("budget_sum"), rs.getBigDecimal("initial_payment_sum")),
+				args.toArray());
+	}
+
+	// Recomputes every group from school_visited and compares it with the rollup; unless dryRun,
+	// rewrites only the groups that differ. The rollup is read with FOR UPDATE first, so visit writes
+	// that commit meanwhile wait for this transaction and are applied on top of the corrected rows.
+	@Transactional
+	public Verification rebuild(boolean dryRun) {
+		Map<Key, Measures> current = new HashMap<>();
+		jdbcTemplate.query("SELECT user_id, status, city, visit_month, visit_count, budget_sum, initial_payment_sum"
+				+ " FROM visit_stats FOR UPDATE", rs -> {
+			current.put(new Key(rs.getInt("user_id"), SchoolVisited.VisitStatus.valueOf(rs.getString("status")),
+					rs.getString("city"), rs.getDate("visit_month").toLocalDate()),
+					new Measures(rs.getLong("visit_count"), rs.getBigDecimal("budget_sum"),
+							rs.getBigDecimal("initial_payment_sum")));
+		});
+		Map<Key, Measures> expected = new LinkedHashMap<>();
+		jdbcTemplate.query(FROM_BASE, rs -> {
+			expected.put(new Key(rs.getInt("user_id"), SchoolVisited.VisitStatus.valueOf(rs.getString("status")),
+					rs.getString("city"), LocalDate.of(rs.getInt("y"), rs.getInt("m"), 1)),
+					new Measures(rs.getLong("visit_count"), rs.getBigDecimal("budget_sum"),
+							rs.getBigDecimal("initial_payment_sum")));
+		});
+
+		List<Key> replace = new ArrayList<>();
+		int missing = 0;
+		int different = 0;
+		for (Map.Entry<Key, Measures> entry : expected.entrySet()) {
+			Measures stored = current.remove(entry.getKey());
+			if (stored == null) {
+				missing++;
+				replace.add(entry.getKey());
+			} else if (!stored.sameAs(entry.getValue())) {
+				different++;
+				replace.add(entry.getKey());
+			}
+		}
+		// Whatever is left in current has no visits behind it
+		int unexpected = current.size();
+		boolean rebuild = !dryRun && (!replace.isEmpty() || unexpected > 0);
+		if (rebuild) {
+			replace.sort(Key.ORDER);
+			for (Key key : replace) {
+				Measures measures = expected.get(key);
+				jdbcTemplate.update(REPLACE, key.userId(), key.status().name(), key.city(), Date.valueOf(key.month()),
+						measures.count(), measures.budget(), measures.initialPayment());
+			}
+			for (Key key : current.keySet()) {
+				jdbcTemplate.update("DELETE FROM visit_stats" + KEY_MATCH, key.userId(), key.status().name(),
+						key.city(), Date.valueOf(key.month()));
+			}
+		}
+
+		Verification verification = new Verification(expected.size(), missing, unexpected, different, rebuild);
+		if (verification.consistent()) {
+			logger.info("visit_stats verified: {} groups match school_visited", expected.size());
+		} else {
+			logger.warn("visit_stats differed from school_visited: {}", verification);
+		}
+		return verification;
+	}
+
+	private static BigDecimal orZero(BigDecimal value) {
+		return value == null ? BigDecimal.ZERO : value;
+	}
+}
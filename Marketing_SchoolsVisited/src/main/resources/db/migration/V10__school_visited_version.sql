@@ -0,0 +1,3 @@
+-- Optimistic locking for visit edits (SchoolVisited.version): every UPDATE checks and bumps it.
+ALTER TABLE school_visited
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,22 @@
+-- Sales-pipeline rollup kept in step with school_visited by VisitStatsService: one row per
+-- (executive, status, city, month of the visit). A missing city is ''. Only ACCEPTED visits
+-- contribute to initial_payment_sum.
+CREATE TABLE IF NOT EXISTS visit_stats (
+    user_id INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    city VARCHAR(100) NOT NULL,
+    visit_month DATE NOT NULL,
+    visit_count BIGINT NOT NULL,
+    budget_sum DECIMAL(18,2) NOT NULL,
+    initial_payment_sum DECIMAL(18,2) NOT NULL,
+    PRIMARY KEY (user_id, status, city, visit_month),
+    INDEX ix_visit_stats_month (visit_month)
+) ENGINE=InnoDB;
+
+INSERT INTO visit_stats (user_id, status, city, visit_month, visit_count, budget_sum, initial_payment_sum)
+SELECT user_id, status, COALESCE(location_city, ''),
+       DATE_FORMAT(COALESCE(visited_date, created_at), '%Y-%m-01'),
+       COUNT(*), COALESCE(SUM(budget_range), 0),
+       COALESCE(SUM(CASE WHEN status = 'ACCEPTED' THEN initial_payment END), 0)
+  FROM school_visited
+ GROUP BY user_id, status, COALESCE(location_city, ''), DATE_FORMAT(COALESCE(visited_date, created_at), '%Y-%m-01');
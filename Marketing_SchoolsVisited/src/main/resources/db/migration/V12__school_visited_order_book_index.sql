@@ -0,0 +1,3 @@
+-- Revenue analytics read ACCEPTED visits by booking month (RevenueAnalyticsService).
+ALTER TABLE school_visited
+    ADD INDEX ix_school_visited_status_booking (status, order_booking_date);
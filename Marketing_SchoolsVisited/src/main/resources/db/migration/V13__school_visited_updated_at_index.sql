@@ -0,0 +1,3 @@
+-- Full-text index catch-up reads visits by updated_at (VisitFullTextIndex.catchUp).
+ALTER TABLE school_visited
+    ADD INDEX ix_school_visited_updated_at (updated_at);
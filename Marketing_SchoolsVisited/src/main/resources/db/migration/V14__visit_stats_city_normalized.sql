@@ -0,0 +1,17 @@
+-- visit_stats.city compared in binary, and holding the city trimmed and lower-cased as
+-- VisitStatsService groups it. Under the case-insensitive, pad-space default collation "Delhi" and
+-- "delhi " shared one primary key while the service counted them apart, so a rebuild could delete
+-- the row it had just repaired. The rollup is then recounted with the normalised city.
+ALTER TABLE visit_stats
+    MODIFY city VARCHAR(100) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL;
+
+DELETE FROM visit_stats;
+
+INSERT INTO visit_stats (user_id, status, city, visit_month, visit_count, budget_sum, initial_payment_sum)
+SELECT user_id, status, LOWER(TRIM(COALESCE(location_city, ''))),
+       DATE_FORMAT(COALESCE(visited_date, created_at), '%Y-%m-01'),
+       COUNT(*), COALESCE(SUM(budget_range), 0),
+       COALESCE(SUM(CASE WHEN status = 'ACCEPTED' THEN initial_payment END), 0)
+  FROM school_visited
+ GROUP BY user_id, status, LOWER(TRIM(COALESCE(location_city, ''))),
+          DATE_FORMAT(COALESCE(visited_date, created_at), '%Y-%m-01');
@@ -0,0 +1,7 @@
+-- Generation counters for per-node in-memory caches (CacheGenerations): bumped after each committed
+-- change, polled by every node. Rows are created by the first bump.
+CREATE TABLE IF NOT EXISTS cache_generation (
+    name VARCHAR(50) NOT NULL,
+    generation BIGINT NOT NULL,
+    PRIMARY KEY (name)
+) ENGINE=InnoDB;
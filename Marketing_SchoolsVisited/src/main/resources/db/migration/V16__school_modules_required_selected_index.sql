@@ -0,0 +1,5 @@
+-- Revenue by module (RevenueAnalyticsService) joins the booked visits to their selected modules.
+-- This index covers that join: each module's selected rows with their visit ids, without reading
+-- the table rows.
+ALTER TABLE school_modules_required
+    ADD INDEX ix_school_modules_required_selected (is_selected, module_id, school_visited_id);
@@ -0,0 +1,7 @@
+-- Tokens are trusted until expiry unless their jti has been revoked (logout / user removal).
+-- Revoked rows are kept until they expire so every node can reload them at startup.
+ALTER TABLE jwt_tokens
+    ADD COLUMN jti CHAR(36) NULL,
+    ADD COLUMN revoked_at DATETIME(6) NULL,
+    ADD UNIQUE INDEX ux_jwt_tokens_jti (jti),
+    ADD INDEX ix_jwt_tokens_revoked_at (revoked_at);
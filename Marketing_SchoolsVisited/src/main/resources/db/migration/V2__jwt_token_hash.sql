@@ -0,0 +1,8 @@
+-- Fixed-width SHA-256 digest of the token so lookups use a compact unique index
+-- instead of comparing the 1000-char token column.
+ALTER TABLE jwt_tokens ADD COLUMN token_hash BINARY(32) NULL;
+
+-- Backfill existing rows (same digest as AuthService.tokenHash: SHA-256 over the UTF-8 token)
+UPDATE jwt_tokens SET token_hash = UNHEX(SHA2(token, 256)) WHERE token_hash IS NULL;
+
+ALTER TABLE jwt_tokens ADD UNIQUE INDEX ux_jwt_tokens_token_hash (token_hash);
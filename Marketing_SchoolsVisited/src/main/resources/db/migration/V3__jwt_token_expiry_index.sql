@@ -0,0 +1,2 @@
+-- Lets the expired-token reaper find expired rows without scanning the table
+ALTER TABLE jwt_tokens ADD INDEX ix_jwt_tokens_expires_at (expires_at);
@@ -0,0 +1,7 @@
+-- jwt_tokens rows become per-device sessions (jti = session id).
+-- New rows no longer keep the raw token; lookups use token_hash / jti.
+ALTER TABLE jwt_tokens
+    MODIFY COLUMN token VARCHAR(1000) NULL,
+    ADD COLUMN device_label VARCHAR(255) NULL,
+    ADD COLUMN ip_address VARCHAR(45) NULL,
+    ADD INDEX ix_jwt_tokens_user_expires (user_id, expires_at);
@@ -0,0 +1,7 @@
+-- Refresh token rotation: jwt_tokens.expires_at is now the session (refresh) expiry,
+-- the access token itself carries a short exp claim.
+-- Only SHA-256 digests of refresh secrets are stored; previous_refresh_hash detects replay.
+ALTER TABLE jwt_tokens
+    ADD COLUMN refresh_token_hash BINARY(32) NULL,
+    ADD COLUMN previous_refresh_hash BINARY(32) NULL,
+    ADD COLUMN refreshed_at DATETIME(6) NULL;
@@ -0,0 +1,8 @@
+-- Shared Bucket4j state for rate-limit.backend=jdbc (one row per limited key).
+-- updated_at lets RateLimitBucketStore purge buckets nobody has used for a while.
+CREATE TABLE IF NOT EXISTS rate_limit_buckets (
+    id VARCHAR(255) NOT NULL PRIMARY KEY,
+    state BLOB NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX ix_rate_limit_buckets_updated_at (updated_at)
+) ENGINE=InnoDB;
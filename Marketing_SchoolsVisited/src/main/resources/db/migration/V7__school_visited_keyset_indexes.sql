@@ -0,0 +1,9 @@
+-- Keyset pagination of visit listings (ORDER BY created_at DESC, id DESC):
+-- per marketing user, per status (admin filter) and across all visits.
+-- Rows written before created_at was populated get updated_at (or now) so the key is total.
+UPDATE school_visited SET created_at = COALESCE(updated_at, NOW()) WHERE created_at IS NULL;
+ALTER TABLE school_visited
+    MODIFY created_at DATETIME(6) NOT NULL,
+    ADD INDEX ix_school_visited_user_created (user_id, created_at, id),
+    ADD INDEX ix_school_visited_status_created (status, created_at, id),
+    ADD INDEX ix_school_visited_created (created_at, id);
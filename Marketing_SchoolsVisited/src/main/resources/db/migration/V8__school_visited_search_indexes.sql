@@ -0,0 +1,17 @@
+-- Visit search filters (city, executive, visited date range, budget range) and sorts.
+-- location_city was TEXT, which cannot be indexed as a whole, so it becomes VARCHAR(100) and
+-- existing values are trimmed to fit. This is lossy: any city longer than 100 characters after
+-- trimming loses its tail. Count those rows before running this on a live database:
+--   SELECT COUNT(*) FROM school_visited WHERE CHAR_LENGTH(TRIM(location_city)) > 100;
+-- Their full values are copied to school_visited_city_overflow first so they can be fixed by hand.
+-- New writes over 100 characters are refused by MarketingService instead of being cut.
+-- boards stays TEXT: it is matched with LIKE '%..%' and only filters rows the indexed predicates select.
+CREATE TABLE school_visited_city_overflow AS
+    SELECT id, location_city FROM school_visited WHERE CHAR_LENGTH(TRIM(location_city)) > 100;
+UPDATE school_visited SET location_city = LEFT(TRIM(location_city), 100) WHERE location_city IS NOT NULL;
+ALTER TABLE school_visited
+    MODIFY location_city VARCHAR(100) NULL,
+    ADD INDEX ix_school_visited_city_created (location_city, created_at, id),
+    ADD INDEX ix_school_visited_exec_created (marketing_executive_name, created_at, id),
+    ADD INDEX ix_school_visited_visited_date (visited_date, id),
+    ADD INDEX ix_school_visited_budget (budget_range, id);
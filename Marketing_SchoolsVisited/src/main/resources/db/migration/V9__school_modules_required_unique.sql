@@ -0,0 +1,9 @@
+-- One row per (visit, module): selected modules are written with a multi-row
+-- INSERT ... ON DUPLICATE KEY UPDATE keyed on this. Older duplicates keep their newest row.
+DELETE m FROM school_modules_required m
+    JOIN school_modules_required newer
+      ON newer.school_visited_id = m.school_visited_id
+     AND newer.module_id = m.module_id
+     AND newer.id > m.id;
+ALTER TABLE school_modules_required
+    ADD UNIQUE KEY uk_school_modules_required_visit_module (school_visited_id, module_id);
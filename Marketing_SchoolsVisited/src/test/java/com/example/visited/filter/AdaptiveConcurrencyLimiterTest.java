@@ -0,0 +1,141 @@
+package com.example.visited.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+	private static final long FAST = 100;
+	private static final long SLOW = 250;
+
+	@Test
+	void requestsAboveTheLimitQueueThenGetTheFreedSlot() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4, 1,
+				TimeUnit.SECONDS.toNanos(10), 2.0);
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+
+		CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> acquire(limiter));
+		awaitWaiting(limiter, 1);
+		// The queue holds one: the next request is shed straight away
+		assertFalse(limiter.tryAcquire());
+
+		limiter.release("/a", FAST, false);
+		assertTrue(queued.get(5, TimeUnit.SECONDS));
+		assertEquals(2, limiter.inFlight());
+		assertEquals(0, limiter.waiting());
+	}
+
+	@Test
+	void aQueuedRequestIsShedAfterMaxWait() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 5,
+				TimeUnit.MILLISECONDS.toNanos(50), 2.0);
+		assertTrue(limiter.tryAcquire());
+		long start = System.nanoTime();
+		assertFalse(limiter.tryAcquire());
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(0, limiter.waiting());
+		assertEquals(1, limiter.inFlight());
+	}
+
+	@Test
+	void limitGrowsAdditivelyOnlyWhileUsedAndStopsAtMax() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 3, 0, 0, 2.0);
+		cycle(limiter, "/a", FAST, false);
+		assertEquals(2, limiter.limit());
+
+		// One request at a time against a limit of 2.5 says nothing about more capacity
+		for (int i = 0; i < 5; i++) {
+			cycle(limiter, "/a", FAST, false);
+		}
+		assertEquals(2, limiter.limit());
+
+		// Two at once do: +1/limit per fast sample taken at that use
+		fill(limiter, 2, "/a", FAST);
+		assertEquals(2, limiter.limit());
+		fill(limiter, 2, "/a", FAST);
+		assertEquals(3, limiter.limit());
+		fill(limiter, 3, "/a", FAST);
+		assertEquals(3, limiter.limit());
+	}
+
+	@Test
+	void slowOrFailedSamplesCutTheLimitDownToMin() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 10, 0, 0, 2.0);
+		cycle(limiter, "/a", FAST, false);
+		assertEquals(10, limiter.limit());
+
+		cycle(limiter, "/a", SLOW, false);
+		assertEquals(9, limiter.limit());
+		cycle(limiter, "/a", FAST, true);
+		assertEquals(8, limiter.limit());
+		for (int i = 0; i < 30; i++) {
+			cycle(limiter, "/a", SLOW, true);
+		}
+		assertEquals(2, limiter.limit());
+	}
+
+	@Test
+	void eachRouteIsJudgedAgainstItsOwnNoLoadLatency() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 10, 0, 0, 2.0);
+		cycle(limiter, "/admin/school-visits", FAST, false);
+
+		// A route that is always ten times slower is normal for that route
+		for (int i = 0; i < 10; i++) {
+			cycle(limiter, "/admin/accepted-orders", FAST * 10, false);
+		}
+		assertEquals(10, limiter.limit());
+
+		// The same latency on the cheap route is overload
+		cycle(limiter, "/admin/school-visits", FAST * 10, false);
+		assertEquals(9, limiter.limit());
+	}
+
+	@Test
+	void rejectsLimitsOutOfOrder() {
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(1, 0, 4, 0, 0, 2.0));
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(5, 1, 4, 0, 0, 2.0));
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(2, 3, 4, 0, 0, 2.0));
+	}
+
+	private static void cycle(AdaptiveConcurrencyLimiter limiter, String route, long latencyNanos, boolean failed)
+			throws InterruptedException {
+		assertTrue(limiter.tryAcquire());
+		limiter.release(route, latencyNanos, failed);
+	}
+
+	// Takes n slots at once, then releases them all with the same sample
+	private static void fill(AdaptiveConcurrencyLimiter limiter, int n, String route, long latencyNanos)
+			throws InterruptedException {
+		for (int i = 0; i < n; i++) {
+			assertTrue(limiter.tryAcquire());
+		}
+		for (int i = 0; i < n; i++) {
+			limiter.release(route, latencyNanos, false);
+		}
+	}
+
+	private static boolean acquire(AdaptiveConcurrencyLimiter limiter) {
+		try {
+			return limiter.tryAcquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static void awaitWaiting(AdaptiveConcurrencyLimiter limiter, int waiting) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (limiter.waiting() < waiting) {
+			assertTrue(System.nanoTime() < deadline, "request never queued");
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.visited.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.visited.entitys.User.Role;
+
+class RoutePolicyTest {
+
+	private final RoutePolicy policy = new RoutePolicy(List.of(
+			RoutePolicy.Rule.publicRoute("/auth/login"),
+			RoutePolicy.Rule.publicRoute("/health/**"),
+			RoutePolicy.Rule.roles("/admin/**", "admin", Role.ADMIN),
+			RoutePolicy.Rule.roles("/api/**", "api", Role.ADMIN, Role.MARKETING),
+			RoutePolicy.Rule.publicRoute("/admin/modules").forMethod("GET")
+	), RoutePolicy.Rule.authenticated("/**"));
+
+	@Test
+	void exactMatchBeatsPrefixAndMethodRuleBeatsAnyMethod() {
+		assertTrue(policy.resolve("GET", "/admin/modules").isPublic());
+		assertEquals("admin", policy.resolve("POST", "/admin/modules").denyMessage());
+		assertEquals("admin", policy.resolve("GET", "/admin/modules/3").denyMessage());
+	}
+
+	@Test
+	void prefixRulesOnlyMatchOnSegmentBoundaries() {
+		assertEquals("admin", policy.resolve("GET", "/admin").denyMessage());
+		assertEquals("admin", policy.resolve("GET", "/admin/").denyMessage());
+		assertFalse(policy.resolve("GET", "/administrator").isPublic());
+		assertEquals(null, policy.resolve("GET", "/administrator").denyMessage());
+		assertTrue(policy.resolve("GET", "/health/live").isPublic());
+		assertFalse(policy.resolve("GET", "/auth/login/extra").isPublic());
+	}
+
+	@Test
+	void rolesAreEnforcedPerRule() {
+		assertFalse(policy.resolve("GET", "/admin/profile").permits(Role.MARKETING));
+		assertTrue(policy.resolve("GET", "/api/marketing/profile").permits(Role.MARKETING));
+		assertTrue(policy.resolve("GET", "/uploads/marketing/a.png").permits(Role.MARKETING));
+	}
+
+	// Same decisions as the previous startsWith/equals checks over 10k synthetic paths. Bare "/admin"
+	// and "/api" are left out on purpose: the subtree rules now cover them too (no handler exists there)
+	@Test
+	void agreesWithLegacyChecksOnSyntheticPaths() {
+		RoutePolicy production = new RoutePolicy(List.of(
+				RoutePolicy.Rule.publicRoute("/auth/login"),
+				RoutePolicy.Rule.publicRoute("/health/**"),
+				RoutePolicy.Rule.roles("/admin/**", "admin", Role.ADMIN),
+				RoutePolicy.Rule.roles("/api/**", "api", Role.ADMIN, Role.MARKETING)
+		), RoutePolicy.Rule.authenticated("/**"));
+
+		String[] roots = {"/admin", "/api", "/auth", "/health", "/uploads", "/adminx", "/apis"};
+		String[] segments = {"login", "marketing", "modules", "school-visits", "profile", "12", "live"};
+		Random random = new Random(42);
+		for (int i = 0; i < 10_000; i++) {
+			StringBuilder path = new StringBuilder(roots[random.nextInt(roots.length)]);
+			int depth = 1 + random.nextInt(3);
+			for (int d = 0; d < depth; d++) {
+				path.append('/').append(segments[random.nextInt(segments.length)]);
+			}
+			String uri = path.toString();
+			RoutePolicy.Rule rule = production.resolve("GET", uri);
+
+			boolean legacyPublic = uri.equals("/auth/login") || uri.startsWith("/health");
+			assertEquals(legacyPublic, rule.isPublic(), uri);
+			if (!legacyPublic) {
+				for (Role role : Role.values()) {
+					boolean legacyAllowed = !(uri.startsWith("/admin/") && role != Role.ADMIN)
+							&& !(uri.startsWith("/api/") && role != Role.ADMIN && role != Role.MARKETING);
+					assertEquals(legacyAllowed, rule.permits(role), uri + " " + role);
+				}
+			}
+		}
+	}
+}
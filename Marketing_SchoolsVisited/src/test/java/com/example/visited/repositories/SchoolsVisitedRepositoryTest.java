@@ -0,0 +1,173 @@
+package com.example.visited.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import com.example.visited.DTO.VisitCursor;
+import com.example.visited.DTO.VisitDetail;
+import com.example.visited.DTO.VisitKey;
+import com.example.visited.DTO.VisitSummary;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class SchoolsVisitedRepositoryTest {
+
+	private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private SchoolsVisitedRepository schoolsVisitedRepository;
+
+	private User user;
+	private User otherUser;
+
+	@BeforeEach
+	void setUp() {
+		user = persistUser("marketing1");
+		otherUser = persistUser("marketing2");
+	}
+
+	@Test
+	void walkingPagesReturnsEveryVisitOnceNewestFirst() {
+		// Several visits share a created_at, so the id tie-breaker decides their order
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 11; i++) {
+			expected.add(persistVisit(user, BASE.plusMinutes(i / 3), SchoolVisited.VisitStatus.PENDING).getId());
+		}
+		persistVisit(otherUser, BASE.plusMinutes(1), SchoolVisited.VisitStatus.PENDING);
+		entityManager.flush();
+		entityManager.clear();
+
+		List<Integer> seen = new ArrayList<>();
+		VisitCursor cursor = null;
+		int pages = 0;
+		do {
+			List<VisitKey> page = cursor == null
+					? schoolsVisitedRepository.findPageByUser(user.getUserId(), PageRequest.of(0, 4))
+					: schoolsVisitedRepository.findPageByUserAfter(user.getUserId(), cursor.createdAt(), cursor.id(),
+							PageRequest.of(0, 4));
+			page.forEach(k -> seen.add(k.id()));
+			VisitKey last = page.isEmpty() ? null : page.get(page.size() - 1);
+			cursor = page.size() < 4 ? null : VisitCursor.decode(new VisitCursor(last.createdAt(), last.id()).encode());
+			pages++;
+		} while (cursor != null);
+
+		expected.sort((a, b) -> Integer.compare(b, a));
+		assertEquals(expected, seen);
+		assertEquals(3, pages);
+	}
+
+	@Test
+	void statusPagesOnlyContainThatStatus() {
+		for (int i = 0; i < 5; i++) {
+			persistVisit(user, BASE.plusMinutes(i),
+					i % 2 == 0 ? SchoolVisited.VisitStatus.ACCEPTED : SchoolVisited.VisitStatus.PENDING);
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		List<VisitKey> first = schoolsVisitedRepository.findPageByStatus(SchoolVisited.VisitStatus.ACCEPTED,
+				PageRequest.of(0, 2));
+		assertEquals(2, first.size());
+		VisitKey last = first.get(1);
+		List<VisitKey> rest = schoolsVisitedRepository.findPageByStatusAfter(SchoolVisited.VisitStatus.ACCEPTED,
+				last.createdAt(), last.id(), PageRequest.of(0, 2));
+		assertEquals(1, rest.size());
+		assertTrue(rest.get(0).createdAt().isBefore(last.createdAt()));
+
+		List<Integer> ids = new ArrayList<>();
+		first.forEach(k -> ids.add(k.id()));
+		ids.add(rest.get(0).id());
+		List<VisitSummary> summaries = schoolsVisitedRepository.findSummariesByIdIn(ids);
+		assertEquals(ids, summaries.stream().map(VisitSummary::id).toList());
+		assertTrue(summaries.stream().allMatch(v -> v.status() == SchoolVisited.VisitStatus.ACCEPTED));
+	}
+
+	@Test
+	void detailProjectionReadsColumnsWithoutManagingEntities() {
+		SchoolVisited visit = persistVisit(user, BASE, SchoolVisited.VisitStatus.REJECTED);
+		visit.setLocationCity("Pune");
+		visit.setPaymentTerms("50/50");
+		visit.setRejectionReason("Budget");
+		entityManager.flush();
+		entityManager.clear();
+
+		List<VisitDetail> details = schoolsVisitedRepository.findDetailsByIdIn(List.of(visit.getId()));
+		assertEquals(1, details.size());
+		VisitDetail detail = details.get(0);
+		assertEquals("Pune", detail.locationCity());
+		assertEquals(BASE, detail.createdAt());
+		assertTrue(detail.selectedModules().isEmpty());
+		// Nothing was put into the persistence context, so there is nothing to dirty-check at flush
+		assertEquals(0, entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount());
+
+		// Owner view hides payment terms until accepted, keeps the rejection reason
+		VisitDetail owner = detail.forOwner();
+		assertNull(owner.paymentTerms());
+		assertEquals("Budget", owner.rejectionReason());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void detailJsonKeepsTheKeysEachListingUsedToWrite() {
+		SchoolVisited visit = persistVisit(user, BASE, SchoolVisited.VisitStatus.REJECTED);
+		visit.setRejectionReason("Budget");
+		entityManager.flush();
+		entityManager.clear();
+		VisitDetail detail = schoolsVisitedRepository.findDetailsByIdIn(List.of(visit.getId())).get(0);
+		ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+		// Admin: payment fields written even when empty, plus the old "rejectedreason" key
+		Map<String, Object> admin = mapper.convertValue(detail, Map.class);
+		assertTrue(admin.containsKey("paymentTerms"));
+		assertNull(admin.get("paymentTerms"));
+		assertEquals("Budget", admin.get("rejectedreason"));
+		assertEquals("Budget", admin.get("rejectionReason"));
+		assertFalse(admin.containsKey("ownerView"));
+
+		// Owner: payment fields only once accepted, no "rejectedreason"
+		Map<String, Object> owner = mapper.convertValue(detail.forOwner(), Map.class);
+		assertFalse(owner.containsKey("paymentTerms"));
+		assertFalse(owner.containsKey("rejectedreason"));
+		assertEquals("Budget", owner.get("rejectionReason"));
+	}
+
+	private User persistUser(String username) {
+		User u = new User();
+		u.setUsername(username);
+		u.setPasswordHash("x");
+		u.setRole(User.Role.MARKETING);
+		u.setStatus(User.Status.Approved);
+		return entityManager.persist(u);
+	}
+
+	private SchoolVisited persistVisit(User owner, LocalDateTime createdAt, SchoolVisited.VisitStatus status) {
+		SchoolVisited visit = new SchoolVisited();
+		visit.setSchoolName("School");
+		visit.setUser(owner);
+		visit.setStatus(status);
+		entityManager.persist(visit);
+		// @PrePersist stamps now(); overwrite to control the ordering
+		visit.setCreatedAt(createdAt);
+		return visit;
+	}
+}
@@ -0,0 +1,235 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.visited.DTO.SessionTokens;
+import com.example.visited.entitys.JWT;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.JWTTokenRepository;
+import com.example.visited.repositories.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// AuthService is built by hand, so its @Transactional methods run inside transactions opened here;
+// each commits or rolls back for real
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthServiceTest {
+
+	private static final String SECRET = "test-secret-test-secret-test-secret-test-secret-test-secret-0123456789";
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private JWTTokenRepository jwtTokenRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate tx;
+	private TokenRevocationStore revocationStore;
+	private LoginExecutor loginExecutor;
+	private AuthService authService;
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		tx = new TransactionTemplate(transactionManager);
+		revocationStore = new TokenRevocationStore(jwtTokenRepository);
+		loginExecutor = new LoginExecutor(new SimpleMeterRegistry(), 1, 4);
+		authService = newAuthService(30);
+		user = new User();
+		user.setUsername("marketing1");
+		user.setPasswordHash("x");
+		user.setRole(User.Role.MARKETING);
+		user.setStatus(User.Status.Approved);
+		userRepository.save(user);
+	}
+
+	@AfterEach
+	void tearDown() {
+		loginExecutor.shutdown();
+		jwtTokenRepository.deleteAll();
+		userRepository.deleteAll();
+	}
+
+	@Test
+	void revocationIsAppliedInMemoryOnlyAfterCommit() {
+		SessionTokens tokens = inTx(() -> authService.createSession(user, "laptop", "10.0.0.1"));
+		String sessionId = sessionId(tokens);
+		assertTrue(authService.authenticateToken(tokens.accessToken()).isPresent());
+
+		rollingBack(() -> authService.revokeSession(user.getUserId(), sessionId));
+		assertFalse(revocationStore.isRevoked(sessionId));
+		assertTrue(authService.authenticateToken(tokens.accessToken()).isPresent());
+		assertNull(inTx(() -> jwtTokenRepository.findByJtiForUpdate(sessionId).orElseThrow().getRevokedAt()));
+
+		assertTrue(inTx(() -> authService.revokeSession(user.getUserId(), sessionId)));
+		assertTrue(revocationStore.isRevoked(sessionId));
+		assertFalse(authService.authenticateToken(tokens.accessToken()).isPresent());
+	}
+
+	@Test
+	void revokingAllTokensInARolledBackTransactionKeepsThemValid() {
+		SessionTokens phone = inTx(() -> authService.createSession(user, "phone", null));
+		SessionTokens laptop = inTx(() -> authService.createSession(user, "laptop", null));
+		assertTrue(authService.authenticateToken(phone.accessToken()).isPresent());
+
+		// e.g. deleteMarketingUser failing after it revoked the tokens
+		rollingBack(() -> {
+			authService.revokeAllTokens(user);
+			return null;
+		});
+		assertTrue(authService.authenticateToken(phone.accessToken()).isPresent());
+		assertTrue(authService.authenticateToken(laptop.accessToken()).isPresent());
+
+		inTx(() -> {
+			authService.revokeAllTokens(user);
+			return null;
+		});
+		assertFalse(authService.authenticateToken(phone.accessToken()).isPresent());
+		assertFalse(authService.authenticateToken(laptop.accessToken()).isPresent());
+	}
+
+	@Test
+	void refreshRotatesTheRefreshTokenWithinTheSameSession() {
+		SessionTokens login = inTx(() -> authService.createSession(user, "laptop", null));
+
+		SessionTokens rotated = inTx(() -> authService.refresh(login.refreshToken())).orElseThrow();
+		assertEquals(sessionId(login), sessionId(rotated));
+		assertNotEquals(login.refreshToken(), rotated.refreshToken());
+		assertEquals(sessionId(login), authService.authenticateToken(rotated.accessToken()).orElseThrow().tokenId());
+
+		// The rotated token is the one that works next
+		assertTrue(inTx(() -> authService.refresh(rotated.refreshToken())).isPresent());
+		JWT session = session(sessionId(login));
+		assertNull(session.getRevokedAt());
+		assertNotNull(session.getRefreshedAt());
+	}
+
+	@Test
+	void replayInsideTheGraceWindowIsRefusedButKeepsTheSession() {
+		SessionTokens login = inTx(() -> authService.createSession(user, "laptop", null));
+		SessionTokens rotated = inTx(() -> authService.refresh(login.refreshToken())).orElseThrow();
+
+		// A second tab refreshing with the token the first tab just rotated
+		assertTrue(inTx(() -> authService.refresh(login.refreshToken())).isEmpty());
+		assertNull(session(sessionId(login)).getRevokedAt());
+		assertFalse(revocationStore.isRevoked(sessionId(login)));
+		assertTrue(authService.authenticateToken(rotated.accessToken()).isPresent());
+		assertTrue(inTx(() -> authService.refresh(rotated.refreshToken())).isPresent());
+	}
+
+	@Test
+	void replayOutsideTheGraceWindowRevokesTheSession() {
+		authService = newAuthService(0);
+		SessionTokens login = inTx(() -> authService.createSession(user, "laptop", null));
+		SessionTokens rotated = inTx(() -> authService.refresh(login.refreshToken())).orElseThrow();
+		assertTrue(authService.authenticateToken(rotated.accessToken()).isPresent());
+
+		// The old token turning up again means it leaked: the whole session ends
+		assertTrue(inTx(() -> authService.refresh(login.refreshToken())).isEmpty());
+		assertNotNull(session(sessionId(login)).getRevokedAt());
+		assertFalse(authService.authenticateToken(rotated.accessToken()).isPresent());
+		assertTrue(inTx(() -> authService.refresh(rotated.refreshToken())).isEmpty());
+	}
+
+	@Test
+	void expiredRevokedAndMalformedSessionsCannotRefresh() {
+		SessionTokens expired = inTx(() -> authService.createSession(user, "phone", null));
+		inTx(() -> {
+			JWT row = jwtTokenRepository.findByJtiForUpdate(sessionId(expired)).orElseThrow();
+			row.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+			return null;
+		});
+		assertTrue(inTx(() -> authService.refresh(expired.refreshToken())).isEmpty());
+
+		SessionTokens revoked = inTx(() -> authService.createSession(user, "laptop", null));
+		assertTrue(inTx(() -> authService.revokeSession(user.getUserId(), sessionId(revoked))));
+		assertTrue(inTx(() -> authService.refresh(revoked.refreshToken())).isEmpty());
+
+		Optional<SessionTokens> none = inTx(() -> authService.refresh("no-dot"));
+		assertTrue(none.isEmpty());
+		assertTrue(inTx(() -> authService.refresh(null)).isEmpty());
+		assertTrue(inTx(() -> authService.refresh(sessionId(revoked) + ".wrong")).isEmpty());
+	}
+
+	@Test
+	void loginUpgradesALowerCostHashAndRejectsBadCredentials() {
+		user.setPasswordHash(new BCryptPasswordEncoder(4).encode("secret"));
+		userRepository.save(user);
+		authService = newAuthService(30, new PasswordHasher(5, 250, 4, 4));
+
+		CompletionException wrong = assertThrows(CompletionException.class,
+				() -> authService.authenticate("marketing1", "guess").join());
+		assertInstanceOf(InvalidCredentialsException.class, wrong.getCause());
+		CompletionException unknown = assertThrows(CompletionException.class,
+				() -> authService.authenticate("nobody", "secret").join());
+		assertInstanceOf(InvalidCredentialsException.class, unknown.getCause());
+		assertTrue(userRepository.findByUsername("marketing1").getPasswordHash().startsWith("$2a$04$"));
+
+		assertEquals("marketing1", authService.authenticate("marketing1", "secret").join().getUsername());
+		String upgraded = userRepository.findByUsername("marketing1").getPasswordHash();
+		assertTrue(upgraded.startsWith("$2a$05$"));
+
+		// A node pinned lower does not downgrade it again
+		authService = newAuthService(30, new PasswordHasher(4, 250, 4, 4));
+		authService.authenticate("marketing1", "secret").join();
+		assertEquals(upgraded, userRepository.findByUsername("marketing1").getPasswordHash());
+	}
+
+	AuthService newAuthService(long graceSeconds) {
+		return newAuthService(graceSeconds, new PasswordHasher(4, 250, 4, 4));
+	}
+
+	AuthService newAuthService(long graceSeconds, PasswordHasher passwordHasher) {
+		UserPrincipalCache principals = new UserPrincipalCache(userRepository, new SimpleMeterRegistry(), 30, 100);
+		return new AuthService(userRepository, jwtTokenRepository, revocationStore, principals,
+				passwordHasher, loginExecutor, Runnable::run, SECRET, 900_000, 1_209_600_000, graceSeconds,
+				100);
+	}
+
+	private <T> T inTx(Supplier<T> work) {
+		return tx.execute(status -> work.get());
+	}
+
+	private <T> T rollingBack(Supplier<T> work) {
+		return tx.execute(status -> {
+			T result = work.get();
+			status.setRollbackOnly();
+			return result;
+		});
+	}
+
+	private JWT session(String sessionId) {
+		return inTx(() -> jwtTokenRepository.findByJtiForUpdate(sessionId).orElseThrow());
+	}
+
+	private static String sessionId(SessionTokens tokens) {
+		return tokens.refreshToken().substring(0, tokens.refreshToken().indexOf('.'));
+	}
+}
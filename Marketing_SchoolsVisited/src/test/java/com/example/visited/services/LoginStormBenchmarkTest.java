@@ -0,0 +1,125 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.visited.DTO.SessionTokens;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.JWTTokenRepository;
+import com.example.visited.repositories.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Login storm: N sessions renewed with a password login (BCrypt at the production minimum cost, plus a
+// new session row) against the same N renewed through /auth/refresh. Reports process CPU time, so the
+// login executor's threads count too. Not part of the normal build:
+// mvn test -Dtest=LoginStormBenchmarkTest -Dbenchmark=true [-Dbenchmark.sessions=200]
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LoginStormBenchmarkTest {
+
+	private static final String SECRET = "test-secret-test-secret-test-secret-test-secret-test-secret-0123456789";
+	private static final String PASSWORD = "correct horse battery staple";
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private JWTTokenRepository jwtTokenRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate tx;
+	private LoginExecutor loginExecutor;
+	private AuthService authService;
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		tx = new TransactionTemplate(transactionManager);
+		loginExecutor = new LoginExecutor(new SimpleMeterRegistry(), 0, 1024);
+		PasswordHasher hasher = new PasswordHasher(10, 250, 10, 10);
+		authService = new AuthService(userRepository, jwtTokenRepository, new TokenRevocationStore(jwtTokenRepository),
+				new UserPrincipalCache(userRepository, new SimpleMeterRegistry(), 30, 100), hasher, loginExecutor,
+				Runnable::run, SECRET, 900_000, 1_209_600_000, 30, 100);
+		user = new User();
+		user.setUsername("marketing1");
+		user.setPasswordHash(hasher.encode(PASSWORD));
+		user.setRole(User.Role.MARKETING);
+		user.setStatus(User.Status.Approved);
+		userRepository.save(user);
+	}
+
+	@AfterEach
+	void tearDown() {
+		loginExecutor.shutdown();
+		jwtTokenRepository.deleteAll();
+		userRepository.deleteAll();
+	}
+
+	@Test
+	void loginsAgainstRefreshes() {
+		int sessions = Integer.getInteger("benchmark.sessions", 200);
+		// Warm-up so neither side pays for class loading and JIT
+		List<SessionTokens> warm = logins(20);
+		refreshes(warm);
+
+		long start = cpuNanos();
+		List<SessionTokens> tokens = logins(sessions);
+		long loginCpu = cpuNanos() - start;
+
+		start = cpuNanos();
+		int renewed = refreshes(tokens);
+		long refreshCpu = cpuNanos() - start;
+
+		assertEquals(sessions, renewed);
+		System.out.printf("login storm, %d sessions: logins %d ms CPU (%.2f ms each), refreshes %d ms CPU"
+				+ " (%.2f ms each), %.1fx%n", sessions, loginCpu / 1_000_000, loginCpu / 1e6 / sessions,
+				refreshCpu / 1_000_000, refreshCpu / 1e6 / sessions, (double) loginCpu / refreshCpu);
+	}
+
+	private List<SessionTokens> logins(int count) {
+		List<SessionTokens> tokens = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			User authenticated = authService.authenticate(user.getUsername(), PASSWORD).join();
+			tokens.add(inTx(() -> authService.createSession(authenticated, "bench", "10.0.0.1")));
+		}
+		return tokens;
+	}
+
+	private int refreshes(List<SessionTokens> tokens) {
+		int renewed = 0;
+		for (SessionTokens token : tokens) {
+			if (inTx(() -> authService.refresh(token.refreshToken())).isPresent()) {
+				renewed++;
+			}
+		}
+		return renewed;
+	}
+
+	private <T> T inTx(Supplier<T> work) {
+		return tx.execute(status -> work.get());
+	}
+
+	private static long cpuNanos() {
+		return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+				.getProcessCpuTime();
+	}
+}
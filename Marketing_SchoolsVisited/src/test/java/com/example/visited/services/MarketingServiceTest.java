@@ -0,0 +1,208 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.visited.DTO.VisitStatsFacts;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.MarketingTeamRepository;
+import com.example.visited.repositories.ModulesRepository;
+import com.example.visited.repositories.SchoolModuleRequiredRepository;
+import com.example.visited.repositories.SchoolsVisitedRepository;
+import com.example.visited.repositories.UserRepository;
+
+// MySQL mode for the visit_stats upserts
+@DataJpaTest(properties = {"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.datasource.url=jdbc:h2:mem:marketing;MODE=MySQL;DB_CLOSE_DELAY=-1"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MarketingServiceTest {
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private SchoolsVisitedRepository schoolsVisitedRepository;
+
+	@Autowired
+	private ModulesRepository modulesRepository;
+
+	@Autowired
+	private SchoolModuleRequiredRepository schoolModuleRequiredRepository;
+
+	@Autowired
+	private MarketingTeamRepository marketingTeamRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private MarketingService marketingService;
+	private VisitStatsService visitStatsService;
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		VisitStatsServiceTest.createTable(new JdbcTemplate(dataSource));
+		visitStatsService = new VisitStatsService(dataSource);
+		ModuleCatalog moduleCatalog = new ModuleCatalog(modulesRepository,
+				new CacheGenerations(dataSource, transactionManager), transactionManager);
+		marketingService = new MarketingService(schoolsVisitedRepository, schoolModuleRequiredRepository,
+				marketingTeamRepository, userRepository,
+				new VisitModuleLoader(schoolModuleRequiredRepository, moduleCatalog, 1000),
+				new VisitModuleWriter(dataSource, 200),
+				visitStatsService, event -> {
+				}, 50, 200);
+		user = new User();
+		user.setUsername("marketing1");
+		user.setPasswordHash("x");
+		user.setRole(User.Role.MARKETING);
+		user.setStatus(User.Status.Approved);
+		entityManager.persist(user);
+	}
+
+	@Test
+	void statusOnlyMovesAlongAllowedTransitions() {
+		Integer id = persistVisit(SchoolVisited.VisitStatus.PENDING);
+
+		Map<String, Object> accepted = marketingService.changeVisitStatus(id, "accepted", Map.of(
+				"initialPayment", "5000", "paymentTerms", " 50/50 ", "costPerMember", 120));
+		assertEquals(LocalDate.now(), accepted.get("orderBookingDate"));
+		entityManager.clear();
+		SchoolVisited visit = entityManager.find(SchoolVisited.class, id);
+		assertEquals(SchoolVisited.VisitStatus.ACCEPTED, visit.getStatus());
+		assertEquals("50/50", visit.getPaymentTerms());
+		assertEquals(0, new BigDecimal("5000").compareTo(visit.getInitialPayment()));
+		assertEquals(1L, visit.getVersion());
+
+		// A second decision on the same visit loses instead of overwriting the first
+		assertThrows(IllegalStateException.class, () -> marketingService.changeVisitStatus(id, "REJECTED",
+				Map.of("rejectionReason", "Budget")));
+		assertThrows(IllegalStateException.class, () -> marketingService.changeVisitStatus(id, "PENDING", null));
+
+		Integer rejectedId = persistVisit(SchoolVisited.VisitStatus.REJECTED);
+		marketingService.changeVisitStatus(rejectedId, "PENDING", null);
+		assertThrows(IllegalStateException.class, () -> marketingService.changeVisitStatus(rejectedId, "PENDING", null));
+		marketingService.changeVisitStatus(rejectedId, "REJECTED", Map.of("rejectionReason", " Too costly "));
+		entityManager.clear();
+		assertEquals("Too costly", entityManager.find(SchoolVisited.class, rejectedId).getRejectionReason());
+
+		// Bad input is still a 400, checked before anything is written
+		assertThrows(IllegalArgumentException.class, () -> marketingService.changeVisitStatus(-1, "REJECTED",
+				Map.of("rejectionReason", "Budget")));
+		assertThrows(IllegalArgumentException.class, () -> marketingService.changeVisitStatus(rejectedId, "REJECTED",
+				Map.of()));
+
+		// Every transition moved the visit between visit_stats groups
+		entityManager.flush();
+		assertTrue(visitStatsService.rebuild(true).consistent());
+	}
+
+	@Test
+	void editsMadeAgainstAnOldVersionAreRefused() {
+		Integer id = persistVisit(SchoolVisited.VisitStatus.PENDING);
+
+		Map<String, Object> edit = new HashMap<>();
+		edit.put("contactPersonName", "Anita");
+		edit.put("version", 0);
+		Map<String, Object> result = marketingService.updateSchoolVisit(id, edit, user.getUserId());
+		assertEquals(1L, result.get("version"));
+
+		// Another editor still holding version 0
+		edit.put("contactPersonName", "Rahul");
+		assertThrows(ObjectOptimisticLockingFailureException.class,
+				() -> marketingService.adminUpdateSchoolVisit(id, edit));
+
+		// A status change also bumps the version
+		marketingService.changeVisitStatus(id, "REJECTED", Map.of("rejectionReason", "Budget"));
+		entityManager.clear();
+		edit.put("version", "1");
+		assertThrows(ObjectOptimisticLockingFailureException.class,
+				() -> marketingService.updateSchoolVisit(id, edit, user.getUserId()));
+
+		entityManager.clear();
+		edit.put("version", "2");
+		assertNotNull(marketingService.adminUpdateSchoolVisit(id, edit).get("version"));
+		entityManager.clear();
+		assertEquals("Rahul", entityManager.find(SchoolVisited.class, id).getContactPersonName());
+
+		edit.put("version", "two");
+		assertThrows(IllegalArgumentException.class, () -> marketingService.adminUpdateSchoolVisit(id, edit));
+	}
+
+	@Test
+	void adminStatusEditsFollowTheSameTransitions() {
+		Integer id = persistVisit(SchoolVisited.VisitStatus.PENDING);
+
+		// Accepting still needs the payment details
+		assertThrows(IllegalArgumentException.class,
+				() -> marketingService.adminUpdateSchoolVisit(id, Map.of("status", "ACCEPTED")));
+
+		Map<String, Object> result = marketingService.adminUpdateSchoolVisit(id, Map.of("status", "accepted",
+				"initialPayment", "5000", "paymentTerms", "50/50", "costPerMember", 120, "contactPersonName", "Anita"));
+		assertEquals("ACCEPTED", result.get("status"));
+		entityManager.clear();
+		SchoolVisited visit = entityManager.find(SchoolVisited.class, id);
+		assertEquals(SchoolVisited.VisitStatus.ACCEPTED, visit.getStatus());
+		assertEquals("Anita", visit.getContactPersonName());
+		assertEquals(LocalDate.now(), visit.getOrderBookingDate());
+		assertEquals(visit.getVersion(), result.get("version"));
+
+		// ACCEPTED is final for admins too; re-sending the current status is not a transition
+		assertThrows(IllegalStateException.class,
+				() -> marketingService.adminUpdateSchoolVisit(id, Map.of("status", "PENDING")));
+		entityManager.clear();
+		marketingService.adminUpdateSchoolVisit(id, Map.of("status", "ACCEPTED", "contactPersonName", "Rahul"));
+
+		entityManager.flush();
+		assertTrue(visitStatsService.rebuild(true).consistent());
+	}
+
+	@Test
+	void adminCityEditsAreTrimmedAndMustFitTheColumn() {
+		Integer id = persistVisit(SchoolVisited.VisitStatus.PENDING);
+
+		marketingService.adminUpdateSchoolVisit(id, Map.of("locationCity", "  Pune "));
+		entityManager.flush();
+		entityManager.clear();
+		assertEquals("Pune", entityManager.find(SchoolVisited.class, id).getLocationCity());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> marketingService.adminUpdateSchoolVisit(id, Map.of("locationCity", "x".repeat(101))));
+	}
+
+	private Integer persistVisit(SchoolVisited.VisitStatus status) {
+		SchoolVisited visit = new SchoolVisited();
+		visit.setSchoolName("School");
+		visit.setUser(user);
+		visit.setStatus(status);
+		entityManager.persist(visit);
+		entityManager.flush();
+		visitStatsService.apply(null, VisitStatsFacts.of(visit));
+		return visit.getId();
+	}
+}
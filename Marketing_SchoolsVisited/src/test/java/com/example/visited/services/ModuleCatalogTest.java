@@ -0,0 +1,171 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.visited.DTO.SelectedModule;
+import com.example.visited.entitys.Modules;
+import com.example.visited.entitys.SchoolModuleRequired;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.ModulesRepository;
+import com.example.visited.repositories.SchoolModuleRequiredRepository;
+import com.example.visited.repositories.SchoolsVisitedRepository;
+import com.example.visited.repositories.UserRepository;
+
+// The catalog reads in its own transaction, so the data here is committed rather than left in a
+// test transaction it could not see
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ModuleCatalogTest {
+
+	@Autowired
+	private ModulesRepository modulesRepository;
+
+	@Autowired
+	private SchoolModuleRequiredRepository schoolModuleRequiredRepository;
+
+	@Autowired
+	private SchoolsVisitedRepository schoolsVisitedRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private ModuleCatalog catalog;
+	private Modules fees;
+	private Modules transport;
+
+	@BeforeEach
+	void setUp() {
+		fees = saveModule("Fees", true);
+		transport = saveModule("Transport", false);
+		RevenueAnalyticsServiceTest.createGenerationTable(new JdbcTemplate(dataSource));
+		catalog = newNode();
+	}
+
+	@AfterEach
+	void tearDown() {
+		schoolModuleRequiredRepository.deleteAll();
+		schoolsVisitedRepository.deleteAll();
+		userRepository.deleteAll();
+		modulesRepository.deleteAll();
+	}
+
+	@Test
+	void snapshotHasBothViewsAndStrongETags() {
+		ModuleCatalog.Snapshot snapshot = catalog.snapshot();
+		assertEquals(List.of("Fees", "Transport"), snapshot.all().stream().map(m -> m.get("moduleName")).toList());
+		assertEquals(false, snapshot.all().get(1).get("isActive"));
+		// The visit form only offers active modules and does not get the flag
+		assertEquals(1, snapshot.active().size());
+		assertFalse(snapshot.active().get(0).containsKey("isActive"));
+		assertEquals("Transport", snapshot.name(transport.getId()));
+
+		assertTrue(snapshot.allETag().startsWith("\"") && snapshot.allETag().endsWith("\""));
+		assertNotEquals(snapshot.allETag(), snapshot.activeETag());
+		// Same content, same tag
+		assertEquals(snapshot.allETag(), catalog.reload().allETag());
+
+		assertTrue(ModuleCatalog.matches(snapshot.allETag(), snapshot.allETag()));
+		assertTrue(ModuleCatalog.matches("\"stale\", W/" + snapshot.allETag(), snapshot.allETag()));
+		assertTrue(ModuleCatalog.matches("*", snapshot.allETag()));
+		assertFalse(ModuleCatalog.matches("\"stale\"", snapshot.allETag()));
+		assertFalse(ModuleCatalog.matches(null, snapshot.allETag()));
+	}
+
+	@Test
+	void servedFromMemoryUntilAModuleChanges() {
+		ModuleCatalog.Snapshot before = catalog.snapshot();
+
+		// Written behind the catalog's back: nothing is re-read
+		fees.setModuleName("Fee Collection");
+		modulesRepository.save(fees);
+		assertSame(before, catalog.snapshot());
+
+		catalog.onModuleChanged(new ModuleChangedEvent(fees.getId()));
+		ModuleCatalog.Snapshot after = catalog.snapshot();
+		assertEquals("Fee Collection", after.name(fees.getId()));
+		assertNotEquals(before.allETag(), after.allETag());
+		assertNotEquals(before.activeETag(), after.activeETag());
+	}
+
+	@Test
+	void aChangeOnAnotherNodeIsPickedUpAtTheNextPoll() {
+		ModuleCatalog otherNode = newNode();
+		catalog.syncGeneration();
+		ModuleCatalog.Snapshot before = catalog.snapshot();
+		// Nothing changed: the poll leaves the snapshot alone
+		catalog.syncGeneration();
+		assertSame(before, catalog.snapshot());
+
+		transport.setIsActive(true);
+		modulesRepository.save(transport);
+		otherNode.onModuleChanged(new ModuleChangedEvent(transport.getId()));
+		assertSame(before, catalog.snapshot());
+
+		catalog.syncGeneration();
+		assertEquals(2, catalog.snapshot().active().size());
+		assertNotEquals(before.activeETag(), catalog.snapshot().activeETag());
+	}
+
+	@Test
+	void listingsGetModuleNamesFromTheCatalog() {
+		User user = new User();
+		user.setUsername("marketing1");
+		user.setPasswordHash("x");
+		user.setRole(User.Role.MARKETING);
+		user.setStatus(User.Status.Approved);
+		userRepository.save(user);
+		SchoolVisited visit = new SchoolVisited();
+		visit.setSchoolName("School");
+		visit.setUser(user);
+		schoolsVisitedRepository.save(visit);
+		for (Modules module : List.of(fees, transport)) {
+			SchoolModuleRequired row = new SchoolModuleRequired();
+			row.setSchoolVisited(visit);
+			row.setModuleId(module.getId());
+			row.setIsSelected(SchoolModuleRequired.IsSelected.Yes);
+			schoolModuleRequiredRepository.save(row);
+		}
+
+		List<SelectedModule> modules = new VisitModuleLoader(schoolModuleRequiredRepository, catalog, 1000)
+				.loadModules(List.of(visit.getId())).get(visit.getId());
+		// Inactive modules keep their name on visits that selected them
+		assertEquals(List.of("Fees", "Transport"), modules.stream().map(SelectedModule::moduleName).toList());
+	}
+
+	private ModuleCatalog newNode() {
+		return new ModuleCatalog(modulesRepository, new CacheGenerations(dataSource, transactionManager),
+				transactionManager);
+	}
+
+	private Modules saveModule(String name, boolean active) {
+		Modules module = new Modules();
+		module.setModuleName(name);
+		module.setIsActive(active);
+		return modulesRepository.save(module);
+	}
+}
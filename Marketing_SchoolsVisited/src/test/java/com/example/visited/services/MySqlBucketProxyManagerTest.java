@@ -0,0 +1,65 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+
+// Two bucket stores on one database behave like two application nodes sharing the limit
+class MySqlBucketProxyManagerTest {
+
+	private DriverManagerDataSource dataSource;
+
+	@BeforeEach
+	void createTable() {
+		dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:ratelimit;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("DROP TABLE IF EXISTS rate_limit_buckets");
+		jdbc.execute("CREATE TABLE rate_limit_buckets (id VARCHAR(255) PRIMARY KEY, state BLOB NULL, "
+				+ "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+	}
+
+	@Test
+	void nodesShareOneBudget() {
+		Bandwidth tenPerHour = Bandwidth.classic(10, Refill.intervally(10, Duration.ofHours(1)));
+		RateLimitBucketStore nodeA = new RateLimitBucketStore(dataSource, "jdbc", "rate_limit_buckets", 0, 0, 24);
+		RateLimitBucketStore nodeB = new RateLimitBucketStore(dataSource, "jdbc", "rate_limit_buckets", 0, 0, 24);
+
+		Bucket a = nodeA.resolve("policy:user:1", tenPerHour);
+		Bucket b = nodeB.resolve("policy:user:1", tenPerHour);
+		int consumed = 0;
+		for (int i = 0; i < 10; i++) {
+			consumed += a.tryConsume(1) ? 1 : 0;
+			consumed += b.tryConsume(1) ? 1 : 0;
+		}
+		assertEquals(10, consumed);
+	}
+
+	@Test
+	void prefetchOvershootIsBoundedPerNode() {
+		Bandwidth tenPerHour = Bandwidth.classic(10, Refill.intervally(10, Duration.ofHours(1)));
+		RateLimitBucketStore nodeA = new RateLimitBucketStore(dataSource, "jdbc", "rate_limit_buckets", 2, 60_000, 24);
+		RateLimitBucketStore nodeB = new RateLimitBucketStore(dataSource, "jdbc", "rate_limit_buckets", 2, 60_000, 24);
+
+		Bucket a = nodeA.resolve("policy:user:2", tenPerHour);
+		Bucket b = nodeB.resolve("policy:user:2", tenPerHour);
+		int consumed = 0;
+		for (int i = 0; i < 20; i++) {
+			consumed += a.tryConsume(1) ? 1 : 0;
+			consumed += b.tryConsume(1) ? 1 : 0;
+		}
+		// At most max-unsynchronized-tokens extra per node
+		assertTrue(consumed >= 10, "consumed " + consumed);
+		assertTrue(consumed <= 14, "consumed " + consumed);
+	}
+}
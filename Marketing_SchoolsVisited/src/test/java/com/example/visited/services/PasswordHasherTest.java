@@ -0,0 +1,50 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// Costs are kept at 4-6 so the hashing stays quick
+class PasswordHasherTest {
+
+	@Test
+	void pinnedCostSkipsCalibration() {
+		PasswordHasher hasher = new PasswordHasher(5, 0, 4, 4);
+		assertEquals(5, hasher.getCost());
+		assertTrue(hasher.encode("secret").startsWith("$2a$05$"));
+		assertTrue(hasher.matches("secret", hasher.encode("secret")));
+	}
+
+	@Test
+	void calibrationStaysWithinMinAndMax() {
+		// No time budget at all still gets the minimum; an unlimited one stops at the maximum
+		assertEquals(4, PasswordHasher.calibrate(0, 4, 6));
+		assertEquals(6, PasswordHasher.calibrate(Long.MAX_VALUE, 4, 6));
+		int calibrated = new PasswordHasher(0, 5, 4, 6).getCost();
+		assertTrue(calibrated >= 4 && calibrated <= 6, "cost " + calibrated);
+	}
+
+	@Test
+	void rejectsAnInvalidCostRange() {
+		assertThrows(IllegalArgumentException.class, () -> new PasswordHasher(0, 250, 3, 10));
+		assertThrows(IllegalArgumentException.class, () -> new PasswordHasher(0, 250, 10, 32));
+		assertThrows(IllegalArgumentException.class, () -> new PasswordHasher(0, 250, 12, 10));
+	}
+
+	@Test
+	void onlyHashesBelowTheCurrentCostNeedARehash() {
+		PasswordHasher hasher = new PasswordHasher(5, 0, 4, 4);
+		assertTrue(hasher.needsRehash(new BCryptPasswordEncoder(4).encode("secret")));
+		assertFalse(hasher.needsRehash(hasher.encode("secret")));
+		// Written by a node that calibrated higher: left alone rather than downgraded
+		assertFalse(hasher.needsRehash(new BCryptPasswordEncoder(6).encode("secret")));
+		assertTrue(hasher.needsRehash("$2b$04$abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopq"));
+
+		assertFalse(hasher.needsRehash(null));
+		assertFalse(hasher.needsRehash("plain-text"));
+	}
+}
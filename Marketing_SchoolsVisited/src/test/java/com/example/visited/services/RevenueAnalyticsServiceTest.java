@@ -0,0 +1,216 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.visited.DTO.RevenueGroup;
+import com.example.visited.DTO.RevenueReport;
+import com.example.visited.entitys.Modules;
+import com.example.visited.entitys.SchoolModuleRequired;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class RevenueAnalyticsServiceTest {
+
+	private static final YearMonth APRIL = YearMonth.of(2024, 4);
+	private static final YearMonth MAY = YearMonth.of(2024, 5);
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private CacheGenerations cacheGenerations;
+	private RevenueAnalyticsService analytics;
+	private User anita;
+	private User rahul;
+	private Modules fees;
+	private Modules transport;
+
+	// cache_generation as created by V15
+	static void createGenerationTable(JdbcTemplate jdbc) {
+		jdbc.execute("CREATE TABLE IF NOT EXISTS cache_generation (name VARCHAR(50) NOT NULL, "
+				+ "generation BIGINT NOT NULL, PRIMARY KEY (name))");
+	}
+
+	@BeforeEach
+	void setUp() {
+		createGenerationTable(new JdbcTemplate(dataSource));
+		cacheGenerations = new CacheGenerations(dataSource, transactionManager);
+		anita = persistUser("anita");
+		rahul = persistUser("rahul");
+		fees = persistModule("Fees");
+		transport = persistModule("Transport");
+
+		// Booked: two in April (one with both modules), one in May; plus a pending visit and an order
+		// outside the range, neither of which counts
+		SchoolVisited big = persistOrder(anita, "Anita S", LocalDate.of(2024, 4, 2), "Yearly", "1000", "50", 100);
+		select(big, fees, SchoolModuleRequired.IsSelected.Yes);
+		select(big, transport, SchoolModuleRequired.IsSelected.Yes);
+		SchoolVisited small = persistOrder(rahul, "Rahul V", LocalDate.of(2024, 4, 30), "Monthly", "200", "10", 20);
+		select(small, fees, SchoolModuleRequired.IsSelected.Yes);
+		select(small, transport, SchoolModuleRequired.IsSelected.No);
+		persistOrder(anita, "Anita S", LocalDate.of(2024, 5, 15), null, "300", null, null);
+		persistOrder(anita, "Anita S", LocalDate.of(2023, 12, 31), "Yearly", "9999", "1", 1);
+		SchoolVisited pending = persistOrder(rahul, "Rahul V", LocalDate.of(2024, 4, 10), "Yearly", "5000", "1", 1);
+		pending.setStatus(SchoolVisited.VisitStatus.PENDING);
+		entityManager.flush();
+		entityManager.clear();
+
+		analytics = newNode();
+	}
+
+	@Test
+	void groupsBookedOrdersByEachDimension() {
+		RevenueReport byMonth = analytics.getReport("month", APRIL, MAY);
+		assertEquals(List.of("2024-04", "2024-05"), keys(byMonth));
+		RevenueGroup april = byMonth.groups().get(0);
+		assertEquals(2, april.orders());
+		assertAmount("1200", april.initialPayment());
+		// 50 * 100 + 10 * 20; the May order has no price and adds nothing
+		assertAmount("5200", april.contractValue());
+		assertEquals(3, byMonth.totals().orders());
+		assertAmount("1500", byMonth.totals().initialPayment());
+
+		RevenueReport byExecutive = analytics.getReport("executive", APRIL, MAY);
+		assertEquals(List.of("Anita S", "Rahul V"), byExecutive.groups().stream().map(RevenueGroup::label).toList());
+		assertEquals(String.valueOf(anita.getUserId()), byExecutive.groups().get(0).key());
+		assertAmount("1300", byExecutive.groups().get(0).initialPayment());
+
+		RevenueReport byFrequency = analytics.getReport("billingFrequency", APRIL, MAY);
+		assertEquals(List.of("Yearly", "Monthly", ""), keys(byFrequency));
+
+		// Only selected modules; an order counts under each of its modules
+		RevenueReport byModule = analytics.getReport("module", APRIL, MAY);
+		assertEquals(List.of("Fees", "Transport"), byModule.groups().stream().map(RevenueGroup::label).toList());
+		assertEquals(2, byModule.groups().get(0).orders());
+		assertEquals(1, byModule.groups().get(1).orders());
+		// The total still counts each order once, including the May order without modules
+		assertEquals("total", byModule.totals().key());
+		assertEquals(3, byModule.totals().orders());
+		assertAmount("1500", byModule.totals().initialPayment());
+		assertAmount("5200", byModule.totals().contractValue());
+	}
+
+	@Test
+	void reportsAreCachedUntilAVisitChanges() {
+		RevenueReport first = analytics.getReport(null, APRIL, APRIL);
+		assertSame(first, analytics.getReport("MONTH", APRIL, APRIL));
+
+		entityManager.getEntityManager().createQuery("UPDATE SchoolVisited v SET v.initialPayment = 0"
+				+ " WHERE v.orderBookingDate = :day").setParameter("day", LocalDate.of(2024, 4, 2)).executeUpdate();
+		assertSame(first, analytics.getReport("month", APRIL, APRIL));
+
+		analytics.onVisitChanged(new VisitChangedEvent(1));
+		RevenueReport refreshed = analytics.getReport("month", APRIL, APRIL);
+		assertNotSame(first, refreshed);
+		assertAmount("200", refreshed.totals().initialPayment());
+	}
+
+	@Test
+	void aChangeOnAnotherNodeDropsTheCacheAtTheNextPoll() {
+		RevenueAnalyticsService otherNode = newNode();
+		analytics.syncGeneration();
+		RevenueReport first = analytics.getReport("month", APRIL, APRIL);
+
+		entityManager.getEntityManager().createQuery("UPDATE SchoolVisited v SET v.initialPayment = 0"
+				+ " WHERE v.orderBookingDate = :day").setParameter("day", LocalDate.of(2024, 4, 2)).executeUpdate();
+		otherNode.onVisitChanged(new VisitChangedEvent(1));
+		// Nothing has moved since the last poll
+		assertSame(first, analytics.getReport("month", APRIL, APRIL));
+
+		analytics.syncGeneration();
+		RevenueReport refreshed = analytics.getReport("month", APRIL, APRIL);
+		assertNotSame(first, refreshed);
+		assertAmount("200", refreshed.totals().initialPayment());
+		analytics.syncGeneration();
+		assertSame(refreshed, analytics.getReport("month", APRIL, APRIL));
+	}
+
+	@Test
+	void rejectsUnknownDimensionsAndBadRanges() {
+		assertThrows(IllegalArgumentException.class, () -> analytics.getReport("city", APRIL, MAY));
+		assertThrows(IllegalArgumentException.class, () -> analytics.getReport("month", MAY, APRIL));
+		assertThrows(IllegalArgumentException.class, () -> analytics.getReport("month", YearMonth.of(2010, 1),
+				YearMonth.of(2024, 1)));
+		// Defaults to the 12 months up to the current one
+		RevenueReport recent = analytics.getReport(null, null, null);
+		assertEquals(YearMonth.now(), recent.to());
+		assertEquals(YearMonth.now().minusMonths(11), recent.from());
+	}
+
+	private RevenueAnalyticsService newNode() {
+		return new RevenueAnalyticsService(dataSource, new SimpleMeterRegistry(), cacheGenerations, 600, 100);
+	}
+
+	private static List<String> keys(RevenueReport report) {
+		return report.groups().stream().map(RevenueGroup::key).toList();
+	}
+
+	private static void assertAmount(String expected, BigDecimal actual) {
+		assertEquals(0, new BigDecimal(expected).compareTo(actual), () -> expected + " != " + actual);
+	}
+
+	private SchoolVisited persistOrder(User owner, String executive, LocalDate booked, String frequency,
+			String initialPayment, String costPerMember, Integer users) {
+		SchoolVisited visit = new SchoolVisited();
+		visit.setSchoolName("School");
+		visit.setUser(owner);
+		visit.setMarketingExecutiveName(executive);
+		visit.setStatus(SchoolVisited.VisitStatus.ACCEPTED);
+		visit.setOrderBookingDate(booked);
+		visit.setBillingfrequency(frequency);
+		visit.setInitialPayment(new BigDecimal(initialPayment));
+		visit.setCostPerMember(costPerMember == null ? null : new BigDecimal(costPerMember));
+		visit.setNoOfUsers(users);
+		return entityManager.persist(visit);
+	}
+
+	private void select(SchoolVisited visit, Modules module, SchoolModuleRequired.IsSelected selected) {
+		SchoolModuleRequired row = new SchoolModuleRequired();
+		row.setSchoolVisited(visit);
+		row.setModuleId(module.getId());
+		row.setIsSelected(selected);
+		entityManager.persist(row);
+	}
+
+	private Modules persistModule(String name) {
+		Modules module = new Modules();
+		module.setModuleName(name);
+		module.setIsActive(true);
+		return entityManager.persist(module);
+	}
+
+	private User persistUser(String username) {
+		User u = new User();
+		u.setUsername(username);
+		u.setPasswordHash("x");
+		u.setRole(User.Role.MARKETING);
+		u.setStatus(User.Status.Approved);
+		return entityManager.persist(u);
+	}
+}
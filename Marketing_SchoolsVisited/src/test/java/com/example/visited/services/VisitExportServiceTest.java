@@ -0,0 +1,121 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.visited.entitys.Modules;
+import com.example.visited.entitys.SchoolModuleRequired;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.ModulesRepository;
+import com.example.visited.repositories.SchoolModuleRequiredRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class VisitExportServiceTest {
+
+	private static final ObjectMapper JSON = JsonMapper.builder().findAndAddModules().build();
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManager sharedEntityManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private SchoolModuleRequiredRepository schoolModuleRequiredRepository;
+
+	@Autowired
+	private ModulesRepository modulesRepository;
+
+	private VisitExportService exportService;
+
+	@BeforeEach
+	void setUp() {
+		User user = new User();
+		user.setUsername("marketing1");
+		user.setPasswordHash("x");
+		user.setRole(User.Role.MARKETING);
+		user.setStatus(User.Status.Approved);
+		entityManager.persist(user);
+		Modules module = new Modules();
+		module.setModuleName("Fees");
+		entityManager.persist(module);
+
+		for (int i = 0; i < 7; i++) {
+			SchoolVisited visit = new SchoolVisited();
+			visit.setSchoolName("School " + i);
+			visit.setUser(user);
+			visit.setStatus(i < 2 ? SchoolVisited.VisitStatus.ACCEPTED : SchoolVisited.VisitStatus.PENDING);
+			entityManager.persist(visit);
+			SchoolModuleRequired row = new SchoolModuleRequired();
+			row.setSchoolVisited(visit);
+			row.setModuleId(module.getId());
+			entityManager.persist(row);
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		// Fetch size smaller than the row count so several chunks are written
+		ModuleCatalog moduleCatalog = new ModuleCatalog(modulesRepository,
+				new CacheGenerations(dataSource, transactionManager), transactionManager);
+		exportService = new VisitExportService(sharedEntityManager,
+				new VisitModuleLoader(schoolModuleRequiredRepository, moduleCatalog, 1000), JSON, transactionManager,
+				new SimpleMeterRegistry(), 3, 60, 1);
+	}
+
+	@Test
+	void writesEveryVisitWithItsModulesAsOneArray() throws Exception {
+		JsonNode visits = run(exportService.export(null));
+		assertEquals(7, visits.size());
+		for (JsonNode visit : visits) {
+			assertEquals(1, visit.get("selectedModules").size());
+		}
+		assertEquals("School 0", visits.get(0).get("schoolName").asText());
+	}
+
+	@Test
+	void statusFilterIsApplied() throws Exception {
+		JsonNode visits = run(exportService.export(SchoolVisited.VisitStatus.ACCEPTED));
+		assertEquals(2, visits.size());
+	}
+
+	@Test
+	void concurrentExportsAreCapped() throws Exception {
+		Optional<StreamingResponseBody> first = exportService.export(null);
+		assertTrue(first.isPresent());
+		assertTrue(exportService.export(null).isEmpty());
+		run(first);
+		assertTrue(exportService.export(null).isPresent());
+	}
+
+	private static JsonNode run(Optional<StreamingResponseBody> body) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.orElseThrow().writeTo(out);
+		return JSON.readTree(out.toByteArray());
+	}
+}
@@ -0,0 +1,156 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.visited.DTO.VisitSearchHit;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.SchoolsVisitedRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class VisitFullTextIndexTest {
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private SchoolsVisitedRepository schoolsVisitedRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@TempDir
+	Path indexDir;
+
+	private VisitFullTextIndex index;
+	private User user;
+	private User otherUser;
+	private SchoolVisited stMarys;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		user = persistUser("marketing1");
+		otherUser = persistUser("marketing2");
+		stMarys = persistVisit(user, "St. Mary's Convent School", "Anita Sharma", "Pune");
+		persistVisit(user, "Delhi Public School", "Rahul Verma", "Nagpur");
+		persistVisit(otherUser, "Mary Immaculate High School", "José Fernandes", "Goa");
+		persistVisit(otherUser, "Green Valley School", "Mary Thomas", "Goa");
+		entityManager.flush();
+		entityManager.clear();
+
+		// Batch size below the row count so the rebuild pages
+		index = new VisitFullTextIndex(schoolsVisitedRepository, transactionManager, new SimpleMeterRegistry(),
+				indexDir.toString(), 2);
+		index.open();
+		index.rebuild();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		index.close();
+	}
+
+	@Test
+	void ranksSchoolNameMatchesAndToleratesTypos() {
+		// School name matches outrank the contact name match
+		List<String> names = schoolNames(index.search("mary", null, null));
+		assertEquals(3, names.size());
+		assertEquals("Green Valley School", names.get(2));
+		// One edit away from "convent", and a prefix of "public"
+		assertEquals(List.of("St. Mary's Convent School"), schoolNames(index.search("covnent", null, null)));
+		assertEquals(List.of("Delhi Public School"), schoolNames(index.search("delhi pub", null, null)));
+		// Accents are folded
+		assertEquals(List.of("Mary Immaculate High School"), schoolNames(index.search("jose", null, null)));
+	}
+
+	@Test
+	void ownerOnlyFindsOwnVisits() {
+		assertEquals(List.of("St. Mary's Convent School"), schoolNames(index.search("mary", user.getUserId(), null)));
+		assertEquals(2, index.search("mary", null, 2).size());
+	}
+
+	@Test
+	void reindexPicksUpEditsAndDeletes() {
+		SchoolVisited visit = entityManager.find(SchoolVisited.class, stMarys.getId());
+		visit.setSchoolName("Holy Cross Academy");
+		entityManager.flush();
+		index.reindex(List.of(stMarys.getId()));
+		assertEquals(List.of("Holy Cross Academy"), schoolNames(index.search("holy", null, null)));
+		assertEquals(List.of("Mary Immaculate High School", "Green Valley School"),
+				schoolNames(index.search("mary", null, null)));
+
+		entityManager.remove(visit);
+		entityManager.flush();
+		index.reindex(List.of(stMarys.getId()));
+		assertTrue(index.search("holy", null, null).isEmpty());
+	}
+
+	@Test
+	void catchUpAndSweepPickUpChangesMadeThroughAnotherNode() {
+		// Written without a change event, as another node's write looks to this one
+		SchoolVisited visit = entityManager.find(SchoolVisited.class, stMarys.getId());
+		visit.setSchoolName("Holy Cross Academy");
+		persistVisit(user, "Sunrise International", "Kavya Rao", "Mysore");
+		entityManager.flush();
+		assertTrue(index.search("holy", null, null).isEmpty());
+
+		index.catchUp();
+		assertEquals(List.of("Holy Cross Academy"), schoolNames(index.search("holy", null, null)));
+		assertEquals(List.of("Sunrise International"), schoolNames(index.search("sunrise", null, null)));
+
+		entityManager.remove(visit);
+		entityManager.flush();
+		index.sweepDeleted();
+		assertTrue(index.search("holy", null, null).isEmpty());
+		assertEquals(3, index.search("school", null, null).size());
+		// Nothing left to drop
+		index.sweepDeleted();
+		assertEquals(List.of("Sunrise International"), schoolNames(index.search("sunrise", null, null)));
+	}
+
+	@Test
+	void rejectsBlankOrOverlongQueries() {
+		assertThrows(IllegalArgumentException.class, () -> index.search(" ", null, null));
+		assertThrows(IllegalArgumentException.class, () -> index.search("x".repeat(201), null, null));
+		assertThrows(IllegalArgumentException.class, () -> index.search("mary", null, 0));
+	}
+
+	private static List<String> schoolNames(List<VisitSearchHit> hits) {
+		return hits.stream().map(VisitSearchHit::schoolName).toList();
+	}
+
+	private SchoolVisited persistVisit(User owner, String schoolName, String contact, String city) {
+		SchoolVisited visit = new SchoolVisited();
+		visit.setSchoolName(schoolName);
+		visit.setContactPersonName(contact);
+		visit.setLocationCity(city);
+		visit.setUser(owner);
+		visit.setStatus(SchoolVisited.VisitStatus.PENDING);
+		return entityManager.persist(visit);
+	}
+
+	private User persistUser(String username) {
+		User u = new User();
+		u.setUsername(username);
+		u.setPasswordHash("x");
+		u.setRole(User.Role.MARKETING);
+		u.setStatus(User.Status.Approved);
+		return entityManager.persist(u);
+	}
+}
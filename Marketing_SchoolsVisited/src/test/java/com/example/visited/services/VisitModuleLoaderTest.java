@@ -0,0 +1,131 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.visited.DTO.SelectedModule;
+import com.example.visited.entitys.Modules;
+import com.example.visited.entitys.SchoolModuleRequired;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.ModulesRepository;
+import com.example.visited.repositories.SchoolModuleRequiredRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@DataJpaTest(properties = {
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class VisitModuleLoaderTest {
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private SchoolModuleRequiredRepository schoolModuleRequiredRepository;
+
+	@Autowired
+	private ModulesRepository modulesRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Statistics statistics;
+	private ModuleCatalog moduleCatalog;
+	private User user;
+	private Modules module;
+	private Modules otherModule;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		user = new User();
+		user.setUsername("marketing1");
+		user.setPasswordHash("x");
+		user.setRole(User.Role.MARKETING);
+		user.setStatus(User.Status.Approved);
+		entityManager.persist(user);
+		module = new Modules();
+		module.setModuleName("Fees");
+		entityManager.persist(module);
+		otherModule = new Modules();
+		otherModule.setModuleName("Transport");
+		entityManager.persist(otherModule);
+		// Loaded up front so the counts below are only the module-row queries
+		moduleCatalog = new ModuleCatalog(modulesRepository, new CacheGenerations(dataSource, transactionManager),
+				transactionManager);
+		moduleCatalog.snapshot();
+	}
+
+	@Test
+	void statementCountDoesNotGrowWithVisits() {
+		assertEquals(1, statementsToLoad(visitsWithModules(5), 1000));
+		assertEquals(1, statementsToLoad(visitsWithModules(200), 1000));
+	}
+
+	@Test
+	void largeListingsAreLoadedInChunks() {
+		assertEquals(3, statementsToLoad(visitsWithModules(60), 25));
+	}
+
+	@Test
+	void modulesAreGroupedPerVisit() {
+		List<Integer> visits = visitsWithModules(3);
+		Map<Integer, List<SelectedModule>> byVisit =
+				new VisitModuleLoader(schoolModuleRequiredRepository, moduleCatalog, 1000).loadModules(visits);
+		for (Integer visitId : visits) {
+			assertEquals(2, byVisit.get(visitId).size());
+			assertEquals(module.getId(), byVisit.get(visitId).get(0).moduleId());
+			assertEquals(visitId, byVisit.get(visitId).get(0).visitId());
+		}
+	}
+
+	private long statementsToLoad(List<Integer> visits, int chunkSize) {
+		VisitModuleLoader loader = new VisitModuleLoader(schoolModuleRequiredRepository, moduleCatalog, chunkSize);
+		statistics.clear();
+		loader.loadModules(visits);
+		return statistics.getPrepareStatementCount();
+	}
+
+	// Two module rows per visit, persisted and detached so nothing is served from the session
+	private List<Integer> visitsWithModules(int count) {
+		List<Integer> visits = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			SchoolVisited visit = new SchoolVisited();
+			visit.setSchoolName("School " + i);
+			visit.setUser(user);
+			entityManager.persist(visit);
+			for (Modules m : List.of(module, otherModule)) {
+				SchoolModuleRequired row = new SchoolModuleRequired();
+				row.setSchoolVisited(visit);
+				row.setModuleId(m.getId());
+				entityManager.persist(row);
+			}
+			visits.add(visit.getId());
+		}
+		entityManager.flush();
+		entityManager.clear();
+		return visits;
+	}
+}
@@ -0,0 +1,113 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.visited.DTO.SelectedModule;
+import com.example.visited.entitys.SchoolModuleRequired.IsSelected;
+
+class VisitModuleWriterTest {
+
+	private JdbcTemplate jdbc;
+	private VisitModuleWriter writer;
+
+	@BeforeEach
+	void createTable() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:modules;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+		jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("DROP TABLE IF EXISTS school_modules_required");
+		jdbc.execute("CREATE TABLE school_modules_required (id INT AUTO_INCREMENT PRIMARY KEY, "
+				+ "school_visited_id INT NOT NULL, module_id INT NOT NULL, is_selected VARCHAR(255), "
+				+ "remarks VARCHAR(255), created_at TIMESTAMP, updated_at TIMESTAMP, "
+				+ "UNIQUE KEY uk_school_modules_required_visit_module (school_visited_id, module_id))");
+		// Two rows per statement so the chunking is exercised
+		writer = new VisitModuleWriter(dataSource, 2);
+	}
+
+	@Test
+	void writesEveryRowForTheVisit() {
+		List<SelectedModule> modules = new ArrayList<>();
+		for (int moduleId = 1; moduleId <= 5; moduleId++) {
+			modules.add(new SelectedModule(null, moduleId, moduleId % 2 == 0 ? IsSelected.Yes : IsSelected.No,
+					"note " + moduleId));
+		}
+		writer.upsert(7, modules);
+
+		List<Map<String, Object>> rows = jdbc.queryForList("SELECT module_id, is_selected, remarks "
+				+ "FROM school_modules_required WHERE school_visited_id = 7 ORDER BY module_id");
+		assertEquals(5, rows.size());
+		assertEquals("Yes", rows.get(1).get("IS_SELECTED"));
+		assertEquals("note 5", rows.get(4).get("REMARKS"));
+	}
+
+	@Test
+	void existingAndRepeatedModulesAreUpdatedNotDuplicated() {
+		writer.upsert(7, List.of(new SelectedModule(null, 1, IsSelected.No, "first")));
+		writer.upsert(7, List.of(
+				new SelectedModule(null, 1, IsSelected.Yes, "updated"),
+				new SelectedModule(null, 2, IsSelected.No, "draft"),
+				new SelectedModule(null, 2, IsSelected.Yes, "final")));
+
+		List<Map<String, Object>> rows = jdbc.queryForList("SELECT module_id, is_selected, remarks "
+				+ "FROM school_modules_required ORDER BY module_id");
+		assertEquals(2, rows.size());
+		assertEquals("updated", rows.get(0).get("REMARKS"));
+		assertEquals("Yes", rows.get(0).get("IS_SELECTED"));
+		// The last entry for a module wins
+		assertEquals("final", rows.get(1).get("REMARKS"));
+	}
+
+	@Test
+	void reconcileWritesOnlyTheDifference() {
+		// Rows from an earlier edit, with distinguishable ids and timestamps
+		jdbc.update("INSERT INTO school_modules_required (id, school_visited_id, module_id, is_selected, remarks, "
+				+ "created_at, updated_at) VALUES (101, 7, 1, 'Yes', 'keep', '2024-01-01 00:00:00', '2024-01-01 00:00:00'), "
+				+ "(102, 7, 2, 'No', 'old', '2024-01-01 00:00:00', '2024-01-01 00:00:00'), "
+				+ "(103, 7, 3, 'Yes', null, '2024-01-01 00:00:00', '2024-01-01 00:00:00'), "
+				+ "(104, 8, 3, 'Yes', null, '2024-01-01 00:00:00', '2024-01-01 00:00:00')");
+
+		VisitModuleWriter.Changes changes = writer.reconcile(7, List.of(
+				new SelectedModule(7, 1, IsSelected.Yes, "keep"),
+				new SelectedModule(7, 2, IsSelected.Yes, "old"),
+				new SelectedModule(7, 4, IsSelected.No, "new")));
+		assertEquals(new VisitModuleWriter.Changes(1, 1, 1), changes);
+
+		Map<Integer, Map<String, Object>> rows = new HashMap<>();
+		for (Map<String, Object> row : jdbc.queryForList("SELECT * FROM school_modules_required "
+				+ "WHERE school_visited_id = 7")) {
+			rows.put((Integer) row.get("MODULE_ID"), row);
+		}
+		assertEquals(List.of(1, 2, 4), rows.keySet().stream().sorted().toList());
+		Timestamp before = Timestamp.valueOf("2024-01-01 00:00:00");
+		// Unchanged: not written at all
+		assertEquals(before, rows.get(1).get("UPDATED_AT"));
+		// Changed: same row, new updated_at
+		assertEquals(102, rows.get(2).get("ID"));
+		assertEquals("Yes", rows.get(2).get("IS_SELECTED"));
+		assertEquals(before, rows.get(2).get("CREATED_AT"));
+		assertNotEquals(before, rows.get(2).get("UPDATED_AT"));
+		// Other visits are untouched
+		assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM school_modules_required WHERE school_visited_id = 8",
+				Integer.class));
+	}
+
+	@Test
+	void reconcileWithNoModulesClearsTheVisit() {
+		writer.upsert(7, List.of(new SelectedModule(7, 1, IsSelected.Yes, null),
+				new SelectedModule(7, 2, IsSelected.No, null)));
+		assertEquals(new VisitModuleWriter.Changes(0, 0, 2), writer.reconcile(7, List.of()));
+		assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM school_modules_required", Integer.class));
+	}
+}
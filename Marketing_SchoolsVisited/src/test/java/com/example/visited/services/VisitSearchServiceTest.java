@@ -0,0 +1,150 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.visited.DTO.VisitSearchRequest;
+import com.example.visited.DTO.VisitSummary;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+import com.example.visited.repositories.ModulesRepository;
+import com.example.visited.repositories.SchoolModuleRequiredRepository;
+import com.example.visited.repositories.SchoolsVisitedRepository;
+
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class VisitSearchServiceTest {
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManager sharedEntityManager;
+
+	@Autowired
+	private SchoolsVisitedRepository schoolsVisitedRepository;
+
+	@Autowired
+	private SchoolModuleRequiredRepository schoolModuleRequiredRepository;
+
+	@Autowired
+	private ModulesRepository modulesRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private VisitSearchService searchService;
+	private User user;
+	private User otherUser;
+
+	@BeforeEach
+	void setUp() {
+		user = persistUser("marketing1");
+		otherUser = persistUser("marketing2");
+		// 12 visits: two cities, budgets 0..500 with some NULLs, visited over consecutive days
+		for (int i = 0; i < 12; i++) {
+			SchoolVisited visit = new SchoolVisited();
+			visit.setSchoolName("School " + i);
+			visit.setUser(i < 10 ? user : otherUser);
+			visit.setLocationCity(i % 2 == 0 ? "Pune" : "Nagpur");
+			visit.setBoards(i % 3 == 0 ? "CBSE, ICSE" : "State");
+			visit.setVisitedDate(LocalDate.of(2024, 1, 1).plusDays(i));
+			visit.setBudgetRange(i % 4 == 0 ? null : BigDecimal.valueOf((i % 6) * 100L));
+			visit.setStatus(i < 6 ? SchoolVisited.VisitStatus.PENDING : SchoolVisited.VisitStatus.ACCEPTED);
+			entityManager.persist(visit);
+		}
+		entityManager.flush();
+		entityManager.clear();
+		ModuleCatalog moduleCatalog = new ModuleCatalog(modulesRepository,
+				new CacheGenerations(dataSource, transactionManager), transactionManager);
+		searchService = new VisitSearchService(sharedEntityManager, schoolsVisitedRepository,
+				new VisitModuleLoader(schoolModuleRequiredRepository, moduleCatalog, 1000), 50, 200);
+	}
+
+	@Test
+	void filtersCombine() {
+		List<String> names = names(searchService.search(request("Pune", null, LocalDate.of(2024, 1, 3),
+				LocalDate.of(2024, 1, 9), null, "visitedDate", "asc", null, null), null, true));
+		assertEquals(List.of("School 2", "School 4", "School 6", "School 8"), names);
+
+		names = names(searchService.search(request(null, "CBSE", null, null, SchoolVisited.VisitStatus.ACCEPTED,
+				"visitedDate", "asc", null, null), null, true));
+		assertEquals(List.of("School 6", "School 9"), names);
+	}
+
+	@Test
+	void ownerOnlySeesOwnVisits() {
+		List<String> names = names(searchService.search(request("Nagpur", null, null, null, null, "visitedDate",
+				"desc", null, null), user.getUserId(), true));
+		assertEquals(List.of("School 9", "School 7", "School 5", "School 3", "School 1"), names);
+	}
+
+	@Test
+	void keysetWalkOverNullableSortMatchesSingleQuery() {
+		for (String direction : List.of("asc", "desc")) {
+			List<String> all = names(searchService.search(request(null, null, null, null, null, "budgetRange",
+					direction, null, 200), null, true));
+			assertEquals(12, all.size());
+
+			List<String> walked = new ArrayList<>();
+			String cursor = null;
+			do {
+				Map<String, Object> page = searchService.search(request(null, null, null, null, null, "budgetRange",
+						direction, cursor, 5), null, true);
+				walked.addAll(names(page));
+				cursor = (String) page.get("nextCursor");
+			} while (cursor != null);
+			assertEquals(all, walked, direction);
+		}
+	}
+
+	@Test
+	void cursorFromAnotherSortIsRejected() {
+		Map<String, Object> page = searchService.search(request(null, null, null, null, null, "visitedDate", "asc",
+				null, 2), null, true);
+		String cursor = (String) page.get("nextCursor");
+		assertThrows(IllegalArgumentException.class, () -> searchService.search(request(null, null, null, null, null,
+				"budgetRange", "asc", cursor, 2), null, true));
+		assertThrows(IllegalArgumentException.class, () -> searchService.search(request(null, null,
+				LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), null, null, null, null, null), null, true));
+	}
+
+	private static VisitSearchRequest request(String city, String board, LocalDate from, LocalDate to,
+			SchoolVisited.VisitStatus status, String sort, String direction, String cursor, Integer limit) {
+		return new VisitSearchRequest(status, city, null, from, to, board, null, null, sort, direction, cursor, limit,
+				"summary");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> names(Map<String, Object> page) {
+		return ((List<VisitSummary>) page.get("visits")).stream().map(VisitSummary::schoolName).toList();
+	}
+
+	private User persistUser(String username) {
+		User u = new User();
+		u.setUsername(username);
+		u.setPasswordHash("x");
+		u.setRole(User.Role.MARKETING);
+		u.setStatus(User.Status.Approved);
+		return entityManager.persist(u);
+	}
+}
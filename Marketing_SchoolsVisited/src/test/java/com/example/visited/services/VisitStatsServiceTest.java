@@ -0,0 +1,180 @@
+package com.example.visited.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.visited.DTO.VisitStatsFacts;
+import com.example.visited.DTO.VisitStatsRow;
+import com.example.visited.entitys.SchoolVisited;
+import com.example.visited.entitys.User;
+
+// MySQL mode for the ON DUPLICATE KEY UPDATE upserts
+@DataJpaTest(properties = {"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.datasource.url=jdbc:h2:mem:stats;MODE=MySQL;DB_CLOSE_DELAY=-1"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class VisitStatsServiceTest {
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private JdbcTemplate jdbc;
+	private VisitStatsService statsService;
+	private User user;
+
+	// visit_stats as created by V11 and V14, minus the MySQL-only parts; H2 compares VARCHAR like
+	// utf8mb4_bin
+	static void createTable(JdbcTemplate jdbc) {
+		jdbc.execute("CREATE TABLE IF NOT EXISTS visit_stats (user_id INT NOT NULL, status VARCHAR(20) NOT NULL, "
+				+ "city VARCHAR(100) NOT NULL, visit_month DATE NOT NULL, visit_count BIGINT NOT NULL, "
+				+ "budget_sum DECIMAL(18,2) NOT NULL, initial_payment_sum DECIMAL(18,2) NOT NULL, "
+				+ "PRIMARY KEY (user_id, status, city, visit_month))");
+	}
+
+	@BeforeEach
+	void setUp() {
+		jdbc = new JdbcTemplate(dataSource);
+		createTable(jdbc);
+		statsService = new VisitStatsService(dataSource);
+		user = new User();
+		user.setUsername("marketing1");
+		user.setPasswordHash("x");
+		user.setRole(User.Role.MARKETING);
+		user.setStatus(User.Status.Approved);
+		entityManager.persist(user);
+	}
+
+	@Test
+	void incrementalChangesMatchARecount() {
+		SchoolVisited pune = persistVisit("Pune", LocalDate.of(2024, 4, 3), "1000", SchoolVisited.VisitStatus.PENDING);
+		SchoolVisited nagpur = persistVisit(null, LocalDate.of(2024, 4, 20), null, SchoolVisited.VisitStatus.PENDING);
+		persistVisit("Pune", LocalDate.of(2024, 5, 1), "250.50", SchoolVisited.VisitStatus.REJECTED);
+
+		// Accepted with a payment, moved to another city, deleted
+		VisitStatsFacts before = VisitStatsFacts.of(pune);
+		pune.setStatus(SchoolVisited.VisitStatus.ACCEPTED);
+		pune.setInitialPayment(new BigDecimal("300"));
+		statsService.apply(before, VisitStatsFacts.of(pune));
+		before = VisitStatsFacts.of(nagpur);
+		nagpur.setLocationCity("Nagpur");
+		statsService.apply(before, VisitStatsFacts.of(nagpur));
+		SchoolVisited deleted = persistVisit("Goa", LocalDate.of(2024, 4, 9), "75", SchoolVisited.VisitStatus.PENDING);
+		statsService.apply(VisitStatsFacts.of(deleted), null);
+		entityManager.remove(deleted);
+		entityManager.flush();
+
+		VisitStatsService.Verification verification = statsService.rebuild(true);
+		assertTrue(verification.consistent(), verification.toString());
+		assertEquals(3, verification.groups());
+		// Emptied groups are removed rather than left at zero
+		assertEquals(3, jdbc.queryForObject("SELECT COUNT(*) FROM visit_stats", Integer.class));
+
+		List<VisitStatsRow> byStatus = statsService.getStats(List.of("status"), null, null);
+		assertEquals(List.of(SchoolVisited.VisitStatus.PENDING, SchoolVisited.VisitStatus.ACCEPTED,
+				SchoolVisited.VisitStatus.REJECTED), byStatus.stream().map(VisitStatsRow::status).sorted().toList());
+		VisitStatsRow accepted = byStatus.stream()
+				.filter(r -> r.status() == SchoolVisited.VisitStatus.ACCEPTED).findFirst().orElseThrow();
+		assertEquals(1, accepted.visitCount());
+		assertEquals(0, new BigDecimal("1000").compareTo(accepted.budgetSum()));
+		assertEquals(0, new BigDecimal("300").compareTo(accepted.initialPaymentSum()));
+
+		List<VisitStatsRow> april = statsService.getStats(List.of("month", "city"), YearMonth.of(2024, 4),
+				YearMonth.of(2024, 4));
+		assertEquals(List.of("nagpur", "pune"), april.stream().map(VisitStatsRow::city).toList());
+		assertEquals(LocalDate.of(2024, 4, 1), april.get(0).month());
+	}
+
+	@Test
+	void rebuildRepairsOnlyWhatDiffers() {
+		persistVisit("Pune", LocalDate.of(2024, 4, 3), "1000", SchoolVisited.VisitStatus.PENDING);
+		persistVisit("Pune", LocalDate.of(2024, 4, 8), "500", SchoolVisited.VisitStatus.PENDING);
+		persistVisit("Goa", LocalDate.of(2024, 6, 1), null, SchoolVisited.VisitStatus.PENDING);
+		jdbc.update("UPDATE visit_stats SET visit_count = 7 WHERE city = 'pune'");
+		jdbc.update("DELETE FROM visit_stats WHERE city = 'goa'");
+		jdbc.update("INSERT INTO visit_stats VALUES (?, 'ACCEPTED', 'pune', '2023-01-01', 1, 0, 10)", user.getUserId());
+
+		VisitStatsService.Verification dryRun = statsService.rebuild(true);
+		assertEquals(new VisitStatsService.Verification(2, 1, 1, 1, false), dryRun);
+		assertEquals(7L, jdbc.queryForObject("SELECT visit_count FROM visit_stats WHERE city = 'pune' AND status = "
+				+ "'PENDING'", Long.class));
+
+		assertTrue(statsService.rebuild(false).rebuilt());
+		VisitStatsService.Verification after = statsService.rebuild(false);
+		assertTrue(after.consistent());
+		assertFalse(after.rebuilt());
+		assertEquals(2L, jdbc.queryForObject("SELECT visit_count FROM visit_stats WHERE city = 'pune'", Long.class));
+	}
+
+	@Test
+	void spellingsOfOneCityShareAGroupAndARepairKeepsIt() {
+		SchoolVisited delhi = persistVisit("Delhi", LocalDate.of(2024, 4, 3), "100", SchoolVisited.VisitStatus.PENDING);
+		persistVisit("delhi", LocalDate.of(2024, 4, 9), "200", SchoolVisited.VisitStatus.PENDING);
+		persistVisit(" DELHI ", LocalDate.of(2024, 4, 20), null, SchoolVisited.VisitStatus.PENDING);
+		assertEquals(List.of("delhi"), jdbc.queryForList("SELECT city FROM visit_stats", String.class));
+		assertTrue(statsService.rebuild(true).consistent());
+
+		VisitStatsFacts before = VisitStatsFacts.of(delhi);
+		delhi.setLocationCity("DELHI");
+		statsService.apply(before, VisitStatsFacts.of(delhi));
+		assertTrue(statsService.rebuild(true).consistent());
+
+		// A group stored under the old spelling: replacing the lower-cased group and deleting the
+		// stray one must leave the repaired row in place
+		jdbc.update("UPDATE visit_stats SET city = 'Delhi'");
+		assertEquals(new VisitStatsService.Verification(1, 1, 1, 0, true), statsService.rebuild(false));
+		assertEquals(3L, jdbc.queryForObject("SELECT visit_count FROM visit_stats WHERE city = 'delhi'", Long.class));
+		assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM visit_stats", Integer.class));
+		assertTrue(statsService.rebuild(true).consistent());
+	}
+
+	@Test
+	void cityIsTrimmedOfSpacesAndLowerCased() {
+		assertEquals("", VisitStatsService.Key.city(null));
+		assertEquals("", VisitStatsService.Key.city("   "));
+		assertEquals("navi mumbai", VisitStatsService.Key.city("  Navi Mumbai "));
+		// Only spaces, as SQL TRIM
+		assertEquals("\tpune", VisitStatsService.Key.city("\tPune"));
+	}
+
+	@Test
+	void rejectsUnknownDimensionsAndInvertedRanges() {
+		assertThrows(IllegalArgumentException.class, () -> statsService.getStats(List.of("school"), null, null));
+		assertThrows(IllegalArgumentException.class, () -> statsService.getStats(null, YearMonth.of(2024, 5),
+				YearMonth.of(2024, 4)));
+	}
+
+	// Persisted the way MarketingService.saveSchoolVisit does it: the visit, then its contribution
+	private SchoolVisited persistVisit(String city, LocalDate visitedDate, String budget,
+			SchoolVisited.VisitStatus status) {
+		SchoolVisited visit = new SchoolVisited();
+		visit.setSchoolName("School");
+		visit.setUser(user);
+		visit.setLocationCity(city);
+		visit.setVisitedDate(visitedDate);
+		visit.setBudgetRange(budget == null ? null : new BigDecimal(budget));
+		visit.setStatus(status);
+		entityManager.persist(visit);
+		entityManager.flush();
+		statsService.apply(null, VisitStatsFacts.of(visit));
+		return visit;
+	}
+}